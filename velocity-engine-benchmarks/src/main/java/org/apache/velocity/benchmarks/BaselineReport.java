@@ -0,0 +1,202 @@
+package org.apache.velocity.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <p>Compares two JMH result files produced with <code>-rf csv</code> (a baseline run and
+ * a current run), and reports the relative change of each score, including the
+ * secondary metrics of the <code>gc</code> profiler such as <code>gc.alloc.rate.norm</code>.</p>
+ *
+ * <p>Usage: <code>java -cp target/benchmarks.jar org.apache.velocity.benchmarks.BaselineReport
+ * baseline.csv current.csv [threshold%]</code></p>
+ *
+ * <p>A change is flagged as a regression when it is worse than the threshold (5% by default)
+ * and larger than the sum of both score errors. The exit status is 1 if any regression is found.</p>
+ */
+public class BaselineReport
+{
+    private static class Result
+    {
+        String mode;
+        double score;
+        double error;
+        String unit;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("usage: BaselineReport baseline.csv current.csv [threshold%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+        boolean regression = report(baseline, current, threshold, System.out);
+        System.exit(regression ? 1 : 0);
+    }
+
+    /**
+     * Prints the comparison table.
+     * @return whether a regression has been found
+     */
+    static boolean report(Map<String, Result> baseline, Map<String, Result> current, double threshold, PrintStream out)
+    {
+        boolean regression = false;
+        out.println(String.format(Locale.ROOT, "%-80s %14s %14s %9s  %s", "Benchmark", "Baseline", "Current", "Change", "Unit"));
+        for (Map.Entry<String, Result> entry : current.entrySet())
+        {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null)
+            {
+                out.println(String.format(Locale.ROOT, "%-80s %14s %14.3f %9s  %s", entry.getKey(), "-", now.score, "new", now.unit));
+                continue;
+            }
+            double change = before.score == 0 ? 0 : 100.0 * (now.score - before.score) / before.score;
+            // throughput should grow, while times and allocations should shrink
+            boolean higherIsBetter = "thrpt".equals(now.mode) && !entry.getKey().contains(":·gc.");
+            double worsening = higherIsBetter ? -change : change;
+            boolean significant = Math.abs(now.score - before.score) > sanitize(before.error) + sanitize(now.error);
+            String flag = "";
+            if (worsening > threshold && significant)
+            {
+                flag = "  REGRESSION";
+                regression = true;
+            }
+            else if (-worsening > threshold && significant)
+            {
+                flag = "  improvement";
+            }
+            out.println(String.format(Locale.ROOT, "%-80s %14.3f %14.3f %+8.1f%%  %s%s",
+                entry.getKey(), before.score, now.score, change, now.unit, flag));
+        }
+        for (String key : baseline.keySet())
+        {
+            if (!current.containsKey(key))
+            {
+                out.println(String.format(Locale.ROOT, "%-80s %14.3f %14s %9s", key, baseline.get(key).score, "-", "removed"));
+            }
+        }
+        return regression;
+    }
+
+    private static double sanitize(double error)
+    {
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    /**
+     * Reads a JMH CSV result file.
+     * @return results by benchmark name and parameters
+     */
+    static Map<String, Result> read(String file) throws IOException
+    {
+        Map<String, Result> results = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8")))
+        {
+            List<String> header = parseLine(reader.readLine());
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.trim().isEmpty())
+                {
+                    continue;
+                }
+                List<String> fields = parseLine(line);
+                StringBuilder key = new StringBuilder(fields.get(0));
+                for (int i = 7; i < header.size() && i < fields.size(); ++i)
+                {
+                    key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(fields.get(i));
+                }
+                Result result = new Result();
+                result.mode = fields.get(1);
+                result.score = parseNumber(fields.get(4));
+                result.error = parseNumber(fields.get(5));
+                result.unit = fields.get(6);
+                results.put(key.toString(), result);
+            }
+        }
+        return results;
+    }
+
+    private static double parseNumber(String value)
+    {
+        try
+        {
+            // some locales use a decimal comma
+            return Double.parseDouble(value.replace(',', '.'));
+        }
+        catch (NumberFormatException nfe)
+        {
+            return Double.NaN;
+        }
+    }
+
+    private static List<String> parseLine(String line)
+    {
+        List<String> fields = new ArrayList<>();
+        if (line == null)
+        {
+            return fields;
+        }
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); ++i)
+        {
+            char c = line.charAt(i);
+            if (c == '"')
+            {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"')
+                {
+                    field.append('"');
+                    ++i;
+                }
+                else
+                {
+                    quoted = !quoted;
+                }
+            }
+            else if (c == ',' && !quoted)
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else
+            {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
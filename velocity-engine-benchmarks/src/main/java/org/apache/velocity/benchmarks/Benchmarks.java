@@ -0,0 +1,223 @@
+package org.apache.velocity.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Templates, data and engine setup shared by the benchmarks.
+ */
+public final class Benchmarks
+{
+    private Benchmarks()
+    {
+    }
+
+    /**
+     * A few lines mixing text, references and a directive.
+     */
+    public static final String SMALL =
+        "<p>Hello $user.name, you have $user.messages.size() messages.</p>\n" +
+        "#if($user.admin)<a href=\"/admin\">administration</a>#end\n";
+
+    /**
+     * About 2,000 lines of markup with references, conditions and loops.
+     */
+    public static final String LARGE = large(100);
+
+    /**
+     * Many macro definitions and calls.
+     */
+    public static final String MACRO_HEAVY = macroHeavy(20, 200);
+
+    private static String large(int sections)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int s = 0; s < sections; ++s)
+        {
+            builder.append("<div class=\"section-").append(s).append("\">\n");
+            builder.append("  <h2>Section ").append(s).append(" for $user.name</h2>\n");
+            builder.append("  #if($user.admin)\n    <p>admin tools</p>\n  #else\n    <p>read only</p>\n  #end\n");
+            builder.append("  <ul>\n  #foreach($item in $items)\n");
+            builder.append("    <li class=\"#if($foreach.index % 2 == 0)even#{else}odd#end\">$item.name: $item.price</li>\n");
+            builder.append("  #end\n  </ul>\n");
+            for (int i = 0; i < 10; ++i)
+            {
+                builder.append("  <p>Static paragraph ").append(i).append(" of a rather long layout template.</p>\n");
+            }
+            builder.append("</div>\n");
+        }
+        return builder.toString();
+    }
+
+    private static String macroHeavy(int macros, int calls)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int m = 0; m < macros; ++m)
+        {
+            builder.append("#macro(m").append(m).append(" $a $b)<span>$a-$b</span>#if($a)").append(m).append("#end#end\n");
+        }
+        for (int c = 0; c < calls; ++c)
+        {
+            builder.append("#m").append(c % macros).append("($user.name ").append(c).append(")\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return engine loading templates from an in-memory repository, with caching enabled
+     */
+    public static VelocityEngine createEngine()
+    {
+        VelocityEngine engine = new VelocityEngine();
+        engine.setProperty(RuntimeConstants.RESOURCE_LOADER, "string");
+        engine.setProperty("string.resource.loader.class", StringResourceLoader.class.getName());
+        engine.setProperty("string.resource.loader.repository.static", "false");
+        engine.setProperty("string.resource.loader.cache", "true");
+        engine.setProperty("string.resource.loader.modificationCheckInterval", "0");
+        return engine;
+    }
+
+    /**
+     * @param engine initialized engine created by {@link #createEngine()}
+     * @return its in-memory template repository
+     */
+    public static StringResourceRepository getRepository(VelocityEngine engine)
+    {
+        return (StringResourceRepository)engine.getApplicationAttribute(StringResourceLoader.REPOSITORY_NAME_DEFAULT);
+    }
+
+    /**
+     * @return context data referenced by the templates
+     */
+    public static Map<String, Object> createData()
+    {
+        Map<String, Object> data = new HashMap<>();
+        data.put("user", new User("Alice", true));
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 20; ++i)
+        {
+            items.add(new Item("item" + i, i * 1.5));
+        }
+        data.put("items", items);
+        return data;
+    }
+
+    public static class User
+    {
+        private final String name;
+        private final boolean admin;
+        private final List<String> messages = new ArrayList<>();
+
+        public User(String name, boolean admin)
+        {
+            this.name = name;
+            this.admin = admin;
+            messages.add("welcome");
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public boolean isAdmin()
+        {
+            return admin;
+        }
+
+        public List<String> getMessages()
+        {
+            return messages;
+        }
+
+        public String greet(String greeting, int times)
+        {
+            return greeting + " " + name + " x" + times;
+        }
+    }
+
+    public static class Item
+    {
+        private final String name;
+        private final double price;
+
+        public Item(String name, double price)
+        {
+            this.name = name;
+            this.price = price;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public double getPrice()
+        {
+            return price;
+        }
+    }
+
+    /**
+     * Writer discarding its output, which only counts written characters.
+     */
+    public static class NullWriter extends Writer
+    {
+        private long count = 0;
+
+        public void write(char[] cbuf, int off, int len)
+        {
+            count += len;
+        }
+
+        public void write(String str)
+        {
+            count += str.length();
+        }
+
+        public void write(int c)
+        {
+            ++count;
+        }
+
+        public void flush()
+        {
+        }
+
+        public void close()
+        {
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.apache.velocity.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iteration cost of <code>#foreach</code> over a list and over an integer range.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ForeachBenchmark
+{
+    @Param({ "100", "10000" })
+    public int size;
+
+    private Template list;
+
+    private Template range;
+
+    private VelocityContext context;
+
+    @Setup
+    public void setUp()
+    {
+        VelocityEngine engine = Benchmarks.createEngine();
+        engine.init();
+        Benchmarks.getRepository(engine).putStringResource("list", "#foreach($i in $list)$i#end");
+        Benchmarks.getRepository(engine).putStringResource("range", "#foreach($i in [1..$size])$i#end");
+        list = engine.getTemplate("list");
+        range = engine.getTemplate("range");
+        List<Integer> values = new ArrayList<>(size);
+        for (int i = 1; i <= size; ++i)
+        {
+            values.add(i);
+        }
+        context = new VelocityContext();
+        context.put("list", values);
+        context.put("size", size);
+    }
+
+    @Benchmark
+    public long list()
+    {
+        Benchmarks.NullWriter writer = new Benchmarks.NullWriter();
+        list.merge(context, writer);
+        return writer.getCount();
+    }
+
+    @Benchmark
+    public long range()
+    {
+        Benchmarks.NullWriter writer = new Benchmarks.NullWriter();
+        range.merge(context, writer);
+        return writer.getCount();
+    }
+}
@@ -0,0 +1,93 @@
+package org.apache.velocity.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of property (<code>ASTIdentifier</code>) and method (<code>ASTMethod</code>)
+ * invocations, each template doing a hundred of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntrospectionBenchmark
+{
+    private Template properties;
+
+    private Template methods;
+
+    private VelocityContext context;
+
+    private static String repeat(String text, int times)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; ++i)
+        {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+
+    @Setup
+    public void setUp()
+    {
+        VelocityEngine engine = Benchmarks.createEngine();
+        engine.init();
+        Benchmarks.getRepository(engine).putStringResource("properties", repeat("$user.name$user.admin", 50));
+        Benchmarks.getRepository(engine).putStringResource("methods", repeat("$user.greet('hi', 3)$user.messages.size()", 50));
+        properties = engine.getTemplate("properties");
+        methods = engine.getTemplate("methods");
+        context = new VelocityContext(Benchmarks.createData());
+    }
+
+    @Benchmark
+    public long identifiers()
+    {
+        Benchmarks.NullWriter writer = new Benchmarks.NullWriter();
+        properties.merge(context, writer);
+        return writer.getCount();
+    }
+
+    @Benchmark
+    public long methods()
+    {
+        Benchmarks.NullWriter writer = new Benchmarks.NullWriter();
+        methods.merge(context, writer);
+        return writer.getCount();
+    }
+}
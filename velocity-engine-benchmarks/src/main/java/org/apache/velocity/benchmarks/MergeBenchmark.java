@@ -0,0 +1,93 @@
+package org.apache.velocity.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.context.Context;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering throughput of {@link Template#merge(Context, java.io.Writer)}, with a plain
+ * {@link VelocityContext} or with chained contexts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MergeBenchmark
+{
+    @Param({ "small", "large", "macros" })
+    public String template;
+
+    @Param({ "plain", "chained" })
+    public String context;
+
+    private Template compiled;
+
+    private Map<String, Object> data;
+
+    @Setup
+    public void setUp()
+    {
+        VelocityEngine engine = Benchmarks.createEngine();
+        engine.init();
+        Benchmarks.getRepository(engine).putStringResource("small", Benchmarks.SMALL);
+        Benchmarks.getRepository(engine).putStringResource("large", Benchmarks.LARGE);
+        Benchmarks.getRepository(engine).putStringResource("macros", Benchmarks.MACRO_HEAVY);
+        compiled = engine.getTemplate(template);
+        data = Benchmarks.createData();
+    }
+
+    private Context createContext()
+    {
+        if ("chained".equals(context))
+        {
+            // data in the outermost of three chained contexts
+            VelocityContext global = new VelocityContext(data);
+            return new VelocityContext(new VelocityContext(global));
+        }
+        return new VelocityContext(data);
+    }
+
+    @Benchmark
+    public long merge()
+    {
+        Benchmarks.NullWriter writer = new Benchmarks.NullWriter();
+        compiled.merge(createContext(), writer);
+        return writer.getCount();
+    }
+}
@@ -0,0 +1,89 @@
+package org.apache.velocity.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of <code>ResourceManagerImpl.getResource</code> (through
+ * <code>getTemplate()</code>) on cache hits, from many threads at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ResourceContentionBenchmark
+{
+    /**
+     * number of distinct templates requested
+     */
+    @Param({ "1", "50" })
+    public int templates;
+
+    /**
+     * resource.manager.defaultcache.size: 0 is unbounded
+     */
+    @Param({ "0", "89" })
+    public int cacheSize;
+
+    private VelocityEngine engine;
+
+    private String[] names;
+
+    @Setup
+    public void setUp()
+    {
+        engine = Benchmarks.createEngine();
+        engine.setProperty("resource.manager.defaultcache.size", String.valueOf(cacheSize));
+        engine.init();
+        names = new String[templates];
+        for (int i = 0; i < templates; ++i)
+        {
+            names[i] = "template" + i;
+            Benchmarks.getRepository(engine).putStringResource(names[i], Benchmarks.SMALL);
+            engine.getTemplate(names[i]);
+        }
+    }
+
+    @Benchmark
+    public Template getTemplate()
+    {
+        return engine.getTemplate(names[ThreadLocalRandom.current().nextInt(names.length)]);
+    }
+}
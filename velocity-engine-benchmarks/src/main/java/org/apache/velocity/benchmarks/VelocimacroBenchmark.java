@@ -0,0 +1,87 @@
+package org.apache.velocity.benchmarks;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of <code>VelocimacroProxy</code> calls: a thousand calls of a small
+ * macro, with and without a body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VelocimacroBenchmark
+{
+    private Template calls;
+
+    private Template blockCalls;
+
+    private VelocityContext context;
+
+    @Setup
+    public void setUp()
+    {
+        VelocityEngine engine = Benchmarks.createEngine();
+        engine.init();
+        Benchmarks.getRepository(engine).putStringResource("calls",
+            "#macro(cell $value)<td>$value</td>#end" +
+            "#foreach($i in [1..1000])#cell($i)#end");
+        Benchmarks.getRepository(engine).putStringResource("blockCalls",
+            "#macro(row $value)<tr>$bodyContent $value</tr>#end" +
+            "#foreach($i in [1..1000])#@row($i)<td>x</td>#end#end");
+        calls = engine.getTemplate("calls");
+        blockCalls = engine.getTemplate("blockCalls");
+        context = new VelocityContext();
+    }
+
+    @Benchmark
+    public long macroCalls()
+    {
+        Benchmarks.NullWriter writer = new Benchmarks.NullWriter();
+        calls.merge(context, writer);
+        return writer.getCount();
+    }
+
+    @Benchmark
+    public long blockMacroCalls()
+    {
+        Benchmarks.NullWriter writer = new Benchmarks.NullWriter();
+        blockCalls.merge(context, writer);
+        return writer.getCount();
+    }
+}
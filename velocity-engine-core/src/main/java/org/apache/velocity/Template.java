@@ -26,19 +26,30 @@
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.io.ByteVelocityWriter;
+import org.apache.velocity.runtime.ParsedTemplateCache;
+import org.apache.velocity.runtime.RenderListener;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.directive.Scope;
 import org.apache.velocity.runtime.directive.StopCommand;
 import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.OptimizerReport;
+import org.apache.velocity.runtime.parser.node.RenderPlanner;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.apache.velocity.runtime.parser.node.TemplateCompactor;
+import org.apache.velocity.runtime.parser.node.TemplateOptimizer;
+import org.apache.velocity.runtime.resource.DependencyGraph;
 import org.apache.velocity.runtime.resource.Resource;
 import org.apache.velocity.runtime.resource.ResourceManager;
+import org.apache.velocity.util.HeapSizeEstimator;
 import org.slf4j.Logger;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -78,6 +89,8 @@ public class Template extends Resource
 
     private VelocityException errorCondition = null;
 
+    private OptimizerReport optimizerReport = null;
+
     /** Default constructor */
     public Template()
     {
@@ -95,6 +108,38 @@ public Map<String, Object> getMacros()
         return macros;
     }
 
+    /**
+     * Estimates the heap retained by this template: its AST, along with the strings,
+     * tokens and collections it owns, and the macros it defines. Objects shared with the
+     * engine (runtime services, introspection caches, global macros) are not accounted.
+     * @return estimated size in bytes, zero if the template has not been loaded
+     * @since 2.0
+     */
+    public long getRetainedSize()
+    {
+        if (data == null)
+        {
+            return 0;
+        }
+        HeapSizeEstimator estimator = new HeapSizeEstimator();
+        estimator.add(data);
+        for (Object macro : macros.values())
+        {
+            estimator.add(macro);
+        }
+        return estimator.getSize();
+    }
+
+    /**
+     * get what the optimizer removed from this template, if it has been optimized
+     * @return optimizer report, or null if templates are not optimized
+     * @since 2.0
+     */
+    public OptimizerReport getOptimizerReport()
+    {
+        return optimizerReport;
+    }
+
     /**
      *  gets the named resource as a stream, parses and inits
      *
@@ -143,10 +188,28 @@ public boolean process()
             try
             {
                 BufferedReader br = new BufferedReader( reader );
-                data = rsvc.parse( br, this);
+
+                /*
+                 *  go through the on-disk cache of parsed templates, if any
+                 */
+
+                ParsedTemplateCache parsedTemplateCache = rsvc.getParsedTemplateCache();
+                if (parsedTemplateCache != null)
+                {
+                    data = parsedTemplateCache.parse( br, this);
+                }
+                else
+                {
+                    data = rsvc.parse( br, this);
+                }
                 initDocument();
                 return true;
             }
+            catch ( IOException ioe )
+            {
+                errorCondition = new VelocityException("Exception reading Template " + getName(), ioe);
+                throw errorCondition;
+            }
             catch ( ParseException pex )
             {
                 /*
@@ -230,6 +293,36 @@ public void initDocument()
 
             ((SimpleNode)data).init( ica, rsvc);
 
+            /*
+             *  optimize the initialized AST if asked so
+             */
+
+            if (rsvc.getBoolean(RuntimeConstants.RUNTIME_OPTIMIZE_TEMPLATES, false))
+            {
+                optimizerReport = TemplateOptimizer.optimize((SimpleNode)data, ica, name);
+                log.debug("optimized {}", optimizerReport);
+            }
+
+            /*
+             *  attach render plans to the initialized AST if asked so
+             */
+
+            if (rsvc.getBoolean(RuntimeConstants.RUNTIME_RENDER_PLANS, false))
+            {
+                int merged = RenderPlanner.plan((SimpleNode)data, rsvc);
+                log.debug("planned template {}: {} static nodes merged", name, merged);
+            }
+
+            /*
+             *  compact the AST if asked so, once no phase needs the tokens anymore
+             */
+
+            if (rsvc.getBoolean(RuntimeConstants.RUNTIME_COMPACT_TEMPLATES, false))
+            {
+                int released = TemplateCompactor.compact((SimpleNode)data);
+                log.debug("compacted template {}: {} nodes released their tokens", name, released);
+            }
+
             String property = scopeName+'.'+RuntimeConstants.PROVIDE_SCOPE_CONTROL;
             provideScope = rsvc.getBoolean(property, provideScope);
         }
@@ -265,6 +358,37 @@ public void merge( Context context, Writer writer)
     }
 
 
+    /**
+     * The AST node structure is merged with the
+     * context to produce the final output, directly encoded
+     * towards an output stream. Static text of the template is
+     * only encoded once, and then copied as is.
+     *
+     *  @param context Context with data elements accessed by template
+     *  @param out output stream for rendered template, flushed but not closed
+     *  @param charset output encoding
+     *  @throws ResourceNotFoundException if template not found
+     *          from any available source.
+     *  @throws ParseErrorException if template cannot be parsed due
+     *          to syntax (or other) error.
+     *  @throws MethodInvocationException When a method on a referenced object in the context could not invoked.
+     *  @since 2.0
+     */
+    public void merge( Context context, OutputStream out, Charset charset)
+        throws ResourceNotFoundException, ParseErrorException, MethodInvocationException
+    {
+        ByteVelocityWriter writer = new ByteVelocityWriter(out, charset);
+        merge(context, writer, null);
+        try
+        {
+            writer.finish();
+        }
+        catch (IOException e)
+        {
+            throw new VelocityException("IO Error rendering template '"+ name + "'", e);
+        }
+    }
+
     /**
      * The AST node structure is merged with the
      * context to produce the final output.
@@ -310,6 +434,7 @@ public void merge( Context context, Writer writer, List macroLibraries)
 
             if (macroLibraries != null)
             {
+                DependencyGraph graph = rsvc.getDependencyGraph();
                 for (String macroLibrary : (List<String>)macroLibraries)
                 {
                     /**
@@ -319,6 +444,10 @@ public void merge( Context context, Writer writer, List macroLibraries)
                     {
                         Template t = rsvc.getTemplate(macroLibrary);
                         libTemplates.add(t);
+                        if (graph != null)
+                        {
+                            graph.addDependency(name, macroLibrary);
+                        }
                     }
                     catch (ResourceNotFoundException re)
                     {
@@ -356,7 +485,23 @@ public void merge( Context context, Writer writer, List macroLibraries)
                 ica.pushCurrentTemplateName( name );
                 ica.setCurrentResource( this );
 
-                ( (SimpleNode) data ).render( ica, writer);
+                RenderListener listener = rsvc.getRenderListener();
+                if (listener != null && listener.sample())
+                {
+                    long start = System.nanoTime();
+                    try
+                    {
+                        ( (SimpleNode) data ).render( ica, writer);
+                    }
+                    finally
+                    {
+                        listener.templateMerged(this, System.nanoTime() - start);
+                    }
+                }
+                else
+                {
+                    ( (SimpleNode) data ).render( ica, writer);
+                }
             }
             catch (StopCommand stop)
             {
@@ -24,13 +24,22 @@
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.EvaluateCache;
+import org.apache.velocity.runtime.ParsedTemplateCache;
+import org.apache.velocity.runtime.PreloadReport;
+import org.apache.velocity.runtime.RenderListener;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.RuntimeInstance;
 import org.slf4j.Logger;
 
 import java.io.Reader;
 import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * <p>
@@ -89,6 +98,8 @@ public void init()
 
     /**
      * Resets the instance, so Velocity can be re-initialized again.
+     * The resource loaders are closed, which stops their background
+     * change detection.
      *
      * @since 2.0.0
      */
@@ -352,6 +363,138 @@ public Logger getLog()
         return ri.getLog();
     }
 
+    /**
+     * Returns the cache of evaluated sources, enabled by the
+     * <code>runtime.evaluate.cache.size</code> property, to check its hit rate.
+     * @return the evaluate cache, or null if it is disabled
+     * @since 2.0
+     */
+    public EvaluateCache getEvaluateCache()
+    {
+        return ri.getEvaluateCache();
+    }
+
+    /**
+     * Installs or removes, at any time, the listener receiving rendering timing
+     * events, for instance a {@link org.apache.velocity.runtime.RenderMetrics}.
+     * @param listener render listener, or null to stop instrumenting rendering
+     * @since 2.0
+     */
+    public void setRenderListener(RenderListener listener)
+    {
+        ri.setRenderListener(listener);
+    }
+
+    /**
+     * Returns the listener receiving rendering timing events.
+     * @return the render listener, or null if rendering is not instrumented
+     * @since 2.0
+     */
+    public RenderListener getRenderListener()
+    {
+        return ri.getRenderListener();
+    }
+
+    /**
+     * Lists the templates which the configured resource loaders can enumerate:
+     * files under the file loader paths, jar loader entries and the resources
+     * of default string repositories.
+     * @return template names
+     * @since 2.0
+     */
+    public List<String> listTemplates()
+    {
+        return ri.listTemplates();
+    }
+
+    /**
+     * Lists the templates which the configured resource loaders can enumerate
+     * and which have one of the given extensions, like "vm".
+     * @param extensions file extensions, without the dot; none for all templates
+     * @return template names
+     * @since 2.0
+     */
+    public List<String> listTemplates(String... extensions)
+    {
+        return ri.listTemplates(extensions);
+    }
+
+    /**
+     * Lists the templates which directly or transitively depend upon a resource, by
+     * <code>#parse</code>, <code>#include</code> or macro libraries. Dependencies are only
+     * recorded when the <code>resource.manager.dependency.tracking</code> property is true.
+     * @param resourceName template or content name
+     * @return dependent template names
+     * @since 2.0
+     */
+    public Set<String> getTemplateDependents(String resourceName)
+    {
+        return ri.getTemplateDependents(resourceName);
+    }
+
+    /**
+     * Estimates the heap retained by each cached template.
+     * @return retained sizes in bytes, by template name
+     * @see Template#getRetainedSize()
+     * @since 2.0
+     */
+    public Map<String, Long> getTemplateSizes()
+    {
+        return ri.getTemplateSizes();
+    }
+
+    /**
+     * Loads in parallel the templates returned by {@link #listTemplates(String...)} for
+     * the extensions of the <code>runtime.preload.extensions</code> property, so that they
+     * are parsed and initialized before they are first used. They are only kept if their
+     * loader caches resources and the resource cache can hold them: the templates which
+     * have been discarded are logged and listed in the report.
+     * @return preload report, with load times, failures and discarded templates
+     * @since 2.0
+     */
+    public PreloadReport preload()
+    {
+        String[] extensions = ri.getConfiguration().getStringArray(RuntimeConstants.RUNTIME_PRELOAD_EXTENSIONS);
+        return ri.preload(ri.listTemplates(extensions), null);
+    }
+
+    /**
+     * Loads the given templates in parallel, so that they are parsed and initialized
+     * before they are first used. The pool parallelism is given by the
+     * <code>runtime.preload.parallelism</code> property.
+     * @param templateNames templates to load
+     * @return preload report, with load times and failures
+     * @since 2.0
+     */
+    public PreloadReport preload(Collection<String> templateNames)
+    {
+        return ri.preload(templateNames, null);
+    }
+
+    /**
+     * Loads the given templates in parallel on the given pool, so that they are
+     * parsed and initialized before they are first used.
+     * @param templateNames templates to load
+     * @param pool pool to run on
+     * @return preload report, with load times and failures
+     * @since 2.0
+     */
+    public PreloadReport preload(Collection<String> templateNames, ForkJoinPool pool)
+    {
+        return ri.preload(templateNames, pool);
+    }
+
+    /**
+     * Returns the on-disk cache of parsed templates, enabled by the
+     * <code>runtime.parsed.cache.path</code> property, to check its hit count.
+     * @return the parsed templates cache, or null if it is disabled
+     * @since 2.0
+     */
+    public ParsedTemplateCache getParsedTemplateCache()
+    {
+        return ri.getParsedTemplateCache();
+    }
+
     /**
      *  <p>
      *  Sets an application attribute (which can be any Object) that will be
@@ -293,6 +293,17 @@ boolean hasMethodExceptionEventHandler()
         return methodExceptionHandler != null;
     }
 
+    /**
+     * Check whether this event cartridge has invalid reference event handlers
+     *
+     * @return true if an invalid reference event handler has been registered
+     * @since 2.0
+     */
+    boolean hasInvalidReferenceEventHandler()
+    {
+        return !invalidReferenceHandlers.isEmpty();
+    }
+
     /**
      * Call method exception event handler
      *
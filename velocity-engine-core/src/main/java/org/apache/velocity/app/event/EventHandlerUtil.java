@@ -169,6 +169,21 @@ public static String includeEvent(RuntimeServices rsvc,
     }
 
 
+    /**
+     * Check whether invalid references could be reported to some handler, either
+     * by the application event cartridge or by an event cartridge attached to the context.
+     *
+     * @param rsvc current instance of RuntimeServices
+     * @param context current context
+     * @return true if an invalid reference event handler has been registered, or if the context has an event cartridge
+     * @since 2.0
+     */
+    public static boolean hasInvalidReferenceHandlers(RuntimeServices rsvc, InternalContextAdapter context)
+    {
+        return rsvc.getApplicationEventCartridge().hasInvalidReferenceEventHandler()
+            || context.getEventCartridge() != null;
+    }
+
     /**
      * Called when an invalid get method is encountered.
      *
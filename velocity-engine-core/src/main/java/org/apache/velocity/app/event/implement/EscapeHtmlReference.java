@@ -2,6 +2,9 @@
 
 import org.apache.commons.lang3.StringEscapeUtils;
 
+import java.io.IOException;
+import java.io.Writer;
+
 /*
  * Licensed to the Apache Software Foundation (ASF) under one
  * or more contributor license agreements.  See the NOTICE file
@@ -43,6 +46,19 @@ protected String escape(Object text)
         return StringEscapeUtils.escapeHtml4(text.toString());
     }
 
+    /**
+     * Escape the text straight into the writer.
+     *
+     * @param text
+     * @param writer
+     * @throws IOException
+     * @since 2.0
+     */
+    protected void escape(Object text, Writer writer) throws IOException
+    {
+        StringEscapeUtils.ESCAPE_HTML4.translate(text.toString(), writer);
+    }
+
     /**
      * @return attribute "eventhandler.escape.html.match"
      */
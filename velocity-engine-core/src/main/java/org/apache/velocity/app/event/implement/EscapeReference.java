@@ -21,13 +21,21 @@
 
 import org.apache.velocity.app.event.ReferenceInsertionEventHandler;
 import org.apache.velocity.context.Context;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.Renderable;
 import org.apache.velocity.util.RuntimeServicesAware;
 
 import org.apache.commons.lang3.StringUtils;
 
 import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 /**
@@ -51,6 +59,14 @@
  *
  * Regular expressions should follow the format used by the Java language.  More info in the
  * <a href="http://docs.oracle.com/javase/7/docs/api/java/util/regex/Pattern.html">Pattern class documentation</a>.
+ * The expression is compiled once, and whether a reference matches is remembered per reference literal.
+ *
+ * <P>When the <code>eventhandler.escape.streaming</code> property is true, the escaped value
+ * is not built as a string: the handler returns a {@link Renderable} which escapes the value
+ * straight into the template writer. Subclasses support it by overriding
+ * {@link #escape(Object, Writer)}; the others keep escaping to strings. Like the
+ * escaped string, the streamed value is null, so that the null reference handling
+ * applies, when the text of the inserted value is null.
  *
  * @author <a href="mailto:wglass@forio.com">Will Glass-Husain </a>
  * @version $Id$
@@ -60,8 +76,19 @@ public abstract class EscapeReference implements ReferenceInsertionEventHandler,
 
     private RuntimeServices rs;
 
+    /**
+     * Above this number of distinct reference literals, remembered matches are forgotten.
+     */
+    private static final int MATCH_CACHE_SIZE = 10000;
+
     private String matchRegExp = null;
 
+    private Pattern matchPattern = null;
+
+    private final ConcurrentMap<String, Boolean> matches = new ConcurrentHashMap<>();
+
+    private boolean streaming = false;
+
     protected Logger log;
 
     /**
@@ -73,6 +100,26 @@ public abstract class EscapeReference implements ReferenceInsertionEventHandler,
      */
     protected abstract String escape(Object text);
 
+    /**
+     * Escape the given text into the given writer. Override this in a subclass
+     * to escape without building the escaped string. It is only called for texts
+     * whose string form is not null, and must then write what {@link #escape(Object)}
+     * returns.
+     *
+     * @param text the text to escape
+     * @param writer where to write the escaped text
+     * @throws IOException if the writer fails
+     * @since 2.0
+     */
+    protected void escape(Object text, Writer writer) throws IOException
+    {
+        String escaped = escape(text);
+        if (escaped != null)
+        {
+            writer.write(escaped);
+        }
+    }
+
     /**
      * Specify the configuration attribute that specifies the
      * regular expression.  Ideally should be in a form
@@ -97,20 +144,56 @@ public Object referenceInsert(Context context, String reference, Object value)
             return value;
         }
 
-        if (matchRegExp == null)
+        if (matchPattern != null && !matches(reference))
         {
-            return escape(value);
+            return value;
         }
 
-        else if (reference.matches(matchRegExp))
+        if (streaming)
         {
-            return escape(value);
+            String text = value.toString();
+            return text == null ? null : new EscapedValue(text);
         }
+        return escape(value);
+    }
 
-        else
+    /**
+     * Tells whether this class escapes straight into writers, rather than relying upon
+     * the default {@link #escape(Object, Writer)} which builds the escaped string anyway.
+     */
+    private boolean escapesIntoWriters()
+    {
+        for (Class<?> c = getClass(); c != EscapeReference.class; c = c.getSuperclass())
         {
-            return value;
+            try
+            {
+                c.getDeclaredMethod("escape", Object.class, Writer.class);
+                return true;
+            }
+            catch (NoSuchMethodException nsme)
+            {
+                // look further up
+            }
         }
+        return false;
+    }
+
+    /**
+     * Tells whether the reference matches the configured regular expression.
+     */
+    private boolean matches(String reference)
+    {
+        Boolean match = matches.get(reference);
+        if (match == null)
+        {
+            match = matchPattern.matcher(reference).matches();
+            if (matches.size() >= MATCH_CACHE_SIZE)
+            {
+                matches.clear();
+            }
+            matches.put(reference, match);
+        }
+        return match;
     }
 
     /**
@@ -124,6 +207,7 @@ public void setRuntimeServices(RuntimeServices rs)
         log = rs.getLog("event");
 
         // Get the regular expression pattern.
+        matchPattern = null;
         matchRegExp = StringUtils.trim(rs.getString(getMatchAttribute()));
         if (org.apache.commons.lang3.StringUtils.isEmpty(matchRegExp))
         {
@@ -135,7 +219,7 @@ public void setRuntimeServices(RuntimeServices rs)
         {
             try
             {
-                "".matches(matchRegExp);
+                matchPattern = Pattern.compile(matchRegExp);
             }
             catch (PatternSyntaxException E)
             {
@@ -144,6 +228,9 @@ public void setRuntimeServices(RuntimeServices rs)
                 matchRegExp = null;
             }
         }
+        matches.clear();
+
+        streaming = rs.getBoolean(RuntimeConstants.EVENTHANDLER_ESCAPE_STREAMING, false) && escapesIntoWriters();
 
     }
 
@@ -158,4 +245,29 @@ protected RuntimeServices getRuntimeServices()
         return rs;
     }
 
+    /**
+     * Value escaped as it is rendered. It still escapes to a string for the
+     * event handlers which may follow in the chain.
+     */
+    private final class EscapedValue implements Renderable
+    {
+        private final String value;
+
+        EscapedValue(String value)
+        {
+            this.value = value;
+        }
+
+        public boolean render(InternalContextAdapter context, Writer writer) throws IOException
+        {
+            escape(value, writer);
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            return escape(value);
+        }
+    }
 }
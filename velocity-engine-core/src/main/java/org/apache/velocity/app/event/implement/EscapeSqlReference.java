@@ -19,6 +19,9 @@
  * under the License.
  */
 
+import java.io.IOException;
+import java.io.Writer;
+
 /**
  * Escapes the characters in a String to be suitable to pass to an SQL query.
  *
@@ -39,6 +42,27 @@ protected String escape(Object text)
         return text.toString().replaceAll("'", "''");
     }
 
+    /**
+     * Escape the text straight into the writer.
+     *
+     * @param text
+     * @param writer
+     * @throws IOException
+     * @since 2.0
+     */
+    protected void escape(Object text, Writer writer) throws IOException
+    {
+        String string = text.toString();
+        int start = 0;
+        for (int i = string.indexOf('\''); i >= 0; i = string.indexOf('\'', start))
+        {
+            writer.write(string, start, i + 1 - start);
+            writer.write('\'');
+            start = i + 1;
+        }
+        writer.write(string, start, string.length() - start);
+    }
+
     /**
      * @return attribute "eventhandler.escape.sql.match"
      */
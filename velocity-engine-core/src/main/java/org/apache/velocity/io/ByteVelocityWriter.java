@@ -0,0 +1,376 @@
+package org.apache.velocity.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Byte-oriented variant of the {@link VelocityWriter}, which encodes characters
+ * itself towards an output stream, and also accepts already encoded bytes,
+ * so that static template text can be encoded once and copied verbatim.
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public final class ByteVelocityWriter extends Writer implements Filter
+{
+    private static int defaultBufferSize = 8 * 1024;
+
+    /**
+     * samples used to probe charsets: ASCII, latin, CJK and a supplementary character
+     */
+    private static final String[] PROBES = { "a", "\u00e9", "\u3042", "\u20ac", "\ud83d\ude00" };
+
+    private static final ConcurrentMap<Charset, Boolean> CONCATENABLE = new ConcurrentHashMap<>();
+
+    private final OutputStream out;
+
+    private final Charset charset;
+
+    private final CharsetEncoder encoder;
+
+    /**
+     * whether text can be encoded separately and concatenated
+     */
+    private final boolean concatenable;
+
+    /**
+     * characters not yet encoded
+     */
+    private final CharBuffer chars;
+
+    /**
+     * bytes not yet written to the output stream
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * Create a byte-oriented writer that uses default-sized buffers.
+     *
+     * @param out output stream to write to
+     * @param charset output encoding
+     */
+    public ByteVelocityWriter(OutputStream out, Charset charset)
+    {
+        this(out, charset, defaultBufferSize);
+    }
+
+    /**
+     * Create a byte-oriented writer that uses buffers of the given size.
+     *
+     * @param out output stream to write to
+     * @param charset output encoding
+     * @param sz buffers size, a positive integer
+     *
+     * @exception  IllegalArgumentException  If sz is <= 0
+     */
+    public ByteVelocityWriter(OutputStream out, Charset charset, int sz)
+    {
+        if (sz <= 0)
+        {
+            throw new IllegalArgumentException("Buffer size <= 0");
+        }
+        this.out = out;
+        this.charset = charset;
+        encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        concatenable = isConcatenable(charset);
+        chars = CharBuffer.allocate(sz);
+        bytes = ByteBuffer.allocate(Math.max(sz, (int)Math.ceil(sz * encoder.maxBytesPerChar())));
+    }
+
+    /**
+     * Checks whether separately encoded strings can be concatenated. Charsets emitting a byte
+     * order mark (UTF-16) or using shift states (ISO-2022-JP) cannot be encoded by chunks, which
+     * only shows with pairs of non-ASCII characters, or of ASCII and non-ASCII characters.
+     */
+    private static boolean isConcatenable(Charset charset)
+    {
+        Boolean concatenable = CONCATENABLE.get(charset);
+        if (concatenable == null)
+        {
+            concatenable = Boolean.TRUE;
+            probe:
+            for (String first : PROBES)
+            {
+                for (String second : PROBES)
+                {
+                    byte[] joined = (first + second).getBytes(charset);
+                    byte[] head = first.getBytes(charset);
+                    byte[] tail = second.getBytes(charset);
+                    if (joined.length != head.length + tail.length
+                        || !Arrays.equals(joined, concat(head, tail)))
+                    {
+                        concatenable = Boolean.FALSE;
+                        break probe;
+                    }
+                }
+            }
+            CONCATENABLE.put(charset, concatenable);
+        }
+        return concatenable;
+    }
+
+    private static byte[] concat(byte[] head, byte[] tail)
+    {
+        byte[] bytes = Arrays.copyOf(head, head.length + tail.length);
+        System.arraycopy(tail, 0, bytes, head.length, tail.length);
+        return bytes;
+    }
+
+    /**
+     * @return the output encoding
+     */
+    public Charset getCharset()
+    {
+        return charset;
+    }
+
+    /**
+     * @return whether bytes encoded separately can be written with {@link #writeBytes(byte[])}
+     */
+    public boolean acceptsEncodedBytes()
+    {
+        return concatenable;
+    }
+
+    /**
+     * Write a single character.
+     * @param c
+     * @throws IOException
+     */
+    public void write(int c) throws IOException
+    {
+        if (!chars.hasRemaining())
+        {
+            encodeChars(false);
+        }
+        chars.put((char)c);
+    }
+
+    /**
+     * Write a portion of an array of characters.
+     * @param cbuf A character array
+     * @param off Offset from which to start reading characters
+     * @param len Number of characters to write
+     * @throws IOException
+     */
+    public void write(char cbuf[], int off, int len) throws IOException
+    {
+        while (len > 0)
+        {
+            if (!chars.hasRemaining())
+            {
+                encodeChars(false);
+            }
+            int n = Math.min(len, chars.remaining());
+            chars.put(cbuf, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Write a portion of a String.
+     * @param s String to be written
+     * @param off Offset from which to start reading characters
+     * @param len Number of characters to be written
+     * @throws IOException
+     */
+    public void write(String s, int off, int len) throws IOException
+    {
+        while (len > 0)
+        {
+            if (!chars.hasRemaining())
+            {
+                encodeChars(false);
+            }
+            int n = Math.min(len, chars.remaining());
+            chars.put(s, off, off + n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Write a string.
+     * @param s
+     * @throws IOException
+     */
+    public void write(String s) throws IOException
+    {
+        write(s, 0, s.length());
+    }
+
+    /**
+     * Write bytes already encoded with this writer's charset. It must only be
+     * called if {@link #acceptsEncodedBytes()} returns true.
+     * @param b encoded bytes
+     * @throws IOException
+     */
+    public void writeBytes(byte[] b) throws IOException
+    {
+        terminateChars();
+        if (b.length > bytes.remaining())
+        {
+            flushBytes();
+            if (b.length > bytes.remaining())
+            {
+                out.write(b);
+                return;
+            }
+        }
+        bytes.put(b);
+    }
+
+    /**
+     * Write the remaining bytes of a buffer, already encoded with this writer's charset,
+     * without changing its position. It must only be called if {@link #acceptsEncodedBytes()}
+     * returns true.
+     * @param b encoded bytes, for instance a direct buffer
+     * @throws IOException
+     */
+    public void writeBytes(ByteBuffer b) throws IOException
+    {
+        terminateChars();
+        ByteBuffer src = b.duplicate();
+        while (src.hasRemaining())
+        {
+            if (!bytes.hasRemaining())
+            {
+                flushBytes();
+            }
+            int n = Math.min(src.remaining(), bytes.remaining());
+            ByteBuffer chunk = src.duplicate();
+            chunk.limit(chunk.position() + n);
+            bytes.put(chunk);
+            src.position(src.position() + n);
+        }
+    }
+
+    /**
+     * @see org.apache.velocity.io.Filter#writeReference(java.lang.String)
+     */
+    public void writeReference(String ref) throws IOException
+    {
+        write(ref);
+    }
+
+    /**
+     * Encode all pending characters, write them to the output stream and flush it.
+     * @throws IOException
+     */
+    public void flush() throws IOException
+    {
+        encodeChars(false);
+        flushBytes();
+        out.flush();
+    }
+
+    /**
+     * Terminate the encoding of the output, and flush the output stream
+     * without closing it. The writer can then be reused for a new output.
+     * @throws IOException
+     */
+    public void finish() throws IOException
+    {
+        encodeChars(true);
+        while (encoder.flush(bytes).isOverflow())
+        {
+            flushBytes();
+        }
+        flushBytes();
+        out.flush();
+        encoder.reset();
+    }
+
+    /**
+     * Terminate the encoding of the output and close the output stream.
+     * @throws IOException
+     */
+    public void close() throws IOException
+    {
+        finish();
+        out.close();
+    }
+
+    private void encodeChars(boolean endOfInput) throws IOException
+    {
+        if (chars.position() == 0 && !endOfInput)
+        {
+            return;
+        }
+        chars.flip();
+        while (true)
+        {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow())
+            {
+                flushBytes();
+            }
+            else
+            {
+                break;
+            }
+        }
+        // an incomplete surrogate pair may remain
+        chars.compact();
+    }
+
+    /**
+     * Encodes all pending characters before encoded bytes get appended. A dangling high
+     * surrogate cannot be completed anymore, so it is encoded as malformed input rather
+     * than being left behind the bytes.
+     */
+    private void terminateChars() throws IOException
+    {
+        encodeChars(false);
+        if (chars.position() > 0)
+        {
+            encodeChars(true);
+            while (encoder.flush(bytes).isOverflow())
+            {
+                flushBytes();
+            }
+            encoder.reset();
+        }
+    }
+
+    private void flushBytes() throws IOException
+    {
+        if (bytes.position() > 0)
+        {
+            out.write(bytes.array(), 0, bytes.position());
+            bytes.clear();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package org.apache.velocity.runtime;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Size-bounded cache of the initialized node trees built by
+ * <code>RuntimeInstance.evaluate()</code> and the <code>#evaluate</code> directive,
+ * keyed by source text and namespace. The namespace is the log tag for
+ * <code>evaluate()</code> calls, and the enclosing template name for <code>#evaluate</code>.
+ * Since the parsed nodes keep a reference to the enclosing template, a tree is only
+ * reused for the very template it has been parsed in: once a template is reloaded,
+ * its trees are replaced as the new version evaluates the same sources.</p>
+ *
+ * <p>Lookups never lock: they only stamp the access time of the found tree. When the
+ * cache is over its bound, the least recently used tree among a few sampled ones is
+ * evicted.</p>
+ *
+ * <p>Sources defining macros are never cached, so that evaluating them again
+ * registers their macros again.</p>
+ *
+ * <p>The cache is enabled by setting <code>runtime.evaluate.cache.size</code> to a positive value.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class EvaluateCache
+{
+    /**
+     * Number of trees compared when looking for the one to evict.
+     */
+    private static final int EVICTION_SAMPLES = 8;
+
+    private final int maxSize;
+
+    private final ConcurrentMap<Key, Entry> trees = new ConcurrentHashMap<>();
+
+    private final Object evictionLock = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxSize maximum number of cached trees
+     */
+    public EvaluateCache(int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Looks up an initialized tree.
+     * @param namespace log tag or name of the template in which the source is evaluated
+     * @param template template in which the source is evaluated, or null
+     * @param source source text
+     * @return cached tree, or null
+     */
+    public SimpleNode get(String namespace, Template template, String source)
+    {
+        Entry entry = trees.get(new Key(namespace, source));
+        if (entry == null || entry.template != template)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        entry.accessed = System.nanoTime();
+        hits.incrementAndGet();
+        return entry.tree;
+    }
+
+    /**
+     * Caches an initialized tree, unless it defines macros.
+     * @param namespace log tag or name of the template in which the source is evaluated
+     * @param template template in which the source is evaluated, or null
+     * @param source source text
+     * @param tree initialized tree
+     */
+    public void put(String namespace, Template template, String source, SimpleNode tree)
+    {
+        if (definesMacros(tree))
+        {
+            return;
+        }
+        trees.put(new Key(namespace, source), new Entry(template, tree));
+        if (trees.size() > maxSize)
+        {
+            evict();
+        }
+    }
+
+    /**
+     * Empties the cache.
+     */
+    public void clear()
+    {
+        trees.clear();
+    }
+
+    /**
+     * @return number of cached trees
+     */
+    public int size()
+    {
+        return trees.size();
+    }
+
+    /**
+     * @return number of lookups which found a cached tree
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups which did not find a cached tree
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return number of trees evicted because of the cache bound
+     */
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * @return ratio of lookups which found a cached tree, or 0 if there was no lookup
+     */
+    public double getHitRate()
+    {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double)h / total;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "evaluate cache: " + size() + " trees, " + getHitCount() + " hits, "
+            + getMissCount() + " misses, " + getEvictionCount() + " evictions";
+    }
+
+    private static boolean definesMacros(Node node)
+    {
+        if (node instanceof ASTDirective && "macro".equals(((ASTDirective)node).getDirectiveName()))
+        {
+            return true;
+        }
+        int children = node.jjtGetNumChildren();
+        for (int i = 0; i < children; ++i)
+        {
+            if (definesMacros(node.jjtGetChild(i)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evicts trees until the cache fits its bound.
+     */
+    private void evict()
+    {
+        synchronized (evictionLock)
+        {
+            while (trees.size() > maxSize)
+            {
+                Map.Entry<Key, Entry> victim = null;
+                int samples = 0;
+                for (Map.Entry<Key, Entry> candidate : trees.entrySet())
+                {
+                    if (victim == null || candidate.getValue().accessed < victim.getValue().accessed)
+                    {
+                        victim = candidate;
+                    }
+                    if (++samples == EVICTION_SAMPLES)
+                    {
+                        break;
+                    }
+                }
+                if (victim == null)
+                {
+                    break;
+                }
+                if (trees.remove(victim.getKey(), victim.getValue()))
+                {
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static final class Entry
+    {
+        private final Template template;
+        private final SimpleNode tree;
+        private volatile long accessed = System.nanoTime();
+
+        Entry(Template template, SimpleNode tree)
+        {
+            this.template = template;
+            this.tree = tree;
+        }
+    }
+
+    private static final class Key
+    {
+        private final String namespace;
+        private final String source;
+        private final int hash;
+
+        Key(String namespace, String source)
+        {
+            this.namespace = namespace;
+            this.source = source;
+            this.hash = 31 * namespace.hashCode() + source.hashCode();
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key)obj;
+            return hash == other.hash && namespace.equals(other.namespace) && source.equals(other.source);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package org.apache.velocity.runtime;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.ASTEscape;
+import org.apache.velocity.runtime.parser.node.ASTEscapedDirective;
+import org.apache.velocity.runtime.parser.node.ASTWord;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.apache.velocity.runtime.parser.node.TemplateSerializer;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * <p>On-disk cache of parsed templates, so that a newly started engine does not have
+ * to run the parser again on templates it has already seen.</p>
+ *
+ * <p>Each template is stored in its own file, named after a hash of the template content
+ * and of a signature of everything else the parser output depends upon: the engine and
+ * serialization format versions, and the runtime properties and directives which change
+ * the way templates are parsed. Files are read through memory mappings and hold the
+ * uninitialized tree, as serialized by {@link TemplateSerializer}, which is then
+ * initialized like a freshly parsed one.</p>
+ *
+ * <p>A file which cannot be read, is corrupted (checked by a CRC) or does not match the
+ * signature is ignored: the template is parsed again and the file is rewritten.</p>
+ *
+ * <p>Templates whose parsing depends upon the Velocimacros defined at that time, which
+ * contain escaped directives or unknown directives with bare word arguments, are not cached.</p>
+ *
+ * <p>The cache is enabled by setting <code>runtime.parsed.cache.path</code> to a directory.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class ParsedTemplateCache
+{
+    private static final int MAGIC = 0x56544331; // "VTC1"
+
+    private static final String SUFFIX = ".vtc";
+
+    private static final int HEADER_SIZE = 4 + 32 + 8 + 4 + 4;
+
+    private final RuntimeServices rsvc;
+
+    private final Path directory;
+
+    private final Logger log;
+
+    private volatile byte[] signature;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * @param rsvc runtime services
+     * @param directory cache directory, created if needed
+     * @param signature description of the parser settings
+     * @throws IOException if the directory cannot be created
+     */
+    public ParsedTemplateCache(RuntimeServices rsvc, Path directory, String signature)
+        throws IOException
+    {
+        this.rsvc = rsvc;
+        this.directory = Files.createDirectories(directory);
+        this.log = rsvc.getLog("parser");
+        setSignature(signature);
+    }
+
+    /**
+     * Changes the parser settings description, when directives are added or removed.
+     * @param signature description of the parser settings
+     */
+    public void setSignature(String signature)
+    {
+        this.signature = digest().digest((TemplateSerializer.FORMAT_VERSION + '/' + signature)
+            .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the tree of a template, from the cache if possible, else by parsing it
+     * and caching the result.
+     * @param reader template content
+     * @param template template being parsed
+     * @return root of the uninitialized tree
+     * @throws ParseException if the template cannot be parsed
+     * @throws IOException if the template content cannot be read
+     */
+    public SimpleNode parse(Reader reader, Template template)
+        throws ParseException, IOException
+    {
+        String content = read(reader);
+        byte[] sig = signature;
+        byte[] key = key(sig, content);
+        Path file = directory.resolve(toHex(key) + SUFFIX);
+
+        SimpleNode tree = load(file, sig, content.length(), template);
+        if (tree != null)
+        {
+            hits.incrementAndGet();
+            return tree;
+        }
+        misses.incrementAndGet();
+
+        tree = rsvc.parse(new StringReader(content), template);
+        if (dependsOnMacros(tree))
+        {
+            log.debug("not caching parsed template {}, which depends upon the defined Velocimacros", template.getName());
+        }
+        else
+        {
+            store(file, sig, content.length(), TemplateSerializer.serialize(tree));
+        }
+        return tree;
+    }
+
+    /**
+     * Deletes all cached trees.
+     * @throws IOException if a file cannot be deleted
+     */
+    public void clear() throws IOException
+    {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX))
+        {
+            for (Path file : files)
+            {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * @return cache directory
+     */
+    public Path getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * @return number of templates read from the cache
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return number of templates which had to be parsed
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return number of cache files which could not be used, or not be written
+     */
+    public long getErrorCount()
+    {
+        return errors.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "parsed templates cache " + directory + ": " + getHitCount() + " hits, "
+            + getMissCount() + " misses, " + getErrorCount() + " errors";
+    }
+
+    /**
+     * Tells whether the parser output may depend upon the Velocimacros defined when it ran,
+     * which are not part of the signature since they change as templates get loaded:
+     * escaped directives keep their backslash or not depending on whether their name is
+     * a macro, and calls to unknown directives with bare word arguments only are parse
+     * errors when they are macro calls.
+     */
+    private boolean dependsOnMacros(SimpleNode root)
+    {
+        boolean strictEscape = rsvc.getBoolean(RuntimeConstants.RUNTIME_REFERENCES_STRICT_ESCAPE, false);
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty())
+        {
+            Node node = stack.pop();
+            if (node instanceof ASTEscapedDirective || node instanceof ASTEscape)
+            {
+                if (!strictEscape)
+                {
+                    return true;
+                }
+            }
+            else if (node instanceof ASTDirective)
+            {
+                String name = ((ASTDirective)node).getDirectiveName();
+                if (!name.startsWith("@") && rsvc.getDirective(name) == null)
+                {
+                    for (int i = 0; i < node.jjtGetNumChildren(); ++i)
+                    {
+                        if (node.jjtGetChild(i) instanceof ASTWord)
+                        {
+                            return true;
+                        }
+                    }
+                }
+            }
+            for (int i = node.jjtGetNumChildren() - 1; i >= 0; --i)
+            {
+                stack.push(node.jjtGetChild(i));
+            }
+        }
+        return false;
+    }
+
+    private SimpleNode load(Path file, byte[] sig, int length, Template template)
+    {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (NoSuchFileException nsfe)
+        {
+            return null;
+        }
+        catch (IOException ioe)
+        {
+            errors.incrementAndGet();
+            log.warn("cannot read parsed template cache file {}: {}", file, ioe.getMessage());
+            return null;
+        }
+
+        try
+        {
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+            {
+                throw new IOException("not a cache file");
+            }
+            byte[] fileSig = new byte[sig.length];
+            buffer.get(fileSig);
+            long fileLength = buffer.getLong();
+            int crc = buffer.getInt();
+            int size = buffer.getInt();
+            if (!Arrays.equals(sig, fileSig) || fileLength != length)
+            {
+                throw new IOException("cache key mismatch");
+            }
+            if (size != buffer.remaining())
+            {
+                throw new IOException("truncated file");
+            }
+            ByteBuffer payload = buffer.slice();
+            if (crc(payload.duplicate()) != crc)
+            {
+                throw new IOException("checksum mismatch");
+            }
+            return TemplateSerializer.deserialize(payload, template);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            errors.incrementAndGet();
+            log.warn("ignoring parsed template cache file {} for template {}: {}",
+                     file, template.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(Path file, byte[] sig, int length, byte[] payload)
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.put(sig);
+        header.putLong(length);
+        header.putInt(crc(ByteBuffer.wrap(payload)));
+        header.putInt(payload.length);
+        header.flip();
+
+        Path tmp = null;
+        try
+        {
+            /* write a temporary file then rename it, so that concurrent readers never see a partial file */
+            tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE))
+            {
+                ByteBuffer body = ByteBuffer.wrap(payload);
+                while (header.hasRemaining() || body.hasRemaining())
+                {
+                    channel.write(new ByteBuffer[] { header, body });
+                }
+            }
+            try
+            {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException amnse)
+            {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        }
+        catch (IOException ioe)
+        {
+            errors.incrementAndGet();
+            log.warn("cannot write parsed template cache file {}: {}", file, ioe.getMessage());
+        }
+        finally
+        {
+            if (tmp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(tmp);
+                }
+                catch (IOException ioe) {}
+            }
+        }
+    }
+
+    private static String read(Reader reader) throws IOException
+    {
+        StringBuilder content = new StringBuilder(4096);
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) != -1)
+        {
+            content.append(buffer, 0, read);
+        }
+        return content.toString();
+    }
+
+    private static byte[] key(byte[] sig, String content)
+    {
+        MessageDigest digest = digest();
+        digest.update(sig);
+        digest.update(content.getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+
+    private static int crc(ByteBuffer buffer)
+    {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        while (buffer.hasRemaining())
+        {
+            int n = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return (int)crc.getValue();
+    }
+
+    private static MessageDigest digest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException nsae)
+        {
+            /* every Java platform is required to provide SHA-256 */
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        char[] hex = new char[2 * bytes.length];
+        for (int i = 0; i < bytes.length; ++i)
+        {
+            hex[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[2 * i + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,138 @@
+package org.apache.velocity.runtime;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@link TemplatePreloader} did: the load time of each template, the
+ * templates which could not be loaded and those which have not been cached.
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class PreloadReport
+{
+    private final SortedMap<String, Long> loadTimes = new TreeMap<>();
+    private final SortedMap<String, Throwable> failures = new TreeMap<>();
+    private final SortedSet<String> discarded = new TreeSet<>();
+    private long elapsedTime = 0;
+
+    synchronized void loaded(String templateName, long nanos)
+    {
+        loadTimes.put(templateName, nanos);
+    }
+
+    synchronized void failed(String templateName, Throwable cause)
+    {
+        failures.put(templateName, cause);
+    }
+
+    synchronized void discarded(Collection<String> templateNames)
+    {
+        discarded.addAll(templateNames);
+    }
+
+    synchronized void done(long nanos)
+    {
+        elapsedTime = nanos;
+    }
+
+    /**
+     * @return time in nanoseconds taken to load (read, parse and initialize) each
+     * successfully loaded template, by template name
+     */
+    public synchronized Map<String, Long> getLoadTimes()
+    {
+        return Collections.unmodifiableMap(new TreeMap<>(loadTimes));
+    }
+
+    /**
+     * @return exception thrown by each template which could not be loaded, by template name
+     */
+    public synchronized Map<String, Throwable> getFailures()
+    {
+        return Collections.unmodifiableMap(new TreeMap<>(failures));
+    }
+
+    /**
+     * @return loaded templates which have not been kept in the resource cache, since
+     * their loader doesn't cache resources or the cache is too small; they will be
+     * loaded again when first used
+     */
+    public synchronized Set<String> getDiscarded()
+    {
+        return Collections.unmodifiableSet(new TreeSet<>(discarded));
+    }
+
+    /**
+     * @return number of successfully loaded templates
+     */
+    public synchronized int getLoadedCount()
+    {
+        return loadTimes.size();
+    }
+
+    /**
+     * @return number of templates which could not be loaded
+     */
+    public synchronized int getFailedCount()
+    {
+        return failures.size();
+    }
+
+    /**
+     * @return sum of the load times of all templates, in nanoseconds
+     */
+    public synchronized long getTotalLoadTime()
+    {
+        long total = 0;
+        for (long nanos : loadTimes.values())
+        {
+            total += nanos;
+        }
+        return total;
+    }
+
+    /**
+     * @return wall clock time taken by the whole preloading, in nanoseconds
+     */
+    public synchronized long getElapsedTime()
+    {
+        return elapsedTime;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "preloaded " + loadTimes.size() + " templates in "
+            + TimeUnit.NANOSECONDS.toMillis(elapsedTime) + " ms ("
+            + TimeUnit.NANOSECONDS.toMillis(getTotalLoadTime()) + " ms of loading), "
+            + failures.size() + " failures, " + discarded.size() + " not cached";
+    }
+}
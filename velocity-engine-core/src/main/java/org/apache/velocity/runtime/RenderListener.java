@@ -0,0 +1,76 @@
+package org.apache.velocity.runtime;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.directive.Directive;
+import org.apache.velocity.runtime.resource.Resource;
+
+/**
+ * <p>Receives timing events from the rendering engine, once installed with
+ * {@link RuntimeInstance#setRenderListener(RenderListener)}.</p>
+ *
+ * <p>Before each event, the engine calls {@link #sample()}: the event is only timed
+ * and reported if it returns true, which lets implementations trade accuracy for
+ * overhead. Events are reported from the rendering threads, so implementations must
+ * be thread-safe and fast. When no listener is installed, the engine does not
+ * measure anything.</p>
+ *
+ * @see RenderMetrics
+ * @version $Id$
+ * @since 2.0
+ */
+public interface RenderListener
+{
+    /**
+     * Tells whether the event about to happen is to be timed and reported.
+     * @return true to report the event
+     */
+    boolean sample();
+
+    /**
+     * A template has been merged.
+     * @param template merged template
+     * @param nanos merge time, in nanoseconds
+     */
+    void templateMerged(Template template, long nanos);
+
+    /**
+     * A directive or a Velocimacro call has been rendered, for instance a whole
+     * <code>#foreach</code> loop or a <code>#parse</code> call.
+     * @param directive rendered directive
+     * @param nanos rendering time, in nanoseconds
+     */
+    void directiveRendered(Directive directive, long nanos);
+
+    /**
+     * A resource has been loaded or reloaded by the resource manager, which includes
+     * reading, parsing and initializing it for templates.
+     * @param resource loaded resource
+     * @param nanos loading time, in nanoseconds
+     */
+    void resourceLoaded(Resource resource, long nanos);
+
+    /**
+     * A method has been looked up, either in the introspection caches or not.
+     * @param hit whether it has been found in the caches
+     */
+    void introspectionLookup(boolean hit);
+}
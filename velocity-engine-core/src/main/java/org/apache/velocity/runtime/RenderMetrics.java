@@ -0,0 +1,377 @@
+package org.apache.velocity.runtime;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.directive.Directive;
+import org.apache.velocity.runtime.resource.Resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>{@link RenderListener} collecting per-template merge and load times, per-directive
+ * rendering times (by directive or Velocimacro name) and the introspection caches hit rate.
+ * Each measure keeps a count, a total, a maximum and a latency histogram with power of
+ * two buckets, from which percentiles are estimated.</p>
+ *
+ * <p>With a sampling interval of N, only one event out of N is measured (the choice is
+ * made by an unsynchronized counter, so it is only approximately one out of N under
+ * contention), and counts must be multiplied by N to estimate the real ones.</p>
+ *
+ * <p>Typical use:</p>
+ * <pre>
+ * RenderMetrics metrics = new RenderMetrics(10);
+ * engine.setRenderListener(metrics);
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+ *     new ObjectName("org.apache.velocity:type=RenderMetrics"));
+ * </pre>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class RenderMetrics implements RenderListener, RenderMetricsMBean
+{
+    /**
+     * Number of entries returned by the <code>getSlowest*()</code> methods.
+     */
+    public static final int TOP_SIZE = 10;
+
+    private final int samplingInterval;
+
+    /* unsynchronized on purpose: lost updates only make sampling slightly irregular */
+    private int tick = 0;
+
+    private final ConcurrentMap<String, Timer> merges = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Timer> directives = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Timer> loads = new ConcurrentHashMap<>();
+
+    private final AtomicLong introspectionHits = new AtomicLong();
+
+    private final AtomicLong introspectionMisses = new AtomicLong();
+
+    /**
+     * Builds metrics measuring every event.
+     */
+    public RenderMetrics()
+    {
+        this(1);
+    }
+
+    /**
+     * @param samplingInterval one out of how many events is measured
+     */
+    public RenderMetrics(int samplingInterval)
+    {
+        this.samplingInterval = Math.max(1, samplingInterval);
+    }
+
+    /**
+     * @see RenderListener#sample()
+     */
+    public boolean sample()
+    {
+        return samplingInterval == 1 || ++tick % samplingInterval == 0;
+    }
+
+    /**
+     * @see RenderListener#templateMerged(Template, long)
+     */
+    public void templateMerged(Template template, long nanos)
+    {
+        timer(merges, template.getName()).record(nanos);
+    }
+
+    /**
+     * @see RenderListener#directiveRendered(Directive, long)
+     */
+    public void directiveRendered(Directive directive, long nanos)
+    {
+        timer(directives, directive.getName()).record(nanos);
+    }
+
+    /**
+     * @see RenderListener#resourceLoaded(Resource, long)
+     */
+    public void resourceLoaded(Resource resource, long nanos)
+    {
+        timer(loads, resource.getName()).record(nanos);
+    }
+
+    /**
+     * @see RenderListener#introspectionLookup(boolean)
+     */
+    public void introspectionLookup(boolean hit)
+    {
+        (hit ? introspectionHits : introspectionMisses).incrementAndGet();
+    }
+
+    /**
+     * @return merge times by template name
+     */
+    public Map<String, Timer> getMergeTimers()
+    {
+        return Collections.unmodifiableMap(new TreeMap<>(merges));
+    }
+
+    /**
+     * @return rendering times by directive or Velocimacro name
+     */
+    public Map<String, Timer> getDirectiveTimers()
+    {
+        return Collections.unmodifiableMap(new TreeMap<>(directives));
+    }
+
+    /**
+     * @return loading times by resource name
+     */
+    public Map<String, Timer> getLoadTimers()
+    {
+        return Collections.unmodifiableMap(new TreeMap<>(loads));
+    }
+
+    /**
+     * @return number of method lookups found in the introspection caches
+     */
+    public long getIntrospectionHitCount()
+    {
+        return introspectionHits.get();
+    }
+
+    /**
+     * @return number of method lookups which needed introspection
+     */
+    public long getIntrospectionMissCount()
+    {
+        return introspectionMisses.get();
+    }
+
+    /**
+     * @see RenderMetricsMBean#getSamplingInterval()
+     */
+    public int getSamplingInterval()
+    {
+        return samplingInterval;
+    }
+
+    /**
+     * @see RenderMetricsMBean#getMergeCount()
+     */
+    public long getMergeCount()
+    {
+        long count = 0;
+        for (Timer timer : merges.values())
+        {
+            count += timer.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * @see RenderMetricsMBean#getIntrospectionCacheHitRate()
+     */
+    public double getIntrospectionCacheHitRate()
+    {
+        long hits = introspectionHits.get();
+        long total = hits + introspectionMisses.get();
+        return total == 0 ? 0.0 : (double)hits / total;
+    }
+
+    /**
+     * @see RenderMetricsMBean#getSlowestTemplates()
+     */
+    public String[] getSlowestTemplates()
+    {
+        return slowest(merges);
+    }
+
+    /**
+     * @see RenderMetricsMBean#getSlowestDirectives()
+     */
+    public String[] getSlowestDirectives()
+    {
+        return slowest(directives);
+    }
+
+    /**
+     * @see RenderMetricsMBean#getSlowestLoads()
+     */
+    public String[] getSlowestLoads()
+    {
+        return slowest(loads);
+    }
+
+    /**
+     * @see RenderMetricsMBean#reset()
+     */
+    public void reset()
+    {
+        merges.clear();
+        directives.clear();
+        loads.clear();
+        introspectionHits.set(0);
+        introspectionMisses.set(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "render metrics: " + merges.size() + " templates, " + getMergeCount() + " merges, "
+            + directives.size() + " directives, " + loads.size() + " loads, introspection cache hit rate "
+            + getIntrospectionCacheHitRate() + ", sampling 1/" + samplingInterval;
+    }
+
+    private static Timer timer(ConcurrentMap<String, Timer> timers, String name)
+    {
+        Timer timer = timers.get(name);
+        if (timer == null)
+        {
+            timer = new Timer();
+            Timer previous = timers.putIfAbsent(name, timer);
+            if (previous != null)
+            {
+                timer = previous;
+            }
+        }
+        return timer;
+    }
+
+    private static String[] slowest(Map<String, Timer> timers)
+    {
+        List<Map.Entry<String, Timer>> entries = new ArrayList<>(timers.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Timer>>()
+        {
+            public int compare(Map.Entry<String, Timer> e1, Map.Entry<String, Timer> e2)
+            {
+                return Long.compare(e2.getValue().getTotalTime(), e1.getValue().getTotalTime());
+            }
+        });
+        int size = Math.min(TOP_SIZE, entries.size());
+        String[] slowest = new String[size];
+        for (int i = 0; i < size; ++i)
+        {
+            slowest[i] = entries.get(i).getKey() + ": " + entries.get(i).getValue();
+        }
+        return slowest;
+    }
+
+    /**
+     * Count, total, maximum and latency histogram of a measured event.
+     */
+    public static final class Timer
+    {
+        /* bucket i holds durations in [2^i, 2^(i+1)) microseconds, the first one also holds shorter ones */
+        private static final int BUCKETS = 32;
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos)
+        {
+            count.incrementAndGet();
+            total.addAndGet(nanos);
+            long current;
+            while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos));
+            long micros = Math.max(1, nanos / 1000);
+            histogram.incrementAndGet(Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros)));
+        }
+
+        /**
+         * @return number of measured events
+         */
+        public long getCount()
+        {
+            return count.get();
+        }
+
+        /**
+         * @return sum of the measured durations, in nanoseconds
+         */
+        public long getTotalTime()
+        {
+            return total.get();
+        }
+
+        /**
+         * @return longest measured duration, in nanoseconds
+         */
+        public long getMaxTime()
+        {
+            return max.get();
+        }
+
+        /**
+         * @return mean measured duration, in nanoseconds
+         */
+        public long getMeanTime()
+        {
+            long n = count.get();
+            return n == 0 ? 0 : total.get() / n;
+        }
+
+        /**
+         * Estimates a percentile of the measured durations, as the upper bound of the
+         * histogram bucket it falls in.
+         * @param percentile percentile, between 0 and 100
+         * @return estimated duration, in nanoseconds
+         */
+        public long getPercentile(double percentile)
+        {
+            long n = 0;
+            for (int i = 0; i < BUCKETS; ++i)
+            {
+                n += histogram.get(i);
+            }
+            long rank = (long)Math.ceil(n * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; ++i)
+            {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0)
+                {
+                    return Math.min(max.get(), (2L << i) * 1000);
+                }
+            }
+            return max.get();
+        }
+
+        @Override
+        public String toString()
+        {
+            return count.get() + " times, total " + TimeUnit.NANOSECONDS.toMillis(getTotalTime())
+                + " ms, mean " + TimeUnit.NANOSECONDS.toMicros(getMeanTime())
+                + " us, p99 " + TimeUnit.NANOSECONDS.toMicros(getPercentile(99))
+                + " us, max " + TimeUnit.NANOSECONDS.toMicros(getMaxTime()) + " us";
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.apache.velocity.runtime;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * JMX management interface of {@link RenderMetrics}, so that the metrics can be
+ * registered with an <code>MBeanServer</code>.
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public interface RenderMetricsMBean
+{
+    /**
+     * @return one out of how many events is measured
+     */
+    int getSamplingInterval();
+
+    /**
+     * @return number of measured template merges
+     */
+    long getMergeCount();
+
+    /**
+     * @return ratio of method lookups found in the introspection caches
+     */
+    double getIntrospectionCacheHitRate();
+
+    /**
+     * @return the templates which took the most merge time, slowest first
+     */
+    String[] getSlowestTemplates();
+
+    /**
+     * @return the directives and Velocimacros which took the most rendering time, slowest first
+     */
+    String[] getSlowestDirectives();
+
+    /**
+     * @return the templates which took the most loading time, slowest first
+     */
+    String[] getSlowestLoads();
+
+    /**
+     * Forgets all measures.
+     */
+    void reset();
+}
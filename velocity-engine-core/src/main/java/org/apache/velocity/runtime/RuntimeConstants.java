@@ -93,12 +93,27 @@
      */
     String ERRORMSG_END = "directive.include.output.errormsg.end";
 
+    /**
+     * Size, in bytes, above which the content included by the #include directive is not held
+     * on the heap but kept encoded in a direct buffer and streamed to the output. Files are copied
+     * without being decoded. Negative (the default) to always hold it in strings.
+     * @since 2.0
+     */
+    String INCLUDE_STREAMING_THRESHOLD = "directive.include.streaming.threshold";
+
     /** Maximum recursion depth allowed for the #parse directive. */
     String PARSE_DIRECTIVE_MAXDEPTH = "directive.parse.max.depth";
 
     /** Maximum recursion depth allowed for the #define directive. */
     String DEFINE_DIRECTIVE_MAXDEPTH = "directive.define.max.depth";
 
+    /**
+     * Whether the #evaluate directive uses the evaluate cache (when enabled by
+     * {@link #EVALUATE_CACHE_SIZE}). Default is true.
+     * @since 2.0
+     */
+    String EVALUATE_DIRECTIVE_CACHE = "directive.evaluate.cache";
+
     /**
      * Used to suppress various scope control objects.
      * @since 1.7
@@ -132,6 +147,30 @@
     /** The <code>resource.manager.cache.size</code> property specifies the cache upper bound (if relevant). */
     String RESOURCE_MANAGER_DEFAULTCACHE_SIZE = "resource.manager.defaultcache.size";
 
+    /**
+     * The <code>resource.manager.defaultcache.weight</code> property specifies the maximum total weight
+     * of the default cache, in AST nodes. When positive, it is used as the cache upper bound instead of the size.
+     * @since 2.0
+     */
+    String RESOURCE_MANAGER_DEFAULTCACHE_WEIGHT = "resource.manager.defaultcache.weight";
+
+    /**
+     * The <code>resource.manager.defaultcache.weigher</code> property specifies the unit of the default cache
+     * weight: <code>nodes</code> (AST nodes, the default) or <code>heap</code> (estimated retained kilobytes).
+     * @since 2.0
+     */
+    String RESOURCE_MANAGER_DEFAULTCACHE_WEIGHER = "resource.manager.defaultcache.weigher";
+
+    /**
+     * The <code>resource.manager.dependency.tracking</code> property enables the recording of the
+     * dependencies between templates (<code>#parse</code>, <code>#include</code>, macro libraries), so
+     * that a change reported by a resource loader also evicts the templates depending upon the changed
+     * resource from the cache, and reloads the Velocimacro libraries of loaders which notify changes without
+     * polling them. Default false.
+     * @since 2.0
+     */
+    String RESOURCE_MANAGER_DEPENDENCY_TRACKING = "resource.manager.dependency.tracking";
+
     /*
      * ----------------------------------------------------------------------
      * R E S O U R C E  L O A D E R  C O N F I G U R A T I O N
@@ -141,6 +180,13 @@
     /** controls if the finding of a resource is logged. */
     String RESOURCE_MANAGER_LOGWHENFOUND = "resource.manager.logwhenfound";
 
+    /**
+     * Whether to serve the cached version of a modified resource while another thread reloads it,
+     * instead of waiting for the reloaded version, default false.
+     * @since 2.0
+     */
+    String RESOURCE_MANAGER_STALE_WHILE_REVALIDATE = "resource.manager.stale.while.revalidate";
+
     /**
      * Key used to retrieve the names of the resource loaders to be used. In a properties file they may appear as the following:
      *
@@ -184,6 +230,13 @@
      */
     String EVENTHANDLER_INVALIDREFERENCES = "eventhandler.invalidreferences.class";
 
+    /**
+     * Switch for the built-in escaping reference insertion handlers to escape values
+     * directly into the template writer, default false.
+     * @since 2.0
+     */
+    String EVENTHANDLER_ESCAPE_STREAMING = "eventhandler.escape.streaming";
+
 
     /*
      * ----------------------------------------------------------------------
@@ -252,6 +305,54 @@
     /** Switch for the interpolation facility for string literals. */
     String INTERPOLATE_STRINGLITERALS = "runtime.interpolate.string.literals";
 
+    /**
+     * Switch for attaching flat render plans, where adjacent static text is merged
+     * and plain references call their class-guarded cached getters, to initialized
+     * templates, default false.
+     * @since 2.0
+     */
+    String RUNTIME_RENDER_PLANS = "runtime.render.plans";
+
+    /**
+     * Switch for optimizing initialized templates (constant folding, dead branch pruning
+     * and static text coalescing), default false.
+     * @since 2.0
+     */
+    String RUNTIME_OPTIMIZE_TEMPLATES = "runtime.optimize.templates";
+
+    /**
+     * Switch for compacting initialized templates (release of parser tokens, interning
+     * of literals), default false.
+     * @since 2.0
+     */
+    String RUNTIME_COMPACT_TEMPLATES = "runtime.compact.templates";
+
+    /**
+     * Maximum number of initialized trees kept by the cache of evaluated sources,
+     * default 0 (no cache).
+     * @since 2.0
+     */
+    String EVALUATE_CACHE_SIZE = "runtime.evaluate.cache.size";
+
+    /**
+     * Directory of the on-disk cache of parsed templates, default none (no cache).
+     * @since 2.0
+     */
+    String PARSED_TEMPLATES_CACHE_PATH = "runtime.parsed.cache.path";
+
+    /**
+     * Number of threads used to preload templates, default 0 (number of available processors).
+     * @since 2.0
+     */
+    String RUNTIME_PRELOAD_PARALLELISM = "runtime.preload.parallelism";
+
+    /**
+     * Extensions of the templates loaded by <code>VelocityEngine.preload()</code>,
+     * default "vm, vtl". Empty for all the templates the loaders can list.
+     * @since 2.0
+     */
+    String RUNTIME_PRELOAD_EXTENSIONS = "runtime.preload.extensions";
+
     /** The character encoding for the templates. Used by the parser in processing the input streams. */
     String INPUT_ENCODING = "input.encoding";
 
@@ -264,6 +365,12 @@
     /** key for Conversion Manager class */
     String CONVERSION_HANDLER_CLASS = "runtime.conversion.handler.class";
 
+    /**
+     * Switch for invoking introspected methods through bound method handles rather than reflection, default false.
+     * @since 2.0
+     */
+    String INTROSPECTOR_METHOD_HANDLES = "runtime.introspector.method.handles";
+
     /** A comma separated list of packages to restrict access to in the SecureIntrospector. */
     String INTROSPECTOR_RESTRICT_PACKAGES = "introspector.restrict.packages";
 
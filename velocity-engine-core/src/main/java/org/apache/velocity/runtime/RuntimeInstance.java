@@ -42,7 +42,10 @@
 import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.apache.velocity.runtime.resource.ContentResource;
+import org.apache.velocity.runtime.resource.DependencyGraph;
 import org.apache.velocity.runtime.resource.ResourceManager;
+import org.apache.velocity.runtime.resource.ResourceManagerImpl;
+import org.apache.velocity.runtime.resource.loader.ResourceLoader;
 import org.apache.velocity.util.ClassUtils;
 import org.apache.velocity.util.ExtProperties;
 import org.apache.velocity.util.RuntimeServicesAware;
@@ -60,13 +63,22 @@
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.Writer;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This is the Runtime system for Velocity. It is the
@@ -184,6 +196,21 @@ public class RuntimeInstance implements RuntimeConstants, RuntimeServices
     private String evaluateScopeName = "evaluate";
     private boolean provideEvaluateScope = false;
 
+    /*
+     * Cache of evaluated sources, null when disabled.
+     */
+    private EvaluateCache evaluateCache = null;
+
+    /*
+     * On-disk cache of parsed templates, null when disabled.
+     */
+    private ParsedTemplateCache parsedTemplateCache = null;
+
+    /*
+     * Instrumentation listener, null when rendering is not instrumented.
+     */
+    private volatile RenderListener renderListener = null;
+
     /*
      *  Opaque reference to something specified by the
      *  application for use in application supplied/specified
@@ -244,6 +271,8 @@ public synchronized void init()
 
                 initializeIntrospection();
                 initializeEvaluateScopeSettings();
+                initializeEvaluateCache();
+                initializeParsedTemplateCache();
                 /*
                  *  initialize the VM Factory.  It will use the properties
                  * accessible from Runtime, so keep this here at the end.
@@ -274,14 +303,26 @@ public synchronized void init()
 
     /**
      * Resets the instance, so Velocity can be re-initialized again.
+     * The resource loaders are closed, which stops their background
+     * change detection.
      *
      * @since 2.0.0
      */
     public synchronized void reset()
     {
+        /*
+         * stop the background threads of the previous resource loaders
+         */
+        if (resourceManager instanceof ResourceManagerImpl)
+        {
+            ((ResourceManagerImpl)resourceManager).close();
+        }
+
         this.configuration = new ExtProperties();
         this.defaultEncoding = null;
         this.evaluateScopeName = "evaluate";
+        this.evaluateCache = null;
+        this.parsedTemplateCache = null;
         this.eventCartridge = null;
         this.initialized = false;
         this.initializing = false;
@@ -1070,6 +1111,10 @@ public synchronized void removeDirective(String name)
     private void updateSharedDirectivesMap()
     {
         runtimeDirectivesShared = new HashMap(runtimeDirectives);
+        if (parsedTemplateCache != null)
+        {
+            parsedTemplateCache.setSignature(getParserSignature());
+        }
     }
 
     /**
@@ -1249,6 +1294,246 @@ private void initializeEvaluateScopeSettings()
         provideEvaluateScope = getBoolean(property, provideEvaluateScope);
     }
 
+    private void initializeEvaluateCache()
+    {
+        int size = getInt(EVALUATE_CACHE_SIZE, 0);
+        if (size > 0)
+        {
+            evaluateCache = new EvaluateCache(size);
+            log.debug("evaluate cache enabled with max size {}", size);
+        }
+    }
+
+    private void initializeParsedTemplateCache()
+    {
+        String path = getString(PARSED_TEMPLATES_CACHE_PATH);
+        if (StringUtils.isNotEmpty(path))
+        {
+            try
+            {
+                parsedTemplateCache = new ParsedTemplateCache(this, Paths.get(path), getParserSignature());
+                log.debug("parsed templates cache enabled in {}", path);
+            }
+            catch (IOException | InvalidPathException e)
+            {
+                String msg = "cannot use parsed templates cache directory " + path;
+                log.error(msg, e);
+                throw new VelocityException(msg, e);
+            }
+        }
+    }
+
+    /*
+     * Describes everything besides the template content which may change the parser output.
+     */
+    private String getParserSignature()
+    {
+        StringBuilder signature = new StringBuilder("Velocity ");
+        String version = RuntimeInstance.class.getPackage().getImplementationVersion();
+        signature.append(version == null ? "2.0" : version);
+        signature.append(" strictEscape=").append(getBoolean(RUNTIME_REFERENCES_STRICT_ESCAPE, false));
+        signature.append(" library=").append(getProperty(VM_LIBRARY));
+        signature.append(" directives=");
+        for (Object name : new TreeSet(runtimeDirectivesShared.keySet()))
+        {
+            Directive directive = (Directive) runtimeDirectivesShared.get(name);
+            signature.append(name).append(':').append(directive.getType()).append(',');
+        }
+        return signature.toString();
+    }
+
+    /**
+     * Returns the on-disk cache of parsed templates.
+     *
+     * @return the parsed templates cache, or null if it is disabled
+     * @since 2.0
+     */
+    public ParsedTemplateCache getParsedTemplateCache()
+    {
+        return parsedTemplateCache;
+    }
+
+    /**
+     * Installs or removes, at any time, the listener receiving rendering timing events.
+     *
+     * @param listener render listener, or null to stop instrumenting rendering
+     * @since 2.0
+     */
+    public void setRenderListener(RenderListener listener)
+    {
+        renderListener = listener;
+    }
+
+    /**
+     * Returns the listener receiving rendering timing events.
+     *
+     * @return the render listener, or null if rendering is not instrumented
+     * @since 2.0
+     */
+    public RenderListener getRenderListener()
+    {
+        return renderListener;
+    }
+
+    /**
+     * Returns the graph of the dependencies between templates, maintained by the
+     * default resource manager when the <code>resource.manager.dependency.tracking</code>
+     * property is true.
+     *
+     * @return the dependency graph, or null if dependencies are not tracked
+     * @since 2.0
+     */
+    public DependencyGraph getDependencyGraph()
+    {
+        if (resourceManager instanceof ResourceManagerImpl)
+        {
+            return ((ResourceManagerImpl) resourceManager).getDependencyGraph();
+        }
+        return null;
+    }
+
+    /**
+     * Lists the names of the templates which directly or transitively depend upon the
+     * given resource, by <code>#parse</code>, <code>#include</code> or macro libraries.
+     *
+     * @param resourceName template or content name
+     * @return dependent template names, empty if dependencies are not tracked
+     * @since 2.0
+     */
+    public Set<String> getTemplateDependents(String resourceName)
+    {
+        requireInitialization();
+
+        DependencyGraph graph = getDependencyGraph();
+        if (graph != null)
+        {
+            return graph.getAllDependents(resourceName);
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * Lists the names of the templates which the configured resource loaders
+     * can enumerate, see {@link ResourceLoader#listResources()}.
+     *
+     * @return template names
+     * @since 2.0
+     */
+    public List<String> listTemplates()
+    {
+        requireInitialization();
+
+        if (resourceManager instanceof ResourceManagerImpl)
+        {
+            return ((ResourceManagerImpl) resourceManager).listResources();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Lists the names of the templates which the configured resource loaders
+     * can enumerate and which have one of the given extensions.
+     *
+     * @param extensions file extensions, without the dot, matched regardless
+     *                   of case; no extension for all templates
+     * @return template names
+     * @since 2.0
+     */
+    public List<String> listTemplates(String... extensions)
+    {
+        List<String> names = listTemplates();
+        List<String> suffixes = new ArrayList<>();
+        for (String extension : extensions)
+        {
+            extension = extension.trim();
+            if (extension.length() > 0)
+            {
+                suffixes.add('.' + extension.toLowerCase(Locale.ROOT));
+            }
+        }
+        if (suffixes.isEmpty())
+        {
+            return names;
+        }
+        List<String> selected = new ArrayList<>();
+        for (String name : names)
+        {
+            String lowerName = name.toLowerCase(Locale.ROOT);
+            for (String suffix : suffixes)
+            {
+                if (lowerName.endsWith(suffix))
+                {
+                    selected.add(name);
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Estimates the heap retained by each cached template, so that the resource cache
+     * can be sized after real bytes, see {@link Template#getRetainedSize()}.
+     *
+     * @return retained sizes in bytes, by template name
+     * @since 2.0
+     */
+    public Map<String, Long> getTemplateSizes()
+    {
+        requireInitialization();
+
+        if (resourceManager instanceof ResourceManagerImpl)
+        {
+            return ((ResourceManagerImpl) resourceManager).getTemplateSizes();
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Loads the given templates in parallel, so that they are parsed and
+     * initialized before they are first used.
+     *
+     * @param templateNames templates to load
+     * @param pool pool to run on, or null for a pool sized by the
+     *             <code>runtime.preload.parallelism</code> property
+     * @return preload report
+     * @since 2.0
+     */
+    public PreloadReport preload(Collection<String> templateNames, ForkJoinPool pool)
+    {
+        requireInitialization();
+
+        TemplatePreloader preloader = new TemplatePreloader(this);
+        PreloadReport report = pool == null ? preloader.preload(templateNames) : preloader.preload(templateNames, pool);
+
+        /*
+         * templates which did not stay in the cache have been loaded for nothing
+         */
+        if (resourceManager instanceof ResourceManagerImpl)
+        {
+            List<String> uncached = ((ResourceManagerImpl) resourceManager).getUncachedTemplates(report.getLoadTimes().keySet());
+            if (!uncached.isEmpty())
+            {
+                report.discarded(uncached);
+                log.warn("{} of {} preloaded templates were not kept in the resource cache (like {}): "
+                    + "enable the caching of their resource loader and check that {} can hold them all",
+                    uncached.size(), report.getLoadedCount(), uncached.get(0), RESOURCE_MANAGER_DEFAULTCACHE_SIZE);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Returns the cache of initialized trees built from evaluated sources.
+     *
+     * @return the evaluate cache, or null if it is disabled
+     * @since 2.0
+     */
+    public EvaluateCache getEvaluateCache()
+    {
+        return evaluateCache;
+    }
+
     /**
      * Renders the input string using the context into the output writer.
      * To be used when a template is dynamically constructed, or want to use
@@ -1256,6 +1541,9 @@ private void initializeEvaluateScopeSettings()
      * <br>
      * Note! Macros defined in evaluate() calls are not persisted in memory so next evaluate() call
      * does not know about macros defined during previous calls.
+     * <br>
+     * When the evaluate cache is enabled, the initialized tree is kept and reused
+     * for the next calls with the same log tag and input string.
      *
      * @param context context to use in rendering input string
      * @param out  Writer in which to render the output
@@ -1273,7 +1561,26 @@ private void initializeEvaluateScopeSettings()
     public boolean evaluate(Context context,  Writer out,
                             String logTag, String instring)
     {
-        return evaluate(context, out, logTag, new StringReader(instring));
+        if (evaluateCache == null || logTag == null)
+        {
+            return evaluate(context, out, logTag, new StringReader(instring));
+        }
+
+        SimpleNode nodeTree = evaluateCache.get(logTag, null, instring);
+        if (nodeTree != null)
+        {
+            return render(context, out, logTag, nodeTree, false);
+        }
+
+        nodeTree = parse(logTag, new StringReader(instring));
+        if (nodeTree == null)
+        {
+            return false;
+        }
+        /* the tree gets initialized by the first rendering, cache it afterwards */
+        boolean ret = render(context, out, logTag, nodeTree, true);
+        evaluateCache.put(logTag, null, instring, nodeTree);
+        return ret;
     }
 
     /**
@@ -1305,12 +1612,28 @@ public boolean evaluate(Context context, Writer writer,
             throw new NullPointerException("logTag (i.e. template name) cannot be null, you must provide an identifier for the content being evaluated");
         }
 
-        SimpleNode nodeTree = null;
+        SimpleNode nodeTree = parse(logTag, reader);
+
+        if (nodeTree == null)
+        {
+            return false;
+        }
+        else
+        {
+            return render(context, writer, logTag, nodeTree);
+        }
+    }
+
+    /**
+     * Parses an evaluated source in its own template named after the log tag.
+     */
+    private SimpleNode parse(String logTag, Reader reader)
+    {
         Template t = new Template();
         t.setName(logTag);
         try
         {
-            nodeTree = parse(reader, t);
+            return parse(reader, t);
         }
         catch (ParseException pex)
         {
@@ -1320,15 +1643,6 @@ public boolean evaluate(Context context, Writer writer,
         {
             throw new ParseErrorException(pex, null);
         }
-
-        if (nodeTree == null)
-        {
-            return false;
-        }
-        else
-        {
-            return render(context, writer, logTag, nodeTree);
-        }
     }
 
 
@@ -1351,6 +1665,12 @@ public boolean evaluate(Context context, Writer writer,
      */
     public boolean render(Context context, Writer writer,
                           String logTag, SimpleNode nodeTree)
+    {
+        return render(context, writer, logTag, nodeTree, true);
+    }
+
+    private boolean render(Context context, Writer writer,
+                           String logTag, SimpleNode nodeTree, boolean init)
     {
         /*
          * we want to init then render
@@ -1362,26 +1682,29 @@ public boolean render(Context context, Writer writer,
 
         try
         {
-            try
-            {
-                nodeTree.init(ica, this);
-            }
-            catch (TemplateInitException pex)
-            {
-                throw new ParseErrorException(pex, null);
-            }
-            /**
-             * pass through application level runtime exceptions
-             */
-            catch(RuntimeException e)
+            if (init)
             {
-                throw e;
-            }
-            catch(Exception e)
-            {
-                String msg = "RuntimeInstance.render(): init exception for tag = "+logTag;
-                log.error(msg, e);
-                throw new VelocityException(msg, e);
+                try
+                {
+                    nodeTree.init(ica, this);
+                }
+                catch (TemplateInitException pex)
+                {
+                    throw new ParseErrorException(pex, null);
+                }
+                /**
+                 * pass through application level runtime exceptions
+                 */
+                catch(RuntimeException e)
+                {
+                    throw e;
+                }
+                catch(Exception e)
+                {
+                    String msg = "RuntimeInstance.render(): init exception for tag = "+logTag;
+                    log.error(msg, e);
+                    throw new VelocityException(msg, e);
+                }
             }
 
             try
@@ -1676,6 +1999,20 @@ public Directive getVelocimacro(String vmName, Template renderingTemplate, Templ
         return vmFactory.getVelocimacro(vmName, renderingTemplate, template);
     }
 
+    /**
+     * Returns a stamp which changes each time a Velocimacro of the given
+     * name is added or a Velocimacro library is reloaded.
+     *
+     * @param vmName name of the Velocimacro
+     * @param macro Velocimacro previously resolved for this name, may be null
+     * @return current version of the Velocimacro definitions for this name
+     * @since 2.0
+     */
+    public int getVelocimacroVersion(String vmName, Directive macro)
+    {
+        return vmFactory.getVersion(vmName, macro);
+    }
+
     /**
      * Adds a new Velocimacro. Usually called by Macro only while parsing.
      *
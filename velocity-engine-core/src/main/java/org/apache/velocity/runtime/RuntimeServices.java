@@ -33,6 +33,7 @@
 import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.apache.velocity.runtime.resource.ContentResource;
+import org.apache.velocity.runtime.resource.DependencyGraph;
 import org.apache.velocity.util.ExtProperties;
 import org.apache.velocity.util.introspection.Uberspect;
 import org.slf4j.Logger;
@@ -323,6 +324,53 @@ ContentResource getContent(String name, String encoding)
      */
     Directive getVelocimacro(String vmName, Template renderingTemplate, Template template);
 
+    /**
+     * Returns a stamp which changes each time a Velocimacro of the given
+     * name is added or a Velocimacro library is reloaded, so that callers
+     * may cache the results of {@link #getVelocimacro(String, Template, Template)}.
+     * If libraries are auto-reloaded, the library of the given macro is
+     * checked for modifications first.
+     *
+     * @param vmName name of the Velocimacro
+     * @param macro Velocimacro previously resolved for this name, may be null
+     * @return current version of the Velocimacro definitions for this name
+     * @since 2.0
+     */
+    int getVelocimacroVersion(String vmName, Directive macro);
+
+    /**
+     * Returns the cache of initialized trees built from evaluated sources.
+     *
+     * @return the evaluate cache, or null if it is disabled
+     * @since 2.0
+     */
+    EvaluateCache getEvaluateCache();
+
+    /**
+     * Returns the on-disk cache of parsed templates.
+     *
+     * @return the parsed templates cache, or null if it is disabled
+     * @since 2.0
+     */
+    ParsedTemplateCache getParsedTemplateCache();
+
+    /**
+     * Returns the listener receiving rendering timing events.
+     *
+     * @return the render listener, or null if rendering is not instrumented
+     * @since 2.0
+     */
+    RenderListener getRenderListener();
+
+    /**
+     * Returns the graph of the dependencies between templates, in which directives
+     * record the resources they use.
+     *
+     * @return the dependency graph, or null if dependencies are not tracked
+     * @since 2.0
+     */
+    DependencyGraph getDependencyGraph();
+
     /**
      * Adds a new Velocimacro. Usually called by Macro only while parsing.
      *
@@ -0,0 +1,147 @@
+package org.apache.velocity.runtime;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Loads a set of templates in parallel on a {@link ForkJoinPool}, so that they are
+ * read, parsed and initialized, and their inline macros registered, before the
+ * first requests come in rather than on first use.</p>
+ *
+ * <p>Loaded templates go into the resource cache like any other template; a template
+ * which cannot be loaded is reported and does not stop the other ones.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class TemplatePreloader
+{
+    private final RuntimeServices rsvc;
+
+    private final Logger log;
+
+    /**
+     * @param rsvc initialized runtime services
+     */
+    public TemplatePreloader(RuntimeServices rsvc)
+    {
+        this.rsvc = rsvc;
+        this.log = rsvc.getLog("preloader");
+    }
+
+    /**
+     * Loads the given templates on a dedicated pool, whose parallelism is given by the
+     * <code>runtime.preload.parallelism</code> property.
+     * @param templateNames templates to load
+     * @return preload report
+     */
+    public PreloadReport preload(Collection<String> templateNames)
+    {
+        int parallelism = rsvc.getInt(RuntimeConstants.RUNTIME_PRELOAD_PARALLELISM, 0);
+        if (parallelism <= 0)
+        {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            return preload(templateNames, pool);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Loads the given templates on the given pool.
+     * @param templateNames templates to load
+     * @param pool pool to run on
+     * @return preload report
+     */
+    public PreloadReport preload(Collection<String> templateNames, ForkJoinPool pool)
+    {
+        List<String> names = new ArrayList<>(templateNames);
+        PreloadReport report = new PreloadReport();
+        long start = System.nanoTime();
+        if (!names.isEmpty())
+        {
+            pool.invoke(new PreloadTask(names, 0, names.size(), report));
+        }
+        report.done(System.nanoTime() - start);
+        log.debug("{}", report);
+        return report;
+    }
+
+    private void load(String templateName, PreloadReport report)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            rsvc.getTemplate(templateName);
+            report.loaded(templateName, System.nanoTime() - start);
+        }
+        catch (RuntimeException e)
+        {
+            log.warn("cannot preload template {}: {}", templateName, e.getMessage());
+            report.failed(templateName, e);
+        }
+    }
+
+    private class PreloadTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> names;
+        private final int from;
+        private final int to;
+        private final PreloadReport report;
+
+        PreloadTask(List<String> names, int from, int to, PreloadReport report)
+        {
+            this.names = names;
+            this.from = from;
+            this.to = to;
+            this.report = report;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from == 1)
+            {
+                load(names.get(from), report);
+            }
+            else
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PreloadTask(names, from, middle, report),
+                          new PreloadTask(names, middle, to, report));
+            }
+        }
+    }
+}
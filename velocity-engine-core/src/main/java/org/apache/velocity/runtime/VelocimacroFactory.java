@@ -26,14 +26,22 @@
 import org.apache.velocity.runtime.directive.Macro;
 import org.apache.velocity.runtime.directive.VelocimacroProxy;
 import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.resource.DependencyGraph;
+import org.apache.velocity.runtime.resource.loader.ResourceChangeListener;
+import org.apache.velocity.runtime.resource.loader.ResourceLoader;
 
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *  VelocimacroFactory.java
@@ -97,6 +105,24 @@
      */
     private Map libModMap;
 
+    /**
+     *  incremented each time a library is reloaded, so that
+     *  macro call sites know they have to resolve their macro again
+     */
+    private final AtomicInteger libraryVersion = new AtomicInteger();
+
+    /**
+     *  incremented each time a macro of a given name is added,
+     *  so that only the call sites of this name resolve it again
+     */
+    private final ConcurrentMap<String, AtomicInteger> macroVersions = new ConcurrentHashMap<>();
+
+    /**
+     *  libraries reported as changed and not reloaded yet, only
+     *  maintained when reloads are driven by change notifications
+     */
+    private Set<String> changedLibraries = null;
+
     /**
      *  C'tor for the VelociMacro factory.
      *
@@ -107,10 +133,10 @@ public VelocimacroFactory(final RuntimeServices rsvc)
         this.rsvc = rsvc;
 
         /*
-         *  we always access in a synchronized(), so we
-         *  can use an unsynchronized hashmap
+         *  modifications happen in a synchronized() block, but
+         *  getVersion() reads it without locking
          */
-        libModMap = new HashMap();
+        libModMap = new ConcurrentHashMap();
         vmManager = new VelocimacroManager(rsvc);
     }
 
@@ -307,6 +333,27 @@ else if (libfiles instanceof String)
                       "will not automatically reload global library macros");
             }
 
+            /*
+             *  with dependency tracking, libraries whose loader notifies changes are
+             *  reloaded when it reports one, instead of being checked on each call
+             */
+            DependencyGraph graph = rsvc.getDependencyGraph();
+            if (getAutoload() && graph != null)
+            {
+                changedLibraries = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                graph.addChangeListener(new ResourceChangeListener()
+                {
+                    public void resourceChanged(ResourceLoader loader, String resourceName)
+                    {
+                        if (libModMap.containsKey(resourceName))
+                        {
+                            changedLibraries.add(resourceName);
+                        }
+                    }
+                });
+                log.debug("autoload driven by resource change notifications");
+            }
+
             log.trace("Velocimacro: initialization complete.");
         }
     }
@@ -372,6 +419,7 @@ else if (macroArgs == null)
         synchronized(this)
         {
             vmManager.addVM(name, macroBody, macroArgs, definingTemplate, replaceAllowed);
+            macroVersion(name).incrementAndGet();
         }
         log.debug("added VM {}: source={}", name, definingTemplate);
         return true;
@@ -470,6 +518,11 @@ public Directive getVelocimacro(String vmName, Template renderingTemplate, Templ
          * if this exists, and autoload is on, we need to check where this VM came from
          */
 
+        if (vp != null && changedLibraries != null && reloadChangedLibraries())
+        {
+            vp = vmManager.get(vmName, sourceTemplate, renderingTemplate);
+        }
+
         if (vp != null && autoReloadLibrary )
         {
             synchronized (this)
@@ -491,48 +544,9 @@ public Directive getVelocimacro(String vmName, Template renderingTemplate, Templ
 
                         Twonk tw = (Twonk) libModMap.get(lib);
 
-                        if (tw != null)
+                        if (tw != null && !isNotified(tw))
                         {
-                            Template template = tw.template;
-
-                            /*
-                             * now, compare the last modified time of the resource with the last
-                             * modified time of the template if the file has changed, then reload.
-                             * Otherwise, we should be ok.
-                             */
-
-                            long tt = tw.modificationTime;
-                            long ft = template.getResourceLoader().getLastModified(template);
-
-                            if (ft > tt)
-                            {
-                                log.debug("auto-reloading VMs from VM library: {}", lib);
-
-                                /*
-                                 * when there are VMs in a library that invoke each other, there are
-                                 * calls into getVelocimacro() from the init() process of the VM
-                                 * directive. To stop the infinite loop we save the current time
-                                 * reported by the resource loader and then be honest when the
-                                 * reload is complete
-                                 */
-
-                                tw.modificationTime = ft;
-
-                                template = rsvc.getTemplate(lib);
-
-                                /*
-                                 * and now we be honest
-                                 */
-
-                                tw.template = template;
-                                tw.modificationTime = template.getLastModified();
-
-                                /*
-                                 * note that we don't need to put this twonk
-                                 * back into the map, as we can just use the
-                                 * same reference and this block is synchronized
-                                 */
-                            }
+                            reloadLibraryIfModified(lib, tw);
                         }
                     }
                     catch (Exception e)
@@ -550,6 +564,184 @@ public Directive getVelocimacro(String vmName, Template renderingTemplate, Templ
         return vp;
     }
 
+    /**
+     * Returns a stamp which changes each time a macro of the given name is added or a
+     * macro library is reloaded. Callers which cache the result of
+     * {@link #getVelocimacro(String, Template, Template)} only have to resolve the macro
+     * again when the stamp differs from the one they saw. When libraries are auto-reloaded,
+     * the library the cached macro comes from is checked first, at most once per modification
+     * check interval of its loader, and the lock is only taken if it has to be reloaded.
+     * With dependency tracking, the libraries whose loader notifies changes are only checked
+     * once reported as changed.
+     * @param vmName macro name
+     * @param macro macro previously resolved for this name, may be null
+     * @return current version of the definitions of this macro
+     * @since 2.0
+     */
+    public int getVersion(String vmName, Directive macro)
+    {
+        if (changedLibraries != null)
+        {
+            reloadChangedLibraries();
+        }
+        if (autoReloadLibrary && macro != null && macro.getTemplate() != null)
+        {
+            checkLibrary(macro.getTemplate().getName());
+        }
+        AtomicInteger macroVersion = macroVersions.get(vmName);
+        return libraryVersion.get() + (macroVersion == null ? 0 : macroVersion.get());
+    }
+
+    /**
+     * Returns the version counter of the macros of a given name.
+     */
+    private AtomicInteger macroVersion(String vmName)
+    {
+        AtomicInteger macroVersion = macroVersions.get(vmName);
+        if (macroVersion == null)
+        {
+            AtomicInteger created = new AtomicInteger();
+            macroVersion = macroVersions.putIfAbsent(vmName, created);
+            if (macroVersion == null)
+            {
+                macroVersion = created;
+            }
+        }
+        return macroVersion;
+    }
+
+    /**
+     * Reloads a macro library if it has been modified, unless it has been checked
+     * less than a modification check interval ago.
+     * @param lib name of the template a macro comes from, which may not be a library
+     */
+    private void checkLibrary(String lib)
+    {
+        Twonk tw = (Twonk)libModMap.get(lib);
+        if (tw == null || isNotified(tw))
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now < tw.nextCheck)
+        {
+            return;
+        }
+        Template template = tw.template;
+        ResourceLoader loader = template.getResourceLoader();
+        tw.nextCheck = now + Math.max(0, loader.getModificationCheckInterval()) * 1000;
+        if (loader.getLastModified(template) > tw.modificationTime)
+        {
+            synchronized (this)
+            {
+                try
+                {
+                    reloadLibraryIfModified(lib, tw);
+                }
+                catch (Exception e)
+                {
+                    String msg = "Velocimacro: Error using VM library: " + lib;
+                    log.error(msg, e);
+                    throw new VelocityException(msg, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells whether changes of a library are notified by its loader, so that
+     * it doesn't need to be checked.
+     */
+    private boolean isNotified(Twonk tw)
+    {
+        if (changedLibraries == null)
+        {
+            return false;
+        }
+        ResourceLoader loader = tw.template.getResourceLoader();
+        return loader != null && loader.isNotifyingChanges();
+    }
+
+    /**
+     * Reloads the libraries reported as changed since the last call.
+     * @return whether any library has been checked
+     */
+    private boolean reloadChangedLibraries()
+    {
+        if (changedLibraries.isEmpty())
+        {
+            return false;
+        }
+        for (Iterator<String> it = changedLibraries.iterator(); it.hasNext();)
+        {
+            String lib = it.next();
+            it.remove();
+            synchronized (this)
+            {
+                try
+                {
+                    reloadLibraryIfModified(lib, (Twonk)libModMap.get(lib));
+                }
+                catch (Exception e)
+                {
+                    String msg = "Velocimacro: Error using VM library: " + lib;
+                    log.error(msg, e);
+                    throw new VelocityException(msg, e);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reloads a macro library if it has been modified since it was last loaded.
+     * Must be called while holding the factory lock.
+     */
+    private void reloadLibraryIfModified(String lib, Twonk tw)
+    {
+        Template template = tw.template;
+
+        /*
+         * now, compare the last modified time of the resource with the last
+         * modified time of the template if the file has changed, then reload.
+         * Otherwise, we should be ok.
+         */
+
+        long tt = tw.modificationTime;
+        long ft = template.getResourceLoader().getLastModified(template);
+
+        if (ft > tt)
+        {
+            log.debug("auto-reloading VMs from VM library: {}", lib);
+
+            /*
+             * when there are VMs in a library that invoke each other, there are
+             * calls into getVelocimacro() from the init() process of the VM
+             * directive. To stop the infinite loop we save the current time
+             * reported by the resource loader and then be honest when the
+             * reload is complete
+             */
+
+            tw.modificationTime = ft;
+
+            template = rsvc.getTemplate(lib);
+
+            /*
+             * and now we be honest
+             */
+
+            tw.template = template;
+            tw.modificationTime = template.getLastModified();
+            libraryVersion.incrementAndGet();
+
+            /*
+             * note that we don't need to put this twonk
+             * back into the map, as we can just use the
+             * same reference and this block is synchronized
+             */
+        }
+    }
+
     /**
      * sets permission to have VMs local in scope to their declaring template note that this is
      * really taken care of in the VMManager class, but we need it here for gating purposes in addVM
@@ -615,10 +807,13 @@ private boolean getAutoload()
     private static class Twonk
     {
         /** Template kept in this container. */
-        public Template template;
+        public volatile Template template;
 
         /** modification time of the template. */
-        public long modificationTime;
+        public volatile long modificationTime;
+
+        /** time after which the template may be checked again by macro call sites. */
+        public volatile long nextCheck;
     }
 }
 
@@ -25,6 +25,8 @@
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.runtime.EvaluateCache;
+import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.parser.ParseException;
 import org.apache.velocity.runtime.parser.node.Node;
@@ -46,6 +48,10 @@
  */
 public class Evaluate extends Directive
 {
+    /**
+     * Cache of evaluated sources, null if disabled.
+     */
+    private EvaluateCache cache = null;
 
     /**
      * Return name of this directive.
@@ -78,6 +84,11 @@ public void init(RuntimeServices rs, InternalContextAdapter context,
     {
         super.init( rs, context, node );
 
+        if (rsvc.getBoolean(RuntimeConstants.EVALUATE_DIRECTIVE_CACHE, true))
+        {
+            cache = rsvc.getEvaluateCache();
+        }
+
         /**
          * Check that there is exactly one argument and it is a string or reference.
          */
@@ -154,22 +165,38 @@ public boolean render(InternalContextAdapter context, Writer writer,
          */
         String templateName = context.getCurrentTemplateName();
         Template template = (Template)context.getCurrentResource();
+
+        /*
+         * the parsed nodes refer to the template they are parsed in, so cached
+         * trees are only reused for the same template
+         */
+        SimpleNode nodeTree = null;
+        boolean cached = false;
+        if (cache != null && templateName != null)
+        {
+            nodeTree = cache.get(templateName, template, sourceText);
+            cached = nodeTree != null;
+        }
+        Template owner = template;
+
         if (template == null)
         {
             template = new Template();
             template.setName(templateName);
         }
-        SimpleNode nodeTree = null;
 
-        try
-        {
-            nodeTree = rsvc.parse(new StringReader(sourceText), template);
-        }
-        catch (ParseException | TemplateInitException pex)
+        if (!cached)
         {
-            // use the line/column from the template
-            Info info = new Info( templateName, node.getLine(), node.getColumn() );
-            throw  new ParseErrorException( pex.getMessage(), info );
+            try
+            {
+                nodeTree = rsvc.parse(new StringReader(sourceText), template);
+            }
+            catch (ParseException | TemplateInitException pex)
+            {
+                // use the line/column from the template
+                Info info = new Info( templateName, node.getLine(), node.getColumn() );
+                throw  new ParseErrorException( pex.getMessage(), info );
+            }
         }
 
         /*
@@ -183,14 +210,21 @@ public boolean render(InternalContextAdapter context, Writer writer,
 
             try
             {
-                try
-                {
-                    nodeTree.init(context, rsvc);
-                }
-                catch (TemplateInitException pex)
+                if (!cached)
                 {
-                    Info info = new Info( templateName, node.getLine(), node.getColumn() );
-                    throw  new ParseErrorException( pex.getMessage(), info );
+                    try
+                    {
+                        nodeTree.init(context, rsvc);
+                    }
+                    catch (TemplateInitException pex)
+                    {
+                        Info info = new Info( templateName, node.getLine(), node.getColumn() );
+                        throw  new ParseErrorException( pex.getMessage(), info );
+                    }
+                    if (cache != null && templateName != null)
+                    {
+                        cache.put(templateName, owner, sourceText, nodeTree);
+                    }
                 }
 
                 try
@@ -30,6 +30,7 @@
 import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.runtime.parser.node.ParserTreeConstants;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
+import org.apache.velocity.util.IntegerRange;
 import org.apache.velocity.util.StringUtils;
 import org.apache.velocity.util.introspection.Info;
 
@@ -216,10 +217,29 @@ public boolean render(InternalContextAdapter context, Writer writer, Node node)
     {
         Node iterableNode = node.jjtGetChild(2);
         Object iterable = iterableNode.value(context);
-        Iterator i = getIterator(iterable, iterableNode);
-        if (i == null)
+
+        /*
+         * iterate over unmodified integer ranges with a plain counter, unless
+         * a subclass may have its own idea of how to iterate
+         */
+        Iterator i = null;
+        int next = 0, step = 0, remaining = 0;
+        boolean counting = getClass() == Foreach.class && iterable instanceof IntegerRange
+            && ((IntegerRange)iterable).isLazy();
+        if (counting)
         {
-            return false;
+            IntegerRange range = (IntegerRange)iterable;
+            next = range.getFirst();
+            step = range.getStep();
+            remaining = range.size();
+        }
+        else
+        {
+            i = getIterator(iterable, iterableNode);
+            if (i == null)
+            {
+                return false;
+            }
         }
 
         // Get the block ast tree which is always the last child
@@ -242,16 +262,27 @@ public boolean render(InternalContextAdapter context, Writer writer, Node node)
         }
 
         int count = 1;
-        while (count <= maxNbrLoops && i.hasNext())
+        while (count <= maxNbrLoops && (counting ? remaining > 0 : i.hasNext()))
         {
             count++;
 
-            put(context, elementKey, i.next());
+            Object value;
+            if (counting)
+            {
+                value = next;
+                next += step;
+                --remaining;
+            }
+            else
+            {
+                value = i.next();
+            }
+            put(context, elementKey, value);
             if (isScopeProvided())
             {
                 // update the scope control
                 foreach.index++;
-                foreach.hasNext = i.hasNext();
+                foreach.hasNext = counting ? remaining > 0 : i.hasNext();
             }
 
             try
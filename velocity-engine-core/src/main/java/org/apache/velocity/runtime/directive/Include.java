@@ -29,6 +29,8 @@
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.runtime.parser.node.ParserTreeConstants;
+import org.apache.velocity.runtime.resource.ContentResource;
+import org.apache.velocity.runtime.resource.DependencyGraph;
 import org.apache.velocity.runtime.resource.Resource;
 import org.apache.velocity.util.StringUtils;
 
@@ -235,7 +237,14 @@ private boolean renderOutput( Node node, InternalContextAdapter context,
         try
         {
             if (!blockinput)
+            {
+                DependencyGraph graph = rsvc.getDependencyGraph();
+                if (graph != null)
+                {
+                    graph.addDependency(context.getCurrentTemplateName(), arg);
+                }
                 resource = rsvc.getContent(arg, getInputEncoding(context));
+            }
         }
         catch ( ResourceNotFoundException rnfe )
         {
@@ -276,7 +285,14 @@ private boolean renderOutput( Node node, InternalContextAdapter context,
         else if ( resource == null )
             return false;
 
-        writer.write((String)resource.getData());
+        if (resource instanceof ContentResource)
+        {
+            ((ContentResource)resource).writeTo(writer);
+        }
+        else
+        {
+            writer.write((String)resource.getData());
+        }
         return true;
     }
 
@@ -31,6 +31,8 @@
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.runtime.parser.ParseException;
 import org.apache.velocity.runtime.parser.Token;
+import org.apache.velocity.runtime.resource.DependencyGraph;
+import org.apache.velocity.runtime.parser.node.ASTStringLiteral;
 import org.apache.velocity.runtime.parser.node.Node;
 import org.apache.velocity.runtime.parser.node.ParserTreeConstants;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
@@ -116,6 +118,20 @@ public void init(RuntimeServices rs, InternalContextAdapter context, Node node)
         this.maxDepth = rsvc.getInt(RuntimeConstants.PARSE_DIRECTIVE_MAXDEPTH, 10);
 
         strictRef = rsvc.getBoolean(RuntimeConstants.RUNTIME_REFERENCES_STRICT, false);
+
+        /*
+         * record constant arguments as dependencies of the template right away
+         */
+        DependencyGraph graph = rsvc.getDependencyGraph();
+        if (graph != null && node.jjtGetNumChildren() > 0 && node.jjtGetChild(0) instanceof ASTStringLiteral
+            && ((ASTStringLiteral)node.jjtGetChild(0)).isConstant())
+        {
+            Object arg = node.jjtGetChild(0).value(context);
+            if (arg != null)
+            {
+                graph.addDependency(context.getCurrentTemplateName(), arg.toString());
+            }
+        }
     }
 
     /**
@@ -250,6 +266,12 @@ public boolean render( InternalContextAdapter context,
             throw new VelocityException(msg, e);
         }
 
+        DependencyGraph graph = rsvc.getDependencyGraph();
+        if (graph != null)
+        {
+            graph.addDependency(context.getCurrentTemplateName(), arg);
+        }
+
         /**
          * Add the template name to the macro libraries list
          */
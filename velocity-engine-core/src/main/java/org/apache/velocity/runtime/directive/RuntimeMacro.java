@@ -80,6 +80,11 @@ public class RuntimeMacro extends Directive
      */
     private String badArgsErrorMsg = null;
 
+    /**
+     * Last macro resolution of this call site, along with what it depends upon.
+     */
+    private volatile Resolution resolution = null;
+
     /**
      * Return name of this Velocimacro.
      *
@@ -272,41 +277,25 @@ public boolean render(InternalContextAdapter context, Writer writer,
             throws IOException, ResourceNotFoundException,
             ParseErrorException, MethodInvocationException
     {
-        VelocimacroProxy vmProxy = null;
         Template renderingTemplate = (Template)context.getCurrentResource();
+        List macroLibraries = context.getMacroLibraries();
+        VelocimacroProxy vmProxy;
 
-        /**
-         * first look in the source template
+        /*
+         * the resolved macro only depends upon the rendering template, the macro
+         * libraries and the definitions of macros of this name, so it can be kept
+         * as long as none of them changed
          */
-        Object o = rsvc.getVelocimacro(macroName, renderingTemplate, getTemplate());
-
-        if( o != null )
+        Resolution cached = resolution;
+        int version = rsvc.getVelocimacroVersion(macroName, cached == null ? null : cached.proxy);
+        if (cached != null && cached.matches(version, renderingTemplate, macroLibraries))
         {
-            // getVelocimacro can only return a VelocimacroProxy so we don't need the
-            // costly instanceof check
-            vmProxy = (VelocimacroProxy)o;
+            vmProxy = cached.proxy;
         }
-
-        /**
-         * if not found, look in the macro libraries.
-         */
-        if (vmProxy == null)
+        else
         {
-            List macroLibraries = context.getMacroLibraries();
-            if (macroLibraries != null)
-            {
-                for (int i = macroLibraries.size() - 1; i >= 0; i--)
-                {
-                    o = rsvc.getVelocimacro(macroName, renderingTemplate, (Template)macroLibraries.get(i));
-
-                    // get the first matching macro
-                    if (o != null)
-                    {
-                        vmProxy = (VelocimacroProxy) o;
-                        break;
-                    }
-                }
-            }
+            vmProxy = lookup(renderingTemplate, macroLibraries);
+            resolution = new Resolution(version, renderingTemplate, macroLibraries, vmProxy);
         }
 
         if (vmProxy != null)
@@ -360,4 +349,91 @@ else if (strictRef)
         writer.write(getLiteral());
         return true;
     }
+
+    /**
+     * Looks for the macro implementation, first in the source template and
+     * then in the macro libraries.
+     *
+     * @param renderingTemplate template being rendered
+     * @param macroLibraries macro libraries of the current merge, may be null
+     * @return macro implementation, or null if not found
+     */
+    private VelocimacroProxy lookup(Template renderingTemplate, List macroLibraries)
+    {
+        /**
+         * first look in the source template
+         */
+        Object o = rsvc.getVelocimacro(macroName, renderingTemplate, getTemplate());
+
+        if( o != null )
+        {
+            // getVelocimacro can only return a VelocimacroProxy so we don't need the
+            // costly instanceof check
+            return (VelocimacroProxy)o;
+        }
+
+        /**
+         * if not found, look in the macro libraries.
+         */
+        if (macroLibraries != null)
+        {
+            for (int i = macroLibraries.size() - 1; i >= 0; i--)
+            {
+                o = rsvc.getVelocimacro(macroName, renderingTemplate, (Template)macroLibraries.get(i));
+
+                // get the first matching macro
+                if (o != null)
+                {
+                    return (VelocimacroProxy) o;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Result of a macro lookup, valid for a given macro definitions version,
+     * rendering template and set of macro libraries.
+     */
+    private static class Resolution
+    {
+        final int version;
+        final Template renderingTemplate;
+        final Object[] macroLibraries;
+        final VelocimacroProxy proxy;
+
+        Resolution(int version, Template renderingTemplate, List macroLibraries, VelocimacroProxy proxy)
+        {
+            this.version = version;
+            this.renderingTemplate = renderingTemplate;
+            /* copied, since the list keeps growing as templates get parsed */
+            this.macroLibraries = macroLibraries == null ? null : macroLibraries.toArray();
+            this.proxy = proxy;
+        }
+
+        boolean matches(int version, Template renderingTemplate, List macroLibraries)
+        {
+            if (version != this.version || renderingTemplate != this.renderingTemplate)
+            {
+                return false;
+            }
+            if (macroLibraries == null || this.macroLibraries == null)
+            {
+                return macroLibraries == null && this.macroLibraries == null;
+            }
+            int size = this.macroLibraries.length;
+            if (macroLibraries.size() != size)
+            {
+                return false;
+            }
+            for (int i = 0; i < size; ++i)
+            {
+                if (macroLibraries.get(i) != this.macroLibraries[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -47,6 +47,11 @@ public class ASTBlock extends SimpleNode
      */
     private String morePostfix = "";
 
+    /*
+     * flat rendering sequence, if any
+     */
+    private RenderPlan renderPlan = null;
+
     /**
      * @param id
      */
@@ -106,6 +111,35 @@ public void setMorePostfix(String morePosffix)
         this.morePostfix = morePosffix;
     }
 
+    /**
+     * get '#' and '$' prefix characters of the block end
+     * @return more postfix
+     */
+    public String getMorePostfix()
+    {
+        return morePostfix;
+    }
+
+    /**
+     * set the flat rendering sequence of this block
+     * @param renderPlan
+     * @since 2.0
+     */
+    public void setRenderPlan(RenderPlan renderPlan)
+    {
+        this.renderPlan = renderPlan;
+    }
+
+    /**
+     * get the flat rendering sequence of this block
+     * @return render plan, or null if not planned
+     * @since 2.0
+     */
+    public RenderPlan getRenderPlan()
+    {
+        return renderPlan;
+    }
+
     /**
      * set indentation postfix
      * @param postfix
@@ -131,6 +165,11 @@ public boolean render( InternalContextAdapter context, Writer writer)
         throws IOException, MethodInvocationException,
         	ResourceNotFoundException, ParseErrorException
     {
+        if (renderPlan != null)
+        {
+            return renderPlan.render(context, writer);
+        }
+
         SpaceGobbling spaceGobbling = rsvc.getSpaceGobbling();
 
         if (spaceGobbling == SpaceGobbling.NONE)
@@ -103,4 +103,11 @@ public boolean render( InternalContextAdapter context, Writer writer)
         return true;
     }
 
+    /**
+     * @see org.apache.velocity.runtime.parser.node.SimpleNode#getStaticText()
+     */
+    public String getStaticText()
+    {
+        return carr == null ? null : new String(carr);
+    }
 }
@@ -103,6 +103,10 @@ public boolean compareNull(Object left, Object right)
 
     public Boolean compareNumbers(Object left, Object right)
     {
+        if (MathUtils.isIntOrLong(left) && MathUtils.isIntOrLong(right))
+        {
+            return numberTest(Long.compare(((Number)left).longValue(), ((Number)right).longValue()));
+        }
         try
         {
             left = DuckType.asNumber(left);
@@ -25,6 +25,7 @@
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RenderListener;
 import org.apache.velocity.runtime.RuntimeConstants.SpaceGobbling;
 import org.apache.velocity.runtime.directive.BlockMacro;
 import org.apache.velocity.runtime.directive.Directive;
@@ -124,20 +125,20 @@ public synchronized Object init( InternalContextAdapter context, Object data)
              *  only do things that are not context dependent
              */
 
-            if (parser.isDirective( directiveName ))
+            Directive prototype = rsvc.getDirective( directiveName );
+            if (prototype != null)
             {
                 isDirective = true;
 
                 try
                 {
-                    directive = parser.getDirective( directiveName )
-                        .getClass().newInstance();
+                    directive = prototype.getClass().newInstance();
                 }
                 catch (InstantiationException | IllegalAccessException e)
                 {
                     throw new VelocityException(
                             "Couldn't initialize directive of class " +
-                            parser.getDirective(directiveName).getClass().getName(),
+                            prototype.getClass().getName(),
                             e);
                 }
 
@@ -292,7 +293,23 @@ public boolean render( InternalContextAdapter context, Writer writer)
 
             writer.write(morePrefix);
 
-            directive.render(context, writer, this);
+            RenderListener listener = rsvc.getRenderListener();
+            if (listener != null && listener.sample())
+            {
+                long start = System.nanoTime();
+                try
+                {
+                    directive.render(context, writer, this);
+                }
+                finally
+                {
+                    listener.directiveRendered(directive, System.nanoTime() - start);
+                }
+            }
+            else
+            {
+                directive.render(context, writer, this);
+            }
 
             if (morePrefix.length() > 0 || spaceGobbling == SpaceGobbling.NONE)
             {
@@ -84,4 +84,12 @@ public boolean render( InternalContextAdapter context, Writer writer)
         writer.write(ctext);
         return true;
     }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.SimpleNode#getStaticText()
+     */
+    public String getStaticText()
+    {
+        return ctext == null ? null : new String(ctext);
+    }
 }
@@ -27,6 +27,7 @@
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.parser.Parser;
 import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.InlineCache;
 import org.apache.velocity.util.introspection.IntrospectionCacheData;
 import org.apache.velocity.util.introspection.VelPropertyGet;
 
@@ -57,6 +58,11 @@ public class ASTIdentifier extends SimpleNode
      */
     protected Info uberInfo;
 
+    /**
+     *  Introspection cache shared by all merges
+     */
+    private final InlineCache inlineCache = new InlineCache();
+
     /**
      * Indicates if we are running in strict reference mode.
      */
@@ -126,22 +132,19 @@ public Object execute(Object o, InternalContextAdapter context)
         {
             /*
              *  first, see if we have this information cached.
+             *
+             *  if we have the cache data for the class of the object we are
+             *  invoked with, then we must be all right.  The last 'variable'
+             *  is the method name, and that is fixed in the template :)
+             *  The node cache is shared by all merges of the template.
              */
 
-            IntrospectionCacheData icd = context.icacheGet(this);
-
-            /*
-             * if we have the cache data and the class of the object we are
-             * invoked with is the same as that in the cache, then we must
-             * be all right.  The last 'variable' is the method name, and
-             * that is fixed in the template :)
-             */
-
-            if ( icd != null && (o != null) && (icd.contextData == o.getClass()) )
+            if (o != null)
             {
-                vg = (VelPropertyGet) icd.thingy;
+                vg = getCachedGetter(o.getClass());
             }
-            else
+
+            if (vg == null)
             {
                 /*
                  *  otherwise, do the introspection, and cache it.  Use the
@@ -152,10 +155,7 @@ public Object execute(Object o, InternalContextAdapter context)
 
                 if (vg != null && vg.isCacheable() && (o != null))
                 {
-                    icd = new IntrospectionCacheData();
-                    icd.contextData = o.getClass();
-                    icd.thingy = vg;
-                    context.icachePut(this,icd);
+                    inlineCache.put(o.getClass(), null, null, vg);
                 }
             }
         }
@@ -180,6 +180,15 @@ public Object execute(Object o, InternalContextAdapter context)
 
         if (vg == null)
         {
+            /*
+             * The parent class (typically ASTReference) uses the icache entry
+             * under 'this' key to distinguish a valid null result from a non-existent getter.
+             */
+            if (context.icacheGet(this) != null)
+            {
+                context.icachePut(this, null);
+            }
+
             if (strictRef)
             {
                 throw new MethodInvocationException("Object '" + o.getClass().getName() +
@@ -192,13 +201,44 @@ public Object execute(Object o, InternalContextAdapter context)
             }
         }
 
+        return invoke(vg, o, context);
+    }
+
+    /**
+     * Returns the getter cached for the given receiver class, if any.
+     * @param receiver receiver class
+     * @return cached getter, or null
+     * @since 2.0
+     */
+    VelPropertyGet getCachedGetter(Class receiver)
+    {
+        return (VelPropertyGet) inlineCache.get(receiver, null, null);
+    }
+
+    /**
+     * Invokes an already resolved getter on the given object.
+     * @param vg getter
+     * @param o receiver
+     * @param context
+     * @return result of the invocation
+     * @throws MethodInvocationException
+     * @since 2.0
+     */
+    Object invoke(VelPropertyGet vg, Object o, InternalContextAdapter context)
+        throws MethodInvocationException
+    {
         /*
          *  now try and execute.  If we get a MIE, throw that
          *  as the app wants to get these.  If not, log and punt.
          */
         try
         {
-            return vg.invoke(o);
+            Object result = vg.invoke(o);
+            if (result == null && context.icacheGet(this) == null)
+            {
+                context.icachePut(this, new IntrospectionCacheData()); // no need to fill in its members
+            }
+            return result;
         }
         catch(InvocationTargetException ite)
         {
@@ -212,8 +252,13 @@ public Object execute(Object o, InternalContextAdapter context)
             {
                 try
                 {
-                    return EventHandlerUtil.methodException(rsvc, context, o.getClass(), vg.getMethodName(),
+                    Object result = EventHandlerUtil.methodException(rsvc, context, o.getClass(), vg.getMethodName(),
                             (Exception) t, uberInfo);
+                    if (result == null && context.icacheGet(this) == null)
+                    {
+                        context.icachePut(this, new IntrospectionCacheData());
+                    }
+                    return result;
                 }
 
                 /**
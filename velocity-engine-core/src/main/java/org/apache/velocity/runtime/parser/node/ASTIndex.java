@@ -26,6 +26,7 @@
 import org.apache.velocity.runtime.parser.Parser;
 import org.apache.velocity.util.ClassUtils;
 import org.apache.velocity.util.StringUtils;
+import org.apache.velocity.util.introspection.InlineCache;
 import org.apache.velocity.util.introspection.VelMethod;
 
 /*
@@ -61,6 +62,11 @@ public class ASTIndex extends SimpleNode
      */
     protected boolean strictRef = false;
 
+    /**
+     *  Introspection cache shared by all merges
+     */
+    private final InlineCache inlineCache = new InlineCache();
+
     public ASTIndex(int i)
     {
         super(i);
@@ -151,7 +157,7 @@ public Object execute(Object o, InternalContextAdapter context)
         Class[] paramClasses = {argument == null ? null : argument.getClass()};
 
         VelMethod method = ClassUtils.getMethod(methodName, params, paramClasses,
-                                                o, context, this, strictRef);
+                                                o, context, this, inlineCache, strictRef);
 
         if (method == null) return null;
 
@@ -23,11 +23,9 @@
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.runtime.parser.Parser;
+import org.apache.velocity.util.IntegerRange;
 import org.apache.velocity.util.StringUtils;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * handles the range 'operator'  [ n .. m ]
  *
@@ -64,11 +62,11 @@ public Object jjtAccept(ParserVisitor visitor, Object data)
     }
 
     /**
-     *  does the real work.  Creates an Vector of Integers with the
+     *  does the real work.  Creates a List of Integers with the
      *  right value range
      *
      *  @param context  app context used if Left or Right of .. is a ref
-     *  @return Object array of Integers
+     *  @return IntegerRange list of Integers
      * @throws MethodInvocationException
      */
     public Object value( InternalContextAdapter context)
@@ -116,32 +114,10 @@ public Object value( InternalContextAdapter context)
         int r = ((Number) right).intValue();
 
         /*
-         *  find out how many there are
+         *  the elements are computed on demand, no need to fill a list
          */
 
-        int nbrElements = Math.abs( l - r );
-        nbrElements += 1;
-
-        /*
-         *  Determine whether the increment is positive or negative.
-         */
-
-        int delta = ( l >= r ) ? -1 : 1;
-
-        /*
-         * Fill the range with the appropriate values.
-         */
-
-        List elements = new ArrayList(nbrElements);
-        int value = l;
-
-        for (int i = 0; i < nbrElements; i++)
-        {
-            elements.add(value);
-            value += delta;
-        }
-
-        return elements;
+        return new IntegerRange(l, r);
     }
 
     /**
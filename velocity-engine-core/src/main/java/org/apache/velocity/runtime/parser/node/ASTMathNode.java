@@ -85,6 +85,14 @@ public Object value(InternalContextAdapter context) throws MethodInvocationExcep
         Object left = jjtGetChild(0).value(context);
         Object right = jjtGetChild(1).value(context);
 
+        /*
+         * Integer and Long operands need neither special handling nor coercion
+         */
+        if (MathUtils.isIntOrLong(left) && MathUtils.isIntOrLong(right))
+        {
+            return perform((Number)left, (Number)right, context);
+        }
+
         /*
          * should we do anything special here?
          */
@@ -30,6 +30,7 @@
 import org.apache.velocity.runtime.parser.Parser;
 import org.apache.velocity.util.ClassUtils;
 import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.InlineCache;
 import org.apache.velocity.util.introspection.IntrospectionCacheData;
 import org.apache.velocity.util.introspection.VelMethod;
 
@@ -63,6 +64,11 @@ public class ASTMethod extends SimpleNode
 
     protected Info uberInfo;
 
+    /**
+     *  Introspection cache shared by all merges
+     */
+    private final InlineCache inlineCache = new InlineCache();
+
     /**
      * Indicates if we are running in strict reference mode.
      */
@@ -141,8 +147,8 @@ public Object execute(Object o, InternalContextAdapter context)
         /*
          *  new strategy (strategery!) for introspection. Since we want
          *  to be thread- as well as context-safe, we *must* do it now,
-         *  at execution time.  There can be no in-node caching,
-         *  but if we are careful, we can do it in the context.
+         *  at execution time.  In-node caching is done by a thread-safe
+         *  inline cache keyed by receiver and argument classes.
          */
         Object [] params = new Object[paramCount];
 
@@ -163,27 +169,50 @@ public Object execute(Object o, InternalContextAdapter context)
         }
 
         VelMethod method = ClassUtils.getMethod(methodName, params, paramClasses,
-            o, context, this, strictRef);
+            o, context, this, inlineCache, strictRef);
 
         /*
          * The parent class (typically ASTReference) uses the icache entry
          * under 'this' key to distinguish a valid null result from a non-existent method.
          * So update this dummy cache value if necessary.
          */
-        IntrospectionCacheData prevICD = context.icacheGet(this);
         if (method == null)
         {
-            if (prevICD != null)
+            if (context.icacheGet(this) != null)
             {
                 context.icachePut(this, null);
             }
             return null;
         }
-        else if (prevICD == null)
-        {
-            context.icachePut(this, new IntrospectionCacheData()); // no need to fill in its members
-        }
 
+        return invoke(method, o, params, context);
+    }
+
+    /**
+     * Returns the method cached for the given receiver class, if this method
+     * takes no argument and has already been resolved for that class.
+     * @param receiver receiver class
+     * @return cached method, or null
+     * @since 2.0
+     */
+    VelMethod getCachedMethod(Class receiver)
+    {
+        return paramCount == 0 ? (VelMethod) inlineCache.get(receiver, methodName, EMPTY_CLASS_ARRAY) : null;
+    }
+
+    /**
+     * Invokes an already resolved method on the given object.
+     * @param method method
+     * @param o receiver
+     * @param params argument values
+     * @param context
+     * @return result of the invocation
+     * @throws MethodInvocationException
+     * @since 2.0
+     */
+    Object invoke(VelMethod method, Object o, Object[] params, InternalContextAdapter context)
+        throws MethodInvocationException
+    {
         try
         {
             /*
@@ -203,19 +232,20 @@ else if (prevICD == null)
                 {
                     return "";
                 }
+                markMethodFound(context);
             }
 
             return obj;
         }
         catch( InvocationTargetException ite )
         {
-            return handleInvocationException(o, context, ite.getTargetException());
+            return markMethodFound(context, handleInvocationException(o, context, ite.getTargetException()));
         }
 
         /** Can also be thrown by method invocation **/
         catch( IllegalArgumentException t )
         {
-            return handleInvocationException(o, context, t);
+            return markMethodFound(context, handleInvocationException(o, context, t));
         }
 
         /**
@@ -234,6 +264,27 @@ else if (prevICD == null)
         }
     }
 
+    /**
+     * Flags, for this merge, that this method exists even though it returned null.
+     * @param context
+     */
+    private void markMethodFound(InternalContextAdapter context)
+    {
+        if (context.icacheGet(this) == null)
+        {
+            context.icachePut(this, new IntrospectionCacheData()); // no need to fill in its members
+        }
+    }
+
+    private Object markMethodFound(InternalContextAdapter context, Object result)
+    {
+        if (result == null)
+        {
+            markMethodFound(context);
+        }
+        return result;
+    }
+
     private Object handleInvocationException(Object o, InternalContextAdapter context, Throwable t)
     {
         /*
@@ -437,6 +437,23 @@ public boolean render(InternalContextAdapter context, Writer writer) throws IOEx
             return true;
         }
 
+        return renderValue(context, writer, value);
+    }
+
+    /**
+     * Outputs the already computed value of this non escaped reference,
+     * after reference insertion events.
+     * @param context
+     * @param writer
+     * @param value value returned by {@link #execute(Object, InternalContextAdapter)}
+     * @return True if rendering was successful.
+     * @throws IOException
+     * @throws MethodInvocationException
+     * @since 2.0
+     */
+    boolean renderValue(InternalContextAdapter context, Writer writer, Object value) throws IOException,
+            MethodInvocationException
+    {
         /*
          * the normal processing
          *
@@ -509,7 +526,7 @@ public boolean render(InternalContextAdapter context, Writer writer) throws IOEx
              * write prefix twice, because it's schmoo, so the \ don't escape each
              * other...
              */
-            localNullString = getNullString(context);
+            String localNullString = getNullString(context);
             if (!strictEscape)
             {
                 // If in strict escape mode then we only print escape once.
@@ -1012,6 +1029,17 @@ else if (t.image.startsWith("$"))
 
     }
 
+    /**
+     * Whether this reference can be rendered by a guarded plan step: a plain,
+     * non escaped reference outside of strict reference mode.
+     * @return true if this reference can be rendered by a guarded plan step
+     * @since 2.0
+     */
+    boolean isGuardable()
+    {
+        return referenceType != RUNT && !escaped && !strictRef;
+    }
+
     /**
      * @param context
      * @param variable
@@ -46,6 +46,12 @@ public class ASTStringLiteral extends SimpleNode
 
     private SimpleNode nodeTree = null;
 
+    /* flat plan of nodeTree, when it has no directive */
+    private InterpolationPlan plan = null;
+
+    /* cache the value of the empty check switch */
+    private boolean checkEmpty = true;
+
     private String image = "";
 
     /**
@@ -159,8 +165,21 @@ && getFirstToken().image.startsWith("\"")
              */
 
             nodeTree.init(context, rsvc);
+
+            /*
+             * and flatten it, unless it embeds directives: then merge its
+             * static text, the tree being rendered on each evaluation
+             */
+
+            plan = InterpolationPlan.compile(nodeTree);
+            if (plan == null)
+            {
+                RenderPlanner.plan(nodeTree, rsvc);
+            }
         }
 
+        checkEmpty = rsvc.getBoolean(RuntimeConstants.CHECK_EMPTY_OBJECTS, true);
+
         cleanupParserAndTokens();
 
         return data;
@@ -279,6 +298,26 @@ public Object jjtAccept(ParserVisitor visitor, Object data)
         return visitor.visit(this, data);
     }
 
+    /**
+     * Returns the flat plan used to interpolate this string.
+     * @return the plan, or null if this string is not interpolated or contains directives
+     * @since 2.0
+     */
+    public InterpolationPlan getInterpolationPlan()
+    {
+        return plan;
+    }
+
+    /**
+     * Returns the render plan of the tree of this string, used when it contains directives.
+     * @return the plan, or null if this string is not interpolated or has an interpolation plan
+     * @since 2.0
+     */
+    public RenderPlan getRenderPlan()
+    {
+        return nodeTree instanceof ASTprocess ? ((ASTprocess)nodeTree).getRenderPlan() : null;
+    }
+
     /**
      * Check to see if this is an interpolated string.
      * @return true if this is constant (not an interpolated string)
@@ -303,6 +342,11 @@ public Object value(InternalContextAdapter context)
         {
             try
             {
+                if (plan != null)
+                {
+                    return plan.evaluate(context);
+                }
+
                 /*
                  * now render against the real context
                  */
@@ -348,7 +392,7 @@ public Object value(InternalContextAdapter context)
     public boolean evaluate( InternalContextAdapter context)
     {
         String str = (String)value(context);
-        return str != null && (!rsvc.getBoolean(RuntimeConstants.CHECK_EMPTY_OBJECTS, true) || !str.isEmpty());
+        return str != null && (!checkEmpty || !str.isEmpty());
     }
 
 }
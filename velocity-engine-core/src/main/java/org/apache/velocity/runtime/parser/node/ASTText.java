@@ -34,6 +34,8 @@ public class ASTText extends SimpleNode
 {
     private String ctext;
 
+    private EncodedText encodedText;
+
     /**
      * @param id
      */
@@ -67,6 +69,7 @@ public String getCtext()
     public void setCtext(String ctext)
     {
         this.ctext = ctext;
+        this.encodedText = ctext == null ? null : new EncodedText(ctext);
     }
 
     /**
@@ -91,6 +94,7 @@ public Object init( InternalContextAdapter context, Object data)
         }
         builder.append(NodeUtils.tokenLiteral(t));
         ctext = builder.toString();
+        encodedText = new EncodedText(ctext);
 
         cleanupParserAndTokens();
 
@@ -103,7 +107,22 @@ public Object init( InternalContextAdapter context, Object data)
     public boolean render( InternalContextAdapter context, Writer writer)
         throws IOException
     {
-        writer.write(ctext);
+        if (encodedText != null)
+        {
+            encodedText.write(writer);
+        }
+        else
+        {
+            writer.write(ctext);
+        }
         return true;
     }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.SimpleNode#getStaticText()
+     */
+    public String getStaticText()
+    {
+        return ctext;
+    }
 }
@@ -20,14 +20,25 @@
  */
 
 import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.TemplateInitException;
 import org.apache.velocity.runtime.parser.Parser;
 
+import java.io.IOException;
+import java.io.Writer;
+
 /**
  *
  */
 public class ASTprocess extends SimpleNode
 {
+    /*
+     * flat rendering sequence, if any
+     */
+    private RenderPlan renderPlan = null;
+
     /**
      * @param id
      */
@@ -63,4 +74,37 @@ public Object init( InternalContextAdapter context, Object data) throws Template
     	cleanupParserAndTokens(); // drop reference to Parser and all JavaCC Tokens
     	return obj;
     }
+
+    /**
+     * set the flat rendering sequence of this template
+     * @param renderPlan
+     * @since 2.0
+     */
+    public void setRenderPlan(RenderPlan renderPlan)
+    {
+        this.renderPlan = renderPlan;
+    }
+
+    /**
+     * get the flat rendering sequence of this template
+     * @return render plan, or null if not planned
+     * @since 2.0
+     */
+    public RenderPlan getRenderPlan()
+    {
+        return renderPlan;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.SimpleNode#render(org.apache.velocity.context.InternalContextAdapter, java.io.Writer)
+     */
+    public boolean render( InternalContextAdapter context, Writer writer)
+        throws IOException, MethodInvocationException, ParseErrorException, ResourceNotFoundException
+    {
+        if (renderPlan != null)
+        {
+            return renderPlan.render(context, writer);
+        }
+        return super.render(context, writer);
+    }
 }
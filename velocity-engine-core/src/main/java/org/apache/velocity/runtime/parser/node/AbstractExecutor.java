@@ -19,6 +19,7 @@
  * under the License.
  */
 
+import org.apache.velocity.util.introspection.MethodHandleInvoker;
 import org.slf4j.Logger;
 
 import java.lang.reflect.InvocationTargetException;
@@ -43,6 +44,11 @@
      */
     private Method method = null;
 
+    /**
+     * Method handle invoker, if bound.
+     */
+    private MethodHandleInvoker invoker = null;
+
     /**
      * Execute method against context.
      * @param o
@@ -79,5 +85,34 @@ public Method getMethod()
     protected void setMethod(final Method method)
     {
         this.method = method;
+        this.invoker = null;
+    }
+
+    /**
+     * Binds the current method into a method handle, which will then be used
+     * instead of reflection by {@link #invoke(Object, Object[])}.
+     * @since 2.0
+     */
+    public void bindMethodHandle()
+    {
+        if (method != null && invoker == null)
+        {
+            invoker = MethodHandleInvoker.create(method, null);
+        }
+    }
+
+    /**
+     * Invokes the current method, through its method handle if bound.
+     * @param o target object
+     * @param params method parameters
+     * @return method result
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException
+     * @since 2.0
+     */
+    protected Object invoke(Object o, Object[] params)
+        throws IllegalAccessException, InvocationTargetException
+    {
+        return invoker != null ? invoker.invoke(o, params) : method.invoke(o, params);
     }
 }
@@ -0,0 +1,86 @@
+package org.apache.velocity.runtime.parser.node;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.context.InternalContextAdapter;
+
+/**
+ * Node standing for an expression which has been folded by the {@link TemplateOptimizer}.
+ * It keeps both the value and the truth of the original expression, since some expressions
+ * (math operations for instance) do not evaluate to their value.
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class ConstantNode extends SimpleNode
+{
+    private final Object value;
+    private final boolean truth;
+
+    /**
+     * Builds a constant node replacing the given expression.
+     * @param original folded node
+     * @param value value of the original node
+     * @param truth evaluation of the original node
+     */
+    public ConstantNode(SimpleNode original, Object value, boolean truth)
+    {
+        super(original.id);
+        this.value = value;
+        this.truth = truth;
+        rsvc = original.rsvc;
+        log = original.log;
+        template = original.template;
+        line = original.getLine();
+        column = original.getColumn();
+        literal = String.valueOf(value);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.SimpleNode#init(org.apache.velocity.context.InternalContextAdapter, java.lang.Object)
+     */
+    public Object init(InternalContextAdapter context, Object data)
+    {
+        // already initialized
+        return data;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.SimpleNode#value(org.apache.velocity.context.InternalContextAdapter)
+     */
+    public Object value(InternalContextAdapter context)
+    {
+        return value;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.SimpleNode#evaluate(org.apache.velocity.context.InternalContextAdapter)
+     */
+    public boolean evaluate(InternalContextAdapter context)
+    {
+        return truth;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + " [id=" + id + ", value=" + value + "]";
+    }
+}
@@ -0,0 +1,102 @@
+package org.apache.velocity.runtime.parser.node;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.io.ByteVelocityWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Static template text, which keeps its encoded form for the last charset
+ * it has been written with towards a {@link ByteVelocityWriter}, so that it's
+ * only encoded once rather than at each rendering.
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+final class EncodedText
+{
+    private final String text;
+
+    private volatile Encoding encoding = null;
+
+    /**
+     * @param text static text
+     */
+    EncodedText(String text)
+    {
+        this.text = text;
+    }
+
+    /**
+     * @return static text
+     */
+    String getText()
+    {
+        return text;
+    }
+
+    /**
+     * Writes the text, copying its encoded bytes for byte-oriented writers.
+     * @param writer
+     * @throws IOException
+     */
+    void write(Writer writer) throws IOException
+    {
+        if (writer instanceof ByteVelocityWriter && ((ByteVelocityWriter)writer).acceptsEncodedBytes())
+        {
+            ByteVelocityWriter byteWriter = (ByteVelocityWriter)writer;
+            byteWriter.writeBytes(getBytes(byteWriter.getCharset()));
+        }
+        else
+        {
+            writer.write(text);
+        }
+    }
+
+    /**
+     * @param charset
+     * @return text encoded with the given charset
+     */
+    byte[] getBytes(Charset charset)
+    {
+        Encoding current = encoding;
+        if (current == null || !current.charset.equals(charset))
+        {
+            current = new Encoding(charset, text.getBytes(charset));
+            encoding = current;
+        }
+        return current.bytes;
+    }
+
+    private static final class Encoding
+    {
+        final Charset charset;
+        final byte[] bytes;
+
+        Encoding(Charset charset, byte[] bytes)
+        {
+            this.charset = charset;
+            this.bytes = bytes;
+        }
+    }
+}
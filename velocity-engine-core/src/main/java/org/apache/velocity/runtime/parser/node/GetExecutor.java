@@ -111,6 +111,6 @@ protected void discover(final Class clazz)
     public Object execute(final Object o)
         throws IllegalAccessException,  InvocationTargetException
     {
-        return isAlive() ? getMethod().invoke(o, params) : null;
+        return isAlive() ? invoke(o, params) : null;
     }
 }
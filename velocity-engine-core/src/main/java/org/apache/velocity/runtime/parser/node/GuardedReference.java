@@ -0,0 +1,146 @@
+package org.apache.velocity.runtime.parser.node;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.app.event.EventHandlerUtil;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.util.introspection.VelMethod;
+import org.apache.velocity.util.introspection.VelPropertyGet;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <p>Render plan step for a reference such as <code>$foo.bar.baz()</code>.</p>
+ *
+ * <p>Each property and argument-less method of the chain is resolved through the inline
+ * cache of its node, guarded by the class of the current receiver: while the guard holds,
+ * the cached getter or method is invoked directly. When it fails, or for any other kind of
+ * link (method with arguments, index), that link alone is executed by the interpreter,
+ * which also refills the node cache. Every link is thus invoked exactly once.</p>
+ *
+ * <p>Missing values are only reported to invalid reference event handlers by the
+ * interpreter, so the whole reference is rendered by {@link ASTReference#render} whenever
+ * such handlers may exist. Reference insertion and method exception events are
+ * handled as usual.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+final class GuardedReference
+{
+    private final ASTReference reference;
+
+    private final String rootString;
+
+    private final Node[] links;
+
+    /**
+     * @param reference guardable reference
+     */
+    private GuardedReference(ASTReference reference)
+    {
+        this.reference = reference;
+        this.rootString = reference.getRootString();
+        this.links = new Node[reference.jjtGetNumChildren()];
+        for (int i = 0; i < links.length; i++)
+        {
+            links[i] = reference.jjtGetChild(i);
+        }
+    }
+
+    /**
+     * @param node planned node
+     * @return guarded step for the given node, or null if it isn't a guardable reference
+     */
+    static GuardedReference create(Node node)
+    {
+        if (node instanceof ASTReference && ((ASTReference)node).isGuardable())
+        {
+            return new GuardedReference((ASTReference)node);
+        }
+        return null;
+    }
+
+    /**
+     * @return rendered reference
+     */
+    ASTReference getReference()
+    {
+        return reference;
+    }
+
+    /**
+     * Renders the reference.
+     * @param context
+     * @param writer
+     * @return true
+     * @throws IOException
+     * @throws MethodInvocationException
+     */
+    boolean render(InternalContextAdapter context, Writer writer)
+        throws IOException, MethodInvocationException
+    {
+        if (EventHandlerUtil.hasInvalidReferenceHandlers(reference.getRuntimeServices(), context))
+        {
+            return reference.render(context, writer);
+        }
+
+        Object value = reference.getVariableValue(context, rootString);
+        try
+        {
+            for (int i = 0; i < links.length && value != null; i++)
+            {
+                value = execute(links[i], value, context);
+            }
+        }
+        catch (MethodInvocationException mie)
+        {
+            mie.setReferenceName(rootString);
+            throw mie;
+        }
+        return reference.renderValue(context, writer, value);
+    }
+
+    private static Object execute(Node link, Object o, InternalContextAdapter context)
+        throws MethodInvocationException
+    {
+        if (link instanceof ASTIdentifier)
+        {
+            ASTIdentifier identifier = (ASTIdentifier)link;
+            VelPropertyGet getter = identifier.getCachedGetter(o.getClass());
+            if (getter != null)
+            {
+                return identifier.invoke(getter, o, context);
+            }
+        }
+        else if (link instanceof ASTMethod)
+        {
+            ASTMethod method = (ASTMethod)link;
+            VelMethod target = method.getCachedMethod(o.getClass());
+            if (target != null)
+            {
+                return method.invoke(target, o, new Object[0], context);
+            }
+        }
+        return link.execute(o, context);
+    }
+}
@@ -0,0 +1,140 @@
+package org.apache.velocity.runtime.parser.node;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.util.StringBuilderWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flat evaluation sequence of an interpolated string literal which only contains
+ * static text and references. Each step either appends a constant segment,
+ * built by joining adjacent static nodes, or renders a reference, into a
+ * single builder sized after the longest result seen so far.
+ *
+ * @see ASTStringLiteral
+ * @version $Id$
+ * @since 2.0
+ */
+public final class InterpolationPlan
+{
+    /**
+     * constant segment of each step, or null for reference steps
+     */
+    private final String[] texts;
+
+    /**
+     * reference rendered by each step, or null for constant steps
+     */
+    private final ASTReference[] references;
+
+    /**
+     * initial builder capacity
+     */
+    private volatile int sizeHint;
+
+    private InterpolationPlan(String[] texts, ASTReference[] references, int sizeHint)
+    {
+        this.texts = texts;
+        this.references = references;
+        this.sizeHint = sizeHint;
+    }
+
+    /**
+     * Compiles the parsed tree of an interpolated string.
+     * @param tree initialized tree
+     * @return the plan, or null if the tree contains anything but static text and references
+     */
+    public static InterpolationPlan compile(Node tree)
+    {
+        List<String> texts = new ArrayList<>();
+        List<ASTReference> references = new ArrayList<>();
+        int constantLength = 0;
+        int k = tree.jjtGetNumChildren();
+        int i = 0;
+        while (i < k)
+        {
+            int end = NodeUtils.getStaticRunEnd(tree, i);
+            if (end > i)
+            {
+                String text = NodeUtils.getStaticRunText(tree, i, end);
+                texts.add(text);
+                references.add(null);
+                constantLength += text.length();
+                i = end;
+            }
+            else if (tree.jjtGetChild(i) instanceof ASTReference)
+            {
+                texts.add(null);
+                references.add((ASTReference)tree.jjtGetChild(i++));
+            }
+            else
+            {
+                return null;
+            }
+        }
+        return new InterpolationPlan(texts.toArray(new String[texts.size()]),
+            references.toArray(new ASTReference[references.size()]), constantLength);
+    }
+
+    /**
+     * Evaluates the string against the given context.
+     * @param context
+     * @return interpolated string
+     * @throws IOException
+     */
+    public String evaluate(InternalContextAdapter context) throws IOException
+    {
+        StringBuilder builder = new StringBuilder(sizeHint);
+        StringBuilderWriter writer = null;
+        for (int i = 0; i < texts.length; i++)
+        {
+            String text = texts[i];
+            if (text != null)
+            {
+                builder.append(text);
+            }
+            else
+            {
+                if (writer == null)
+                {
+                    writer = new StringBuilderWriter(builder);
+                }
+                references[i].render(context, writer);
+            }
+        }
+        if (builder.length() > sizeHint)
+        {
+            sizeHint = builder.length();
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return number of steps in this plan
+     */
+    public int size()
+    {
+        return texts.length;
+    }
+}
@@ -22,9 +22,7 @@
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Utility-class for all arithmetic-operations.<br><br>
@@ -42,7 +40,9 @@
  * In addition to that the methods <code>multiply</code>,<code>add</code> and <code>substract</code> implement overflow
  * checks for <code>long</code>-values. That means that if an overflow occurs while working with long values a BigInteger
  * will be returned.<br>
- * For all other operations and types (such as Float and Double) there is no overflow checking.
+ * For all other operations and types (such as Float and Double) there is no overflow checking.<br><br>
+ *
+ * Operations on Integer and Long operands take an unboxed path, and small int results share cached boxes.
  *
  * @author <a href="mailto:pero@antaramusic.de">Peter Romianowski</a>
  * @since 1.5
@@ -65,16 +65,17 @@
     protected static final int BASE_BIGDECIMAL    = 4;
 
     /**
-     * The <code>Class</code>-object is key, the maximum-value is the value
+     * Shared boxes for small int results, counters and indices mostly.
      */
-    private static final Map ints = new HashMap();
+    private static final int SMALL_INT_MIN = -128;
+    private static final int SMALL_INT_MAX = 1023;
+    private static final Integer[] smallInts = new Integer[SMALL_INT_MAX - SMALL_INT_MIN + 1];
     static
     {
-        ints.put (Byte.class, BigDecimal.valueOf (Byte.MAX_VALUE));
-        ints.put (Short.class, BigDecimal.valueOf (Short.MAX_VALUE));
-        ints.put (Integer.class, BigDecimal.valueOf (Integer.MAX_VALUE));
-        ints.put (Long.class, BigDecimal.valueOf (Long.MAX_VALUE));
-        ints.put (BigInteger.class, BigDecimal.valueOf (-1));
+        for (int i = 0; i < smallInts.length; i++)
+        {
+            smallInts[i] = Integer.valueOf(i + SMALL_INT_MIN);
+        }
     }
 
     /**
@@ -137,6 +138,10 @@ public static BigInteger toBigInteger (Number n)
      */
     public static boolean isZero (Number n)
     {
+        if (n instanceof Integer || n instanceof Long)
+        {
+            return n.longValue() == 0;
+        }
         if (isInteger( n ) )
         {
             if (n instanceof BigInteger)
@@ -164,7 +169,48 @@ public static boolean isZero (Number n)
      */
     public static boolean isInteger (Number n)
     {
-        return ints.containsKey (n.getClass());
+        Class c = n.getClass();
+        return c == Integer.class || c == Long.class || c == Short.class || c == Byte.class || c == BigInteger.class;
+    }
+
+    /**
+     * Test whether the given object is an Integer or a Long, the operands
+     * for which operations have an unboxed fast path.
+     * @param o
+     * @return True if o is an Integer or a Long.
+     * @since 2.0
+     */
+    public static boolean isIntOrLong (Object o)
+    {
+        return o instanceof Integer || o instanceof Long;
+    }
+
+    /**
+     * Box an int result, sharing the boxes of small values.
+     * @param value
+     * @return boxed value
+     * @since 2.0
+     */
+    public static Integer box (int value)
+    {
+        if (value >= SMALL_INT_MIN && value <= SMALL_INT_MAX)
+        {
+            return smallInts[value - SMALL_INT_MIN];
+        }
+        return value;
+    }
+
+    /**
+     * Box a long result as an Integer if both operands were Integers and the
+     * value fits, as a Long otherwise.
+     */
+    private static Number box (long value, boolean ints)
+    {
+        if (ints && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+        {
+            return box((int)value);
+        }
+        return value;
     }
 
     /**
@@ -302,6 +348,18 @@ public static int findCalculationBase(Number op)
     public static Number add (Number op1, Number op2)
     {
 
+        if (isIntOrLong(op1) && isIntOrLong(op2))
+        {
+            long l1 = op1.longValue();
+            long l2 = op2.longValue();
+            long result = l1 + l2;
+            if (((l1 ^ result) & (l2 ^ result)) < 0)
+            {
+                return BigInteger.valueOf(l1).add(BigInteger.valueOf(l2));
+            }
+            return box(result, op1 instanceof Integer && op2 instanceof Integer);
+        }
+
         int calcBase = findCalculationBase( op1, op2);
         switch (calcBase)
         {
@@ -338,6 +396,18 @@ public static Number add (Number op1, Number op2)
      */
     public static Number subtract (Number op1, Number op2) {
 
+        if (isIntOrLong(op1) && isIntOrLong(op2))
+        {
+            long l1 = op1.longValue();
+            long l2 = op2.longValue();
+            long result = l1 - l2;
+            if (((l1 ^ l2) & (l1 ^ result)) < 0)
+            {
+                return BigInteger.valueOf(l1).subtract(BigInteger.valueOf(l2));
+            }
+            return box(result, op1 instanceof Integer && op2 instanceof Integer);
+        }
+
         int calcBase = findCalculationBase( op1, op2);
         switch (calcBase) {
             case BASE_BIGINTEGER:
@@ -372,6 +442,24 @@ public static Number subtract (Number op1, Number op2) {
      */
     public static Number multiply (Number op1, Number op2) {
 
+        if (isIntOrLong(op1) && isIntOrLong(op2))
+        {
+            long l1 = op1.longValue();
+            long l2 = op2.longValue();
+            boolean ints = op1 instanceof Integer && op2 instanceof Integer;
+            if (ints)
+            {
+                /* the product of two ints always fits in a long */
+                return box(l1 * l2, true);
+            }
+            long result = l1 * l2;
+            if (l2 != 0 && (result / l2 != l1 || (l1 == Long.MIN_VALUE && l2 == -1)))
+            {
+                return BigInteger.valueOf(l1).multiply(BigInteger.valueOf(l2));
+            }
+            return result;
+        }
+
         int calcBase = findCalculationBase( op1, op2);
         switch (calcBase) {
             case BASE_BIGINTEGER:
@@ -407,6 +495,17 @@ public static Number multiply (Number op1, Number op2) {
      */
     public static Number divide (Number op1, Number op2) {
 
+        if (isIntOrLong(op1) && isIntOrLong(op2))
+        {
+            long l1 = op1.longValue();
+            long l2 = op2.longValue();
+            if (l1 == Long.MIN_VALUE && l2 == -1)
+            {
+                return BigInteger.valueOf(l1).negate();
+            }
+            return box(l1 / l2, op1 instanceof Integer && op2 instanceof Integer);
+        }
+
         int calcBase = findCalculationBase( op1, op2);
         switch (calcBase) {
             case BASE_BIGINTEGER:
@@ -440,6 +539,11 @@ public static Number divide (Number op1, Number op2) {
      */
     public static Number modulo (Number op1, Number op2) throws ArithmeticException {
 
+        if (isIntOrLong(op1) && isIntOrLong(op2))
+        {
+            return box(op1.longValue() % op2.longValue(), op1 instanceof Integer && op2 instanceof Integer);
+        }
+
         int calcBase = findCalculationBase( op1, op2);
         switch (calcBase) {
             case BASE_BIGINTEGER:
@@ -465,6 +569,11 @@ public static Number modulo (Number op1, Number op2) throws ArithmeticException
      */
     public static int compare (Number op1, Number op2) {
 
+        if (isIntOrLong(op1) && isIntOrLong(op2))
+        {
+            return Long.compare(op1.longValue(), op2.longValue());
+        }
+
         int calcBase = findCalculationBase( op1, op2);
         switch (calcBase) {
             case BASE_BIGINTEGER:
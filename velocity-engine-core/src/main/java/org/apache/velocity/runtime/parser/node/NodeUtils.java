@@ -160,4 +160,50 @@ public static void fixIndentation(SimpleNode parent, String parentIndentation)
         IndentationFixer fixer = new IndentationFixer(parentIndentation);
         parent.childrenAccept(fixer, null);
     }
+
+    /**
+     * Finds the end of the run of adjacent static children (text, comments, escapes,
+     * text blocks) starting at the given index.
+     * @param parent parent node
+     * @param start index of the first child of the run
+     * @return index following the run, equal to start if that child is not static
+     * @since 2.0
+     */
+    public static int getStaticRunEnd(Node parent, int start)
+    {
+        int end = start;
+        int k = parent.jjtGetNumChildren();
+        while (end < k && getStaticText(parent.jjtGetChild(end)) != null)
+        {
+            ++end;
+        }
+        return end;
+    }
+
+    /**
+     * Joins the static text of a run of adjacent static children.
+     * @param parent parent node
+     * @param start index of the first child of the run
+     * @param end index following the run, as returned by {@link #getStaticRunEnd(Node, int)}
+     * @return text rendered by the run
+     * @since 2.0
+     */
+    public static String getStaticRunText(Node parent, int start, int end)
+    {
+        if (end - start == 1)
+        {
+            return getStaticText(parent.jjtGetChild(start));
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = start; i < end; i++)
+        {
+            builder.append(getStaticText(parent.jjtGetChild(i)));
+        }
+        return builder.toString();
+    }
+
+    private static String getStaticText(Node node)
+    {
+        return node instanceof SimpleNode ? ((SimpleNode)node).getStaticText() : null;
+    }
 }
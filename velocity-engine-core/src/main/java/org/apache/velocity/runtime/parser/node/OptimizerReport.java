@@ -0,0 +1,93 @@
+package org.apache.velocity.runtime.parser.node;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * What the {@link TemplateOptimizer} did to a template.
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class OptimizerReport
+{
+    private final String templateName;
+    int foldedExpressions = 0;
+    int prunedBranches = 0;
+    int coalescedTexts = 0;
+    int removedNodes = 0;
+
+    /**
+     * @param templateName name of the optimized template
+     */
+    public OptimizerReport(String templateName)
+    {
+        this.templateName = templateName;
+    }
+
+    /**
+     * @return name of the optimized template
+     */
+    public String getTemplateName()
+    {
+        return templateName;
+    }
+
+    /**
+     * @return number of constant expressions replaced by their value
+     */
+    public int getFoldedExpressions()
+    {
+        return foldedExpressions;
+    }
+
+    /**
+     * @return number of unreachable #if, #elseif and #else branches removed
+     */
+    public int getPrunedBranches()
+    {
+        return prunedBranches;
+    }
+
+    /**
+     * @return number of static text nodes merged into a preceding or following one
+     */
+    public int getCoalescedTexts()
+    {
+        return coalescedTexts;
+    }
+
+    /**
+     * @return total number of nodes removed from the tree
+     */
+    public int getRemovedNodes()
+    {
+        return removedNodes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "template " + templateName + ": "
+            + foldedExpressions + " constant expressions folded, "
+            + prunedBranches + " dead branches pruned, "
+            + coalescedTexts + " text nodes coalesced, "
+            + removedNodes + " nodes removed";
+    }
+}
@@ -145,6 +145,6 @@ public Object execute(Object o)
         {
             o = new ArrayListWrapper(o);
         }
-        return isAlive() ? getMethod().invoke(o, ((Object []) null)) : null;
+        return isAlive() ? invoke(o, null) : null;
     }
 }
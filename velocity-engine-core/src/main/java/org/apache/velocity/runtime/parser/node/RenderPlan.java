@@ -0,0 +1,154 @@
+package org.apache.velocity.runtime.parser.node;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.exception.ResourceNotFoundException;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Flat rendering sequence for the children of a container node (template root
+ * or block). Each step either writes a constant chunk of text, built by joining
+ * adjacent static nodes beforehand, renders a reference through a {@link GuardedReference}
+ * which calls the getters cached by its nodes as long as their receiver class guards hold,
+ * or delegates to the interpreter by rendering the corresponding node.
+ *
+ * @see RenderPlanner
+ * @version $Id$
+ * @since 2.0
+ */
+public final class RenderPlan
+{
+    /**
+     * constant text of each step, or null for interpreted steps
+     */
+    private final EncodedText[] texts;
+
+    /**
+     * node rendered by each interpreted step, or null for constant steps
+     */
+    private final Node[] nodes;
+
+    /**
+     * guarded reference of each reference step, or null for other steps
+     */
+    private final GuardedReference[] references;
+
+    /**
+     * @param texts constant text of each step
+     * @param nodes node of each interpreted step
+     */
+    RenderPlan(String[] texts, Node[] nodes)
+    {
+        this.texts = new EncodedText[texts.length];
+        for (int i = 0; i < texts.length; i++)
+        {
+            if (texts[i] != null)
+            {
+                this.texts[i] = new EncodedText(texts[i]);
+            }
+        }
+        this.nodes = nodes;
+        this.references = new GuardedReference[nodes.length];
+        for (int i = 0; i < nodes.length; i++)
+        {
+            if (nodes[i] != null)
+            {
+                this.references[i] = GuardedReference.create(nodes[i]);
+            }
+        }
+    }
+
+    /**
+     * Renders all steps of this plan.
+     * @param context
+     * @param writer
+     * @return true
+     * @throws IOException
+     * @throws MethodInvocationException
+     * @throws ParseErrorException
+     * @throws ResourceNotFoundException
+     */
+    public boolean render(InternalContextAdapter context, Writer writer)
+        throws IOException, MethodInvocationException, ParseErrorException, ResourceNotFoundException
+    {
+        for (int i = 0; i < texts.length; i++)
+        {
+            EncodedText text = texts[i];
+            if (text != null)
+            {
+                text.write(writer);
+            }
+            else if (references[i] != null)
+            {
+                references[i].render(context, writer);
+            }
+            else
+            {
+                nodes[i].render(context, writer);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of steps in this plan
+     */
+    public int size()
+    {
+        return texts.length;
+    }
+
+    /**
+     * @return number of steps which render a guarded reference
+     */
+    public int getGuardedStepCount()
+    {
+        int count = 0;
+        for (GuardedReference reference : references)
+        {
+            if (reference != null)
+            {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of steps which write constant text
+     */
+    public int getStaticStepCount()
+    {
+        int count = 0;
+        for (EncodedText text : texts)
+        {
+            if (text != null)
+            {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
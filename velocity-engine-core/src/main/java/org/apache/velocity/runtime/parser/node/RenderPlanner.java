@@ -0,0 +1,167 @@
+package org.apache.velocity.runtime.parser.node;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.runtime.RuntimeConstants.SpaceGobbling;
+import org.apache.velocity.runtime.RuntimeServices;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Attaches {@link RenderPlan}s to the container nodes of an initialized AST.</p>
+ *
+ * <p>Every container node (the template root and each block) is given a flat plan where
+ * runs of adjacent static nodes, along with the block indentation prefix and postfix
+ * which only depend upon the space gobbling mode, are merged into a single constant
+ * write. Plain references become {@link GuardedReference} steps, which invoke the
+ * getters and argument-less methods cached by their nodes while the receiver classes
+ * match. Any other node whose output depends upon the context is kept as is and
+ * rendered by the interpreter.</p>
+ *
+ * <p>Interpolated string literals which embed directives always plan their own parsed
+ * tree, whatever the {@link org.apache.velocity.runtime.RuntimeConstants#RUNTIME_RENDER_PLANS}
+ * switch; the others use an {@link InterpolationPlan}.</p>
+ *
+ * <p>Planning must happen after the whole tree has been initialized, since
+ * initialization may still alter static text (indentation fixing, backward
+ * compatible space gobbling).</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class RenderPlanner
+{
+    /**
+     * Attaches a render plan to each container node of the given tree.
+     * @param root initialized root node
+     * @param rsvc runtime services
+     * @return number of static nodes merged into constant writes
+     */
+    public static int plan(SimpleNode root, RuntimeServices rsvc)
+    {
+        return planNode(root, rsvc.getSpaceGobbling());
+    }
+
+    private static int planNode(Node node, SpaceGobbling spaceGobbling)
+    {
+        int merged = 0;
+        if (node instanceof ASTprocess)
+        {
+            PlanBuilder builder = new PlanBuilder();
+            merged += builder.addChildren(node);
+            ((ASTprocess)node).setRenderPlan(builder.build());
+        }
+        else if (node instanceof ASTBlock)
+        {
+            ASTBlock block = (ASTBlock)node;
+            PlanBuilder builder = new PlanBuilder();
+            if (spaceGobbling == SpaceGobbling.NONE)
+            {
+                builder.addText(block.getPrefix());
+            }
+            merged += builder.addChildren(block);
+            if (block.getMorePostfix().length() > 0 || spaceGobbling.compareTo(SpaceGobbling.LINES) < 0)
+            {
+                builder.addText(block.getPostfix());
+            }
+            builder.addText(block.getMorePostfix());
+            block.setRenderPlan(builder.build());
+        }
+
+        int k = node.jjtGetNumChildren();
+        for (int i = 0; i < k; i++)
+        {
+            merged += planNode(node.jjtGetChild(i), spaceGobbling);
+        }
+        return merged;
+    }
+
+    /**
+     * Accumulates steps, joining consecutive constant texts.
+     */
+    private static class PlanBuilder
+    {
+        private List<String> texts = new ArrayList<String>();
+        private List<Node> nodes = new ArrayList<Node>();
+        private StringBuilder pending = null;
+
+        int addChildren(Node parent)
+        {
+            int merged = 0;
+            int k = parent.jjtGetNumChildren();
+            int i = 0;
+            while (i < k)
+            {
+                int end = NodeUtils.getStaticRunEnd(parent, i);
+                if (end > i)
+                {
+                    addText(NodeUtils.getStaticRunText(parent, i, end));
+                    merged += end - i;
+                    i = end;
+                }
+                else
+                {
+                    addNode(parent.jjtGetChild(i++));
+                }
+            }
+            return merged;
+        }
+
+        void addText(String text)
+        {
+            if (text == null || text.length() == 0)
+            {
+                return;
+            }
+            if (pending == null)
+            {
+                pending = new StringBuilder(text);
+            }
+            else
+            {
+                pending.append(text);
+            }
+        }
+
+        void addNode(Node node)
+        {
+            flush();
+            texts.add(null);
+            nodes.add(node);
+        }
+
+        RenderPlan build()
+        {
+            flush();
+            return new RenderPlan(texts.toArray(new String[texts.size()]), nodes.toArray(new Node[nodes.size()]));
+        }
+
+        private void flush()
+        {
+            if (pending != null)
+            {
+                texts.add(pending.toString());
+                nodes.add(null);
+                pending = null;
+            }
+        }
+    }
+}
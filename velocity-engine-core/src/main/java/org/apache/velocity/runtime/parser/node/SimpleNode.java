@@ -379,6 +379,17 @@ public boolean render( InternalContextAdapter context, Writer writer)
         return true;
     }
 
+    /**
+     * Returns the text this node always renders, whatever the context, once it has
+     * been initialized.
+     * @return constant rendered text, or null if the output of this node is dynamic
+     * @since 2.0
+     */
+    public String getStaticText()
+    {
+        return null;
+    }
+
     /**
      * @see org.apache.velocity.runtime.parser.node.Node#execute(java.lang.Object, org.apache.velocity.context.InternalContextAdapter)
      */
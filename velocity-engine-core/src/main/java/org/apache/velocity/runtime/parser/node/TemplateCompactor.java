@@ -0,0 +1,120 @@
+package org.apache.velocity.runtime.parser.node;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * <p>Reduces the memory footprint of an initialized AST.</p>
+ *
+ * <ul>
+ *   <li>nodes which still reference the parser and its tokens release them: since
+ *   any token references the whole remaining token stream, a single such node
+ *   keeps alive a copy of the template source split in tokens. The literal of the
+ *   node is computed beforehand, unless the node rebuilds it from its children;</li>
+ *   <li>short literals and saved token images are interned, so that identical identifiers
+ *   and operators are shared across nodes and templates;</li>
+ *   <li>empty children arrays are dropped.</li>
+ * </ul>
+ *
+ * <p>Compaction must happen after the whole tree has been initialized, optimized and
+ * planned, since those phases may still need the tokens.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class TemplateCompactor
+{
+    /**
+     * Longer strings are template specific text rather than identifiers or operators.
+     */
+    private static final int MAX_INTERNED_LENGTH = 64;
+
+    /**
+     * Whether a node class overrides {@link SimpleNode#literal()}, rebuilding it without tokens.
+     */
+    private static final ClassValue<Boolean> REBUILDS_LITERAL = new ClassValue<Boolean>()
+    {
+        protected Boolean computeValue(Class<?> type)
+        {
+            try
+            {
+                return type.getMethod("literal").getDeclaringClass() != SimpleNode.class;
+            }
+            catch (NoSuchMethodException nsme)
+            {
+                return false;
+            }
+        }
+    };
+
+    /**
+     * Compacts the given tree.
+     * @param root initialized root node
+     * @return number of nodes which released their tokens
+     */
+    public static int compact(SimpleNode root)
+    {
+        int released = 0;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty())
+        {
+            Node node = stack.pop();
+            for (int i = node.jjtGetNumChildren() - 1; i >= 0; --i)
+            {
+                stack.push(node.jjtGetChild(i));
+            }
+            if (node instanceof SimpleNode && compactNode((SimpleNode)node))
+            {
+                ++released;
+            }
+        }
+        return released;
+    }
+
+    private static boolean compactNode(SimpleNode node)
+    {
+        boolean released = false;
+        if (node.first != null || node.parser != null)
+        {
+            if (node.first != null && node.literal == null && !REBUILDS_LITERAL.get(node.getClass()))
+            {
+                node.literal();
+            }
+            node.cleanupParserAndTokens();
+            released = true;
+        }
+        node.literal = intern(node.literal);
+        node.firstImage = intern(node.firstImage);
+        node.lastImage = intern(node.lastImage);
+        if (node.children != null && node.children.length == 0)
+        {
+            node.children = null;
+        }
+        return released;
+    }
+
+    private static String intern(String string)
+    {
+        return string == null || string.length() > MAX_INTERNED_LENGTH ? string : string.intern();
+    }
+}
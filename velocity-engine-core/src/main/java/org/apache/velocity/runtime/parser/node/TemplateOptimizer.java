@@ -0,0 +1,471 @@
+package org.apache.velocity.runtime.parser.node;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.visitor.BaseVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Simplifies an initialized AST:</p>
+ * <ul>
+ * <li>operations whose operands are all literals are replaced by a {@link ConstantNode}
+ *     holding their result,</li>
+ * <li>#if, #elseif and #else branches which can never be taken, given their
+ *     constant conditions, are removed,</li>
+ * <li>runs of adjacent static nodes (text, comments, escapes, text blocks) are
+ *     merged into a single text node.</li>
+ * </ul>
+ *
+ * <p>Only operations which would neither log nor fail at render time are folded:
+ * math on numbers (except a division by zero), string concatenation, comparisons
+ * of numbers, equality tests and logical operators.</p>
+ *
+ * <p>Like the {@link RenderPlanner}, the optimizer must run after the whole tree
+ * has been initialized.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class TemplateOptimizer extends BaseVisitor
+{
+    private final OptimizerReport report;
+
+    /**
+     * @param report report to fill
+     */
+    public TemplateOptimizer(OptimizerReport report)
+    {
+        this.report = report;
+    }
+
+    /**
+     * Optimizes the given tree.
+     * @param root initialized root node
+     * @param context the context the tree was initialized with
+     * @param templateName template name, for the report
+     * @return what has been optimized
+     */
+    public static OptimizerReport optimize(SimpleNode root, InternalContextAdapter context, String templateName)
+    {
+        OptimizerReport report = new OptimizerReport(templateName);
+        TemplateOptimizer optimizer = new TemplateOptimizer(report);
+        optimizer.setContext(context);
+        root.jjtAccept(optimizer, null);
+        return report;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTprocess, java.lang.Object)
+     */
+    public Object visit(ASTprocess node, Object data)
+    {
+        node.childrenAccept(this, data);
+        coalesce(node);
+        return data;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTBlock, java.lang.Object)
+     */
+    public Object visit(ASTBlock node, Object data)
+    {
+        node.childrenAccept(this, data);
+        coalesce(node);
+        return data;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTIfStatement, java.lang.Object)
+     */
+    public Object visit(ASTIfStatement node, Object data)
+    {
+        node.childrenAccept(this, data);
+        prune(node);
+        return data;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTAddNode, java.lang.Object)
+     */
+    public Object visit(ASTAddNode node, Object data)
+    {
+        return foldMath(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTSubtractNode, java.lang.Object)
+     */
+    public Object visit(ASTSubtractNode node, Object data)
+    {
+        return foldMath(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTMulNode, java.lang.Object)
+     */
+    public Object visit(ASTMulNode node, Object data)
+    {
+        return foldMath(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTDivNode, java.lang.Object)
+     */
+    public Object visit(ASTDivNode node, Object data)
+    {
+        return foldMath(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTModNode, java.lang.Object)
+     */
+    public Object visit(ASTModNode node, Object data)
+    {
+        return foldMath(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTEQNode, java.lang.Object)
+     */
+    public Object visit(ASTEQNode node, Object data)
+    {
+        return foldComparison(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTNENode, java.lang.Object)
+     */
+    public Object visit(ASTNENode node, Object data)
+    {
+        return foldComparison(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTLTNode, java.lang.Object)
+     */
+    public Object visit(ASTLTNode node, Object data)
+    {
+        return foldComparison(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTGTNode, java.lang.Object)
+     */
+    public Object visit(ASTGTNode node, Object data)
+    {
+        return foldComparison(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTLENode, java.lang.Object)
+     */
+    public Object visit(ASTLENode node, Object data)
+    {
+        return foldComparison(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTGENode, java.lang.Object)
+     */
+    public Object visit(ASTGENode node, Object data)
+    {
+        return foldComparison(node, data);
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTAndNode, java.lang.Object)
+     */
+    public Object visit(ASTAndNode node, Object data)
+    {
+        node.childrenAccept(this, data);
+        Node left = node.jjtGetChild(0);
+        if (isConstant(left) && (!left.evaluate(context) || isConstant(node.jjtGetChild(1))))
+        {
+            replace(node);
+        }
+        return data;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTOrNode, java.lang.Object)
+     */
+    public Object visit(ASTOrNode node, Object data)
+    {
+        node.childrenAccept(this, data);
+        Node left = node.jjtGetChild(0);
+        if (isConstant(left) && (left.evaluate(context) || isConstant(node.jjtGetChild(1))))
+        {
+            replace(node);
+        }
+        return data;
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.parser.node.ParserVisitor#visit(org.apache.velocity.runtime.parser.node.ASTNotNode, java.lang.Object)
+     */
+    public Object visit(ASTNotNode node, Object data)
+    {
+        node.childrenAccept(this, data);
+        if (isConstant(node.jjtGetChild(0)))
+        {
+            replace(node);
+        }
+        return data;
+    }
+
+    private Object foldMath(ASTMathNode node, Object data)
+    {
+        node.childrenAccept(this, data);
+        Node left = node.jjtGetChild(0);
+        Node right = node.jjtGetChild(1);
+        if (isConstant(left) && isConstant(right))
+        {
+            Object l = left.value(context);
+            Object r = right.value(context);
+            if (l instanceof Number && r instanceof Number)
+            {
+                if (!(node instanceof ASTDivNode || node instanceof ASTModNode) || !MathUtils.isZero((Number)r))
+                {
+                    replace(node);
+                }
+            }
+            else if (node instanceof ASTAddNode && l != null && r != null
+                     && (l instanceof String || r instanceof String))
+            {
+                replace(node);
+            }
+        }
+        return data;
+    }
+
+    private Object foldComparison(ASTComparisonNode node, Object data)
+    {
+        node.childrenAccept(this, data);
+        Node left = node.jjtGetChild(0);
+        Node right = node.jjtGetChild(1);
+        if (isConstant(left) && isConstant(right))
+        {
+            Object l = left.value(context);
+            Object r = right.value(context);
+            if (l instanceof Number && r instanceof Number
+                || (node instanceof ASTEQNode || node instanceof ASTNENode) && l != null && r != null)
+            {
+                replace(node);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Replaces a constant operation by its result.
+     */
+    private void replace(SimpleNode node)
+    {
+        Object value;
+        boolean truth;
+        try
+        {
+            value = node.value(context);
+            truth = node.evaluate(context);
+        }
+        catch (RuntimeException e)
+        {
+            // leave it to the rendering
+            return;
+        }
+        if (value == null)
+        {
+            return;
+        }
+        report.removedNodes += count(node) - 1;
+        ++report.foldedExpressions;
+        setChild(node.jjtGetParent(), node, new ConstantNode(node, value, truth));
+    }
+
+    /**
+     * Removes the #if, #elseif and #else branches which cannot be taken.
+     */
+    private void prune(ASTIfStatement node)
+    {
+        int k = node.jjtGetNumChildren();
+        List<Node> kept = new ArrayList<>(k);
+        kept.add(node.jjtGetChild(0));
+
+        /* whether a previous branch is always taken */
+        boolean decided = false;
+
+        Node condition = node.jjtGetChild(0);
+        Node block = node.jjtGetChild(1);
+        if (isConstant(condition))
+        {
+            if (condition.evaluate(context))
+            {
+                decided = true;
+            }
+            else if (!(block instanceof ConstantNode))
+            {
+                /* the #if node needs its block position, keep an empty placeholder */
+                ++report.prunedBranches;
+                report.removedNodes += count(block) - 1;
+                ConstantNode placeholder = new ConstantNode((SimpleNode)block, "", false);
+                placeholder.jjtSetParent(node);
+                block = placeholder;
+            }
+        }
+        kept.add(block);
+
+        for (int i = 2; i < k; i++)
+        {
+            Node branch = node.jjtGetChild(i);
+            boolean taken;
+            if (decided)
+            {
+                taken = false;
+            }
+            else if (branch instanceof ASTElseStatement)
+            {
+                taken = true;
+                decided = true;
+            }
+            else if (isConstant(branch.jjtGetChild(0)))
+            {
+                taken = branch.jjtGetChild(0).evaluate(context);
+                decided = taken;
+            }
+            else
+            {
+                taken = true;
+            }
+
+            if (taken)
+            {
+                kept.add(branch);
+            }
+            else
+            {
+                ++report.prunedBranches;
+                report.removedNodes += count(branch);
+            }
+        }
+
+        setChildren((SimpleNode)node, kept);
+    }
+
+    /**
+     * Merges the runs of adjacent static nodes which contain a text node into it.
+     */
+    private void coalesce(SimpleNode node)
+    {
+        int k = node.jjtGetNumChildren();
+        List<Node> kept = new ArrayList<>(k);
+        int i = 0;
+        while (i < k)
+        {
+            int end = NodeUtils.getStaticRunEnd(node, i);
+            ASTText text = null;
+            for (int j = i; j < end && text == null; j++)
+            {
+                if (node.jjtGetChild(j) instanceof ASTText)
+                {
+                    text = (ASTText)node.jjtGetChild(j);
+                }
+            }
+
+            if (end - i > 1 && text != null)
+            {
+                text.setCtext(NodeUtils.getStaticRunText(node, i, end));
+                kept.add(text);
+                report.coalescedTexts += end - i - 1;
+                report.removedNodes += end - i - 1;
+                i = end;
+            }
+            else if (end > i)
+            {
+                for (; i < end; i++)
+                {
+                    kept.add(node.jjtGetChild(i));
+                }
+            }
+            else
+            {
+                kept.add(node.jjtGetChild(i++));
+            }
+        }
+
+        setChildren(node, kept);
+    }
+
+    private boolean isConstant(Node node)
+    {
+        if (node instanceof ASTExpression)
+        {
+            return node.jjtGetNumChildren() == 1 && isConstant(node.jjtGetChild(0));
+        }
+        return node instanceof ConstantNode
+            || node instanceof ASTIntegerLiteral
+            || node instanceof ASTFloatingPointLiteral
+            || node instanceof ASTTrue
+            || node instanceof ASTFalse
+            || node instanceof ASTStringLiteral && ((ASTStringLiteral)node).isConstant();
+    }
+
+    private static int count(Node node)
+    {
+        int count = 1;
+        int k = node.jjtGetNumChildren();
+        for (int i = 0; i < k; i++)
+        {
+            count += count(node.jjtGetChild(i));
+        }
+        return count;
+    }
+
+    private static void setChild(Node parent, Node child, Node replacement)
+    {
+        int k = parent.jjtGetNumChildren();
+        for (int i = 0; i < k; i++)
+        {
+            if (parent.jjtGetChild(i) == child)
+            {
+                parent.jjtAddChild(replacement, i);
+                replacement.jjtSetParent(parent);
+                return;
+            }
+        }
+    }
+
+    private static void setChildren(SimpleNode node, List<Node> children)
+    {
+        if (children.size() != node.jjtGetNumChildren())
+        {
+            node.children = children.toArray(new Node[children.size()]);
+        }
+        else
+        {
+            for (int i = 0; i < children.size(); i++)
+            {
+                node.children[i] = children.get(i);
+            }
+        }
+    }
+}
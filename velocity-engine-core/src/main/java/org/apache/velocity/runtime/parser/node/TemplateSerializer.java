@@ -0,0 +1,361 @@
+package org.apache.velocity.runtime.parser.node;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.parser.Token;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Binary form of a freshly parsed AST, as used by the parsed templates cache.</p>
+ *
+ * <p>Initialized nodes hold runtime objects (directives, introspection caches, the
+ * runtime itself), so only the raw parser output is serialized: the token chain and,
+ * for each node, its class, its first and last tokens, its children and the few
+ * fields set by the parser. A deserialized tree is in the very same state as the
+ * one returned by the parser, and must be initialized as usual.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class TemplateSerializer
+{
+    /**
+     * Version of the binary format, to be bumped whenever it changes, or whenever
+     * the parser sets new node fields.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final String NODE_PACKAGE = SimpleNode.class.getPackage().getName() + '.';
+
+    private static final Map<String, Constructor<? extends SimpleNode>> constructors =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Serializes a tree returned by the parser, before it is initialized.
+     * @param root root node
+     * @return serialized tree
+     */
+    public static byte[] serialize(SimpleNode root)
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            /* number the tokens: the chain of the whole template, then any other token reachable from a node */
+            Map<Token, Integer> indexes = new IdentityHashMap<>();
+            List<Token> tokens = new ArrayList<>();
+            for (Token t = root.first; t != null; t = t.next)
+            {
+                number(t, indexes, tokens);
+            }
+            numberNodeTokens(root, indexes, tokens);
+            for (int i = 0; i < tokens.size(); ++i)
+            {
+                number(tokens.get(i).next, indexes, tokens);
+            }
+
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(tokens.size());
+            for (Token t : tokens)
+            {
+                out.writeInt(t.kind);
+                out.writeInt(t.beginLine);
+                out.writeInt(t.beginColumn);
+                out.writeInt(t.endLine);
+                out.writeInt(t.endColumn);
+                writeString(out, t.image);
+                out.writeInt(indexOf(t.next, indexes));
+                out.writeInt(indexOf(t.specialToken, indexes));
+            }
+            writeNode(out, root, indexes);
+            out.flush();
+            return bytes.toByteArray();
+        }
+        catch (IOException ioe)
+        {
+            /* cannot happen on a byte array */
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    /**
+     * Rebuilds a tree serialized by {@link #serialize(SimpleNode)}.
+     * @param buffer serialized tree, read from its current position
+     * @param template template the nodes belong to
+     * @return root node, not yet initialized
+     * @throws IOException if the data is corrupted or has been written by another format version
+     */
+    public static SimpleNode deserialize(ByteBuffer buffer, Template template)
+        throws IOException
+    {
+        try
+        {
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION)
+            {
+                throw new IOException("unsupported format version " + version);
+            }
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining())
+            {
+                throw new IOException("invalid token count " + count);
+            }
+            Token[] tokens = new Token[count];
+            int[] links = new int[2 * count];
+            for (int i = 0; i < count; ++i)
+            {
+                Token t = new Token();
+                t.kind = buffer.getInt();
+                t.beginLine = buffer.getInt();
+                t.beginColumn = buffer.getInt();
+                t.endLine = buffer.getInt();
+                t.endColumn = buffer.getInt();
+                t.image = readString(buffer);
+                links[2 * i] = buffer.getInt();
+                links[2 * i + 1] = buffer.getInt();
+                tokens[i] = t;
+            }
+            for (int i = 0; i < count; ++i)
+            {
+                tokens[i].next = token(tokens, links[2 * i]);
+                tokens[i].specialToken = token(tokens, links[2 * i + 1]);
+            }
+            SimpleNode root = readNode(buffer, tokens, template);
+            if (buffer.hasRemaining())
+            {
+                throw new IOException("trailing data");
+            }
+            return root;
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e)
+        {
+            throw new IOException("corrupted data", e);
+        }
+    }
+
+    private static void number(Token t, Map<Token, Integer> indexes, List<Token> tokens)
+    {
+        while (t != null && !indexes.containsKey(t))
+        {
+            indexes.put(t, tokens.size());
+            tokens.add(t);
+            t = t.specialToken;
+        }
+    }
+
+    private static void numberNodeTokens(SimpleNode node, Map<Token, Integer> indexes, List<Token> tokens)
+    {
+        /* empty productions may point before the start of the chain */
+        number(node.first, indexes, tokens);
+        number(node.last, indexes, tokens);
+        int children = node.jjtGetNumChildren();
+        for (int i = 0; i < children; ++i)
+        {
+            numberNodeTokens((SimpleNode)node.jjtGetChild(i), indexes, tokens);
+        }
+    }
+
+    private static int indexOf(Token t, Map<Token, Integer> indexes)
+    {
+        return t == null ? -1 : indexes.get(t);
+    }
+
+    private static Token token(Token[] tokens, int index) throws IOException
+    {
+        if (index < -1 || index >= tokens.length)
+        {
+            throw new IOException("invalid token index " + index);
+        }
+        return index == -1 ? null : tokens[index];
+    }
+
+    private static void writeNode(DataOutputStream out, SimpleNode node, Map<Token, Integer> indexes)
+        throws IOException
+    {
+        writeString(out, node.getClass().getName());
+        out.writeInt(node.id);
+        out.writeInt(indexOf(node.first, indexes));
+        out.writeInt(indexOf(node.last, indexes));
+
+        /* fields set by the parser */
+        if (node instanceof ASTDirective)
+        {
+            ASTDirective directive = (ASTDirective)node;
+            writeString(out, directive.getDirectiveName());
+            writeString(out, directive.getPrefix());
+            writeString(out, directive.getPostfix());
+        }
+        else if (node instanceof ASTBlock)
+        {
+            ASTBlock block = (ASTBlock)node;
+            writeString(out, block.getPrefix());
+            writeString(out, block.getPostfix());
+            writeString(out, block.getMorePostfix());
+        }
+        else if (node instanceof ASTIfStatement)
+        {
+            ASTIfStatement ifStatement = (ASTIfStatement)node;
+            writeString(out, ifStatement.getPrefix());
+            writeString(out, ifStatement.getPostfix());
+        }
+        else if (node instanceof ASTSetDirective)
+        {
+            ASTSetDirective setDirective = (ASTSetDirective)node;
+            writeString(out, setDirective.getPrefix());
+            writeString(out, setDirective.getPostfix());
+        }
+        else if (node instanceof ASTEscape)
+        {
+            writeString(out, ((ASTEscape)node).val);
+        }
+
+        int children = node.jjtGetNumChildren();
+        out.writeInt(children);
+        for (int i = 0; i < children; ++i)
+        {
+            writeNode(out, (SimpleNode)node.jjtGetChild(i), indexes);
+        }
+    }
+
+    private static SimpleNode readNode(ByteBuffer buffer, Token[] tokens, Template template)
+        throws IOException
+    {
+        String className = readString(buffer);
+        int id = buffer.getInt();
+        SimpleNode node = newNode(className, id);
+        node.template = template;
+        node.first = token(tokens, buffer.getInt());
+        node.last = token(tokens, buffer.getInt());
+
+        if (node instanceof ASTDirective)
+        {
+            ASTDirective directive = (ASTDirective)node;
+            directive.setDirectiveName(readString(buffer));
+            directive.setPrefix(readString(buffer));
+            directive.setPostfix(readString(buffer));
+        }
+        else if (node instanceof ASTBlock)
+        {
+            ASTBlock block = (ASTBlock)node;
+            block.setPrefix(readString(buffer));
+            block.setPostfix(readString(buffer));
+            block.setMorePostfix(readString(buffer));
+        }
+        else if (node instanceof ASTIfStatement)
+        {
+            ASTIfStatement ifStatement = (ASTIfStatement)node;
+            ifStatement.setPrefix(readString(buffer));
+            ifStatement.setPostfix(readString(buffer));
+        }
+        else if (node instanceof ASTSetDirective)
+        {
+            ASTSetDirective setDirective = (ASTSetDirective)node;
+            setDirective.setPrefix(readString(buffer));
+            setDirective.setPostfix(readString(buffer));
+        }
+        else if (node instanceof ASTEscape)
+        {
+            ((ASTEscape)node).val = readString(buffer);
+        }
+
+        int children = buffer.getInt();
+        if (children < 0 || children > buffer.remaining())
+        {
+            throw new IOException("invalid children count " + children);
+        }
+        if (children > 0)
+        {
+            node.children = new Node[children];
+            for (int i = 0; i < children; ++i)
+            {
+                Node child = readNode(buffer, tokens, template);
+                child.jjtSetParent(node);
+                node.children[i] = child;
+            }
+        }
+        return node;
+    }
+
+    private static SimpleNode newNode(String className, int id) throws IOException
+    {
+        Constructor<? extends SimpleNode> constructor = constructors.get(className);
+        try
+        {
+            if (constructor == null)
+            {
+                if (!className.startsWith(NODE_PACKAGE))
+                {
+                    throw new IOException("unexpected node class " + className);
+                }
+                constructor = Class.forName(className).asSubclass(SimpleNode.class).getConstructor(int.class);
+                constructors.put(className, constructor);
+            }
+            return constructor.newInstance(id);
+        }
+        catch (ReflectiveOperationException | ClassCastException e)
+        {
+            throw new IOException("cannot build node of class " + className, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException
+    {
+        if (str == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException
+    {
+        int length = buffer.getInt();
+        if (length == -1)
+        {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining())
+        {
+            throw new IOException("invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
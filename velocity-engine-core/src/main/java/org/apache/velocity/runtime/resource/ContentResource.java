@@ -21,10 +21,20 @@
 
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.VelocityException;
-import org.apache.velocity.util.StringBuilderWriter;
+import org.apache.velocity.io.ByteVelocityWriter;
+import org.apache.velocity.runtime.RuntimeConstants;
 
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
 
 /**
  * This class represent a general text resource that may have been
@@ -33,12 +43,25 @@
  * Also of interest is Velocity's {@link org.apache.velocity.Template}
  * <code>Resource</code>.
  *
+ * <p>The data of the resource is its content as a <code>String</code>, unless its
+ * size exceeds the {@link RuntimeConstants#INCLUDE_STREAMING_THRESHOLD} setting. It is then
+ * a read-only direct <code>ByteBuffer</code> holding the content encoded with the resource
+ * encoding, and {@link #writeTo(Writer)} streams it to the output. When the loader provides
+ * the source file, its bytes are copied as is, without being decoded then encoded again.
+ * The file is not kept mapped in memory, so that it can be rewritten in place while the
+ * resource is cached.</p>
+ *
  * @author <a href="mailto:jvanzyl@apache.org">Jason van Zyl</a>
  * @author <a href="mailto:geirm@optonline.net">Geir Magnusson Jr.</a>
  * @version $Id$
  */
 public class ContentResource extends Resource
 {
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Content encoded for the last charset it has been written with */
+    private volatile Encoded encoded = null;
+
     /** Default empty constructor */
     public ContentResource()
     {
@@ -57,21 +80,46 @@ public ContentResource()
     public boolean process()
         throws ResourceNotFoundException
     {
-        BufferedReader reader = null;
+        int threshold = rsvc.getInt(RuntimeConstants.INCLUDE_STREAMING_THRESHOLD, -1);
+        if (threshold >= 0)
+        {
+            File file = resourceLoader.getResourceFile(name);
+            if (file != null && file.length() > threshold)
+            {
+                ByteBuffer bytes = copy(file);
+                if (bytes != null)
+                {
+                    setData(bytes);
+                    return true;
+                }
+            }
+        }
+
+        Reader reader = null;
 
         try
         {
-            Writer sw = new StringBuilderWriter();
-
-            reader = new BufferedReader(resourceLoader.getResourceReader(name, encoding));
+            reader = resourceLoader.getResourceReader(name, encoding);
 
-            char buf[] = new char[1024];
+            StringBuilder content = new StringBuilder();
+            char buf[] = new char[BUFFER_SIZE];
             int len = 0;
 
-            while ( ( len = reader.read( buf, 0, 1024 )) != -1)
-                sw.write( buf, 0, len );
+            while ( ( len = reader.read( buf, 0, BUFFER_SIZE )) != -1)
+                content.append( buf, 0, len );
 
-            setData(sw.toString());
+            if (threshold >= 0 && content.length() > threshold)
+            {
+                ByteBuffer bytes = getCharset().encode(CharBuffer.wrap(content));
+                ByteBuffer direct = ByteBuffer.allocateDirect(bytes.remaining());
+                direct.put(bytes);
+                direct.flip();
+                setData(direct.asReadOnlyBuffer());
+            }
+            else
+            {
+                setData(content.toString());
+            }
 
             return true;
         }
@@ -101,4 +149,132 @@ public boolean process()
             }
         }
     }
+
+    /**
+     * Writes the content. Byte-oriented writers receive pre-encoded bytes
+     * when their charset allows it, and content held in a buffer is streamed
+     * from it rather than copied into a string.
+     *
+     * @param writer output writer
+     * @throws IOException
+     * @since 2.0
+     */
+    public void writeTo(Writer writer)
+        throws IOException
+    {
+        Object content = getData();
+        ByteVelocityWriter byteWriter = writer instanceof ByteVelocityWriter
+            && ((ByteVelocityWriter)writer).acceptsEncodedBytes() ? (ByteVelocityWriter)writer : null;
+        if (content instanceof ByteBuffer)
+        {
+            Charset charset = getCharset();
+            if (byteWriter != null && byteWriter.getCharset().equals(charset))
+            {
+                byteWriter.writeBytes((ByteBuffer)content);
+            }
+            else
+            {
+                decode((ByteBuffer)content, charset, writer);
+            }
+        }
+        else if (byteWriter != null)
+        {
+            byteWriter.writeBytes(getBytes((String)content, byteWriter.getCharset()));
+        }
+        else
+        {
+            writer.write((String)content);
+        }
+    }
+
+    /**
+     * Copies a file into a direct buffer, or returns null if it should rather be read.
+     */
+    private ByteBuffer copy(File file)
+    {
+        Charset charset = getCharset();
+        if (charset.name().startsWith("UTF-16") || charset.name().startsWith("UTF-32"))
+        {
+            // leave byte order marks to the reader
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                return null;
+            }
+            ByteBuffer bytes = ByteBuffer.allocateDirect((int)size);
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0);
+            bytes.flip();
+            if (bytes.remaining() >= 3 && (bytes.get(0) & 0xFF) == 0xEF
+                && (bytes.get(1) & 0xFF) == 0xBB && (bytes.get(2) & 0xFF) == 0xBF)
+            {
+                // skip the UTF-8 byte order mark
+                bytes.position(3);
+            }
+            return bytes.slice().asReadOnlyBuffer();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            log.debug("ContentResource: cannot copy {}, reading it instead", file, e);
+            return null;
+        }
+    }
+
+    private static void decode(ByteBuffer content, Charset charset, Writer writer)
+        throws IOException
+    {
+        CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer src = content.duplicate();
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        while (decoder.decode(src, chars, true).isOverflow())
+        {
+            drain(chars, writer);
+        }
+        while (decoder.flush(chars).isOverflow())
+        {
+            drain(chars, writer);
+        }
+        drain(chars, writer);
+    }
+
+    private static void drain(CharBuffer chars, Writer writer)
+        throws IOException
+    {
+        chars.flip();
+        writer.write(chars.array(), 0, chars.limit());
+        chars.clear();
+    }
+
+    private byte[] getBytes(String content, Charset charset)
+    {
+        Encoded current = encoded;
+        if (current == null || !current.charset.equals(charset))
+        {
+            current = new Encoded(charset, content.getBytes(charset));
+            encoded = current;
+        }
+        return current.bytes;
+    }
+
+    private Charset getCharset()
+    {
+        return Charset.forName(encoding == null ? RuntimeConstants.ENCODING_DEFAULT : encoding);
+    }
+
+    private static final class Encoded
+    {
+        final Charset charset;
+        final byte[] bytes;
+
+        Encoded(Charset charset, byte[] bytes)
+        {
+            this.charset = charset;
+            this.bytes = bytes;
+        }
+    }
 }
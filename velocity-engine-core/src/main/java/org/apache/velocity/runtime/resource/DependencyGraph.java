@@ -0,0 +1,203 @@
+package org.apache.velocity.runtime.resource;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.runtime.resource.loader.ResourceChangeListener;
+import org.apache.velocity.runtime.resource.loader.ResourceLoader;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>Graph of the dependencies between resources: a template depends upon the templates
+ * it <code>#parse</code>s, the resources it <code>#include</code>s and the macro libraries
+ * it is merged with. Edges are recorded when templates are initialized (for constant
+ * arguments) and rendered, and the outgoing edges of a template are dropped when it is
+ * reloaded, since the new version will record its own.</p>
+ *
+ * <p>When a resource loader reports a change, the resource manager flags the changed
+ * resource, evicts all the templates which transitively depend upon it from the cache,
+ * so that they are parsed again and resolve their macros anew, and forwards
+ * the event to the listeners registered here, like the Velocimacro factory for its
+ * libraries. With loaders detecting changes in the background, this allows to disable
+ * the per-request modification checks while keeping hot reloads correct.</p>
+ *
+ * <p>This class is thread-safe; recording an already known edge doesn't lock.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class DependencyGraph
+{
+    /**
+     * dependencies by dependent name
+     */
+    private final ConcurrentMap<String, Set<String>> dependencies = new ConcurrentHashMap<>();
+
+    /**
+     * dependents by dependency name
+     */
+    private final ConcurrentMap<String, Set<String>> dependents = new ConcurrentHashMap<>();
+
+    private final List<ResourceChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Records that a resource depends upon another one.
+     * @param dependent name of the depending template
+     * @param dependency name of the template or content it uses
+     */
+    public void addDependency(String dependent, String dependency)
+    {
+        if (dependent == null || dependency == null || dependent.equals(dependency))
+        {
+            return;
+        }
+        Set<String> forward = dependencies.get(dependent);
+        if (forward != null && forward.contains(dependency))
+        {
+            return;
+        }
+        edges(dependencies, dependent).add(dependency);
+        edges(dependents, dependency).add(dependent);
+    }
+
+    /**
+     * Forgets the dependencies of a resource, typically before it is reloaded.
+     * @param dependent name of the depending template
+     */
+    public void removeDependencies(String dependent)
+    {
+        Set<String> forward = dependencies.remove(dependent);
+        if (forward != null)
+        {
+            for (String dependency : forward)
+            {
+                Set<String> backward = dependents.get(dependency);
+                if (backward != null)
+                {
+                    backward.remove(dependent);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name resource name
+     * @return names of the resources the given one directly depends upon
+     */
+    public Set<String> getDependencies(String name)
+    {
+        return snapshot(dependencies.get(name));
+    }
+
+    /**
+     * @param name resource name
+     * @return names of the templates directly depending upon the given resource
+     */
+    public Set<String> getDependents(String name)
+    {
+        return snapshot(dependents.get(name));
+    }
+
+    /**
+     * @param name resource name
+     * @return names of the templates directly or transitively depending upon the given
+     * resource, nearest first
+     */
+    public Set<String> getAllDependents(String name)
+    {
+        Set<String> all = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.add(name);
+        while (!pending.isEmpty())
+        {
+            Set<String> direct = dependents.get(pending.poll());
+            if (direct != null)
+            {
+                for (String dependent : direct)
+                {
+                    if (!dependent.equals(name) && all.add(dependent))
+                    {
+                        pending.add(dependent);
+                    }
+                }
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Registers a listener notified of the changes reported by resource loaders.
+     * @param listener change listener
+     */
+    public void addChangeListener(ResourceChangeListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Notifies the registered listeners of a change.
+     * @param loader loader which noticed the change
+     * @param name changed resource name
+     */
+    public void fireResourceChanged(ResourceLoader loader, String name)
+    {
+        for (ResourceChangeListener listener : listeners)
+        {
+            listener.resourceChanged(loader, name);
+        }
+    }
+
+    /**
+     * Forgets all dependencies.
+     */
+    public void clear()
+    {
+        dependencies.clear();
+        dependents.clear();
+    }
+
+    private static Set<String> edges(ConcurrentMap<String, Set<String>> map, String name)
+    {
+        Set<String> set = map.get(name);
+        if (set == null)
+        {
+            Set<String> created = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            set = map.putIfAbsent(name, created);
+            if (set == null)
+            {
+                set = created;
+            }
+        }
+        return set;
+    }
+
+    private static Set<String> snapshot(Set<String> set)
+    {
+        return set == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(set));
+    }
+}
@@ -0,0 +1,127 @@
+package org.apache.velocity.runtime.resource;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * <p>Approximate access frequency counter used by the default resource cache
+ * to decide which resources deserve to stay cached (TinyLFU admission).</p>
+ *
+ * <p>This is a count-min sketch of four rows of 4-bit counters packed in longs.
+ * Counters saturate at 15, and are all halved once the number of recorded
+ * accesses reaches ten times the expected capacity, so that old popularity fades.</p>
+ *
+ * <p>Counters are updated without synchronization: concurrent updates may get lost,
+ * which only makes the estimation a little less accurate.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+final class FrequencySketch
+{
+    private static final int[] SEEDS = { 0x97cb3127, 0xb7b4bc11, 0xc3a5c85d, 0x9e3779b9 };
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+
+    private final int mask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    /**
+     * @param capacity expected number of distinct cached keys
+     */
+    FrequencySketch(int capacity)
+    {
+        int size = 16;
+        while (size < capacity && size < (1 << 24))
+        {
+            size <<= 1;
+        }
+        table = new long[size];
+        mask = size - 1;
+        sampleSize = 10 * Math.max(capacity, 16);
+    }
+
+    /**
+     * Records an access to the given key.
+     * @param key accessed key
+     */
+    void increment(Object key)
+    {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; ++i)
+        {
+            int h = spread(hash * SEEDS[i]);
+            int index = h & mask;
+            int shift = (h >>> 28) << 2;
+            long value = table[index];
+            if (((value >>> shift) & 0xFL) < 15)
+            {
+                table[index] = value + (1L << shift);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize)
+        {
+            reset();
+        }
+    }
+
+    /**
+     * Returns the estimated number of accesses to the given key.
+     * @param key key
+     * @return estimated frequency, from 0 to 15
+     */
+    int frequency(Object key)
+    {
+        int hash = spread(key.hashCode());
+        int frequency = 15;
+        for (int i = 0; i < SEEDS.length; ++i)
+        {
+            int h = spread(hash * SEEDS[i]);
+            int shift = (h >>> 28) << 2;
+            frequency = Math.min(frequency, (int)((table[h & mask] >>> shift) & 0xFL));
+        }
+        return frequency;
+    }
+
+    /**
+     * Halves all counters.
+     */
+    private void reset()
+    {
+        for (int i = 0; i < table.length; ++i)
+        {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static int spread(int x)
+    {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -69,6 +69,12 @@
      */
     protected long nextCheck = 0;
 
+    /**
+     * Whether a change of the resource source has been notified
+     * by its loader since the last check.
+     */
+    private volatile boolean changed = false;
+
     /**
      *  Name of the resource
      */
@@ -146,6 +152,15 @@ public void setModificationCheckInterval(long modificationCheckInterval)
      */
     public boolean requiresChecking()
     {
+        /*
+         *  a change notification always requires a check
+         */
+
+        if (changed)
+        {
+            return true;
+        }
+
         /*
          *  short circuit this if modificationCheckInterval == 0
          *  as this means "don't check"
@@ -169,9 +184,20 @@ public boolean requiresChecking()
      */
     public void touch()
     {
+        changed = false;
         nextCheck = System.currentTimeMillis() + ( MILLIS_PER_SECOND *  modificationCheckInterval);
     }
 
+    /**
+     * Flags this resource as requiring a check at the next request, because
+     * its loader noticed a change of its source.
+     * @since 2.0
+     */
+    public void setChanged()
+    {
+        changed = true;
+    }
+
     /**
      * Set the name of this resource, for example
      * test.vm.
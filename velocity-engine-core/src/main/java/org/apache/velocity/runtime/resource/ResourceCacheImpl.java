@@ -19,72 +19,49 @@
  * under the License.
  */
 
+import org.apache.velocity.Template;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.node.Node;
 import org.slf4j.Logger;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Default implementation of the resource cache for the default
- * ResourceManager.  The cache uses a <i>least recently used</i> (LRU)
- * algorithm, with a maximum size specified via the
- * <code>resource.manager.cache.size</code> property (identified by the
+ * ResourceManager.  The cache is bounded by a maximum size specified via the
+ * <code>resource.manager.defaultcache.size</code> property (identified by the
  * {@link
  * org.apache.velocity.runtime.RuntimeConstants#RESOURCE_MANAGER_DEFAULTCACHE_SIZE}
- * constant).  This property get be set to <code>0</code> or less for
+ * constant), or by a maximum total weight specified via the
+ * <code>resource.manager.defaultcache.weight</code> property (identified by the
+ * {@link
+ * org.apache.velocity.runtime.RuntimeConstants#RESOURCE_MANAGER_DEFAULTCACHE_WEIGHT}
+ * constant), where the weight of a template is its number of AST nodes, or its
+ * estimated retained size in kilobytes (see {@link
+ * org.apache.velocity.runtime.RuntimeConstants#RESOURCE_MANAGER_DEFAULTCACHE_WEIGHER}).
+ * Those properties can be set to <code>0</code> or less for
  * a greedy, unbounded cache (the behavior from pre-v1.5).
  *
+ * <p>Lookups never lock: they only record the access in a frequency sketch.
+ * When the cache is over its bound, the oldest inserted resource is evicted,
+ * unless the newly inserted one has been less frequently requested, in which case
+ * the new one is dropped instead (TinyLFU admission policy).</p>
+ *
  * @author <a href="mailto:geirm@apache.org">Geir Magnusson Jr.</a>
  * @author <a href="mailto:dlr@finemaltcoding.com">Daniel Rall</a>
  * @version $Id$
  */
 public class ResourceCacheImpl implements ResourceCache
 {
-
-	/**
-	 * A simple LRU Map based on {@link LinkedHashSet}.
-	 *
-	 * @param <K> The key type of the map.
-	 * @param <V> The value type of the map.
-	 */
-	private static class LRUMap<K, V> extends LinkedHashMap<K, V>{
-
-		/**
-         * The serial version uid;
-         */
-        private static final long serialVersionUID = 5889225121697975043L;
-
-		/**
-		 * The size of the cache.
-		 */
-		private int cacheSize;
-
-		/**
-		 * Constructor.
-		 *
-		 * @param cacheSize The size of the cache. After reaching this size, the
-		 * eldest-accessed element will be erased.
-		 */
-		public LRUMap(int cacheSize)
-        {
-	        this.cacheSize = cacheSize;
-        }
-
-		/** {@inheritDoc} */
-		@Override
-        protected boolean removeEldestEntry(Entry<K, V> eldest)
-        {
-	        return size() > cacheSize;
-        }
-	}
-
     /**
      * Cache storage, assumed to be thread-safe.
      */
@@ -98,30 +75,101 @@ protected boolean removeEldestEntry(Entry<K, V> eldest)
 
     protected Logger log;
 
+    /**
+     * Maximum total weight, or zero for an unbounded cache.
+     */
+    private long maxWeight = 0;
+
+    /**
+     * Whether weights are AST sizes rather than 1 per entry.
+     */
+    private boolean weighted = false;
+
+    /**
+     * Whether weights are retained kilobytes rather than AST nodes.
+     */
+    private boolean heapWeights = false;
+
+    /**
+     * Weights of cached entries, only maintained for a bounded cache.
+     */
+    private final Map<Object, Integer> weights = new ConcurrentHashMap<>(512, 0.5f, 30);
+
+    /**
+     * Insertion order of cached keys, only maintained for a bounded cache.
+     */
+    private final ConcurrentLinkedQueue<Object> order = new ConcurrentLinkedQueue<>();
+
+    private FrequencySketch sketch = null;
+
+    private final Object evictionLock = new Object();
+
+    private final AtomicLong totalWeight = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
     /**
      * @see org.apache.velocity.runtime.resource.ResourceCache#initialize(org.apache.velocity.runtime.RuntimeServices)
      */
     public void initialize( RuntimeServices rs )
     {
         rsvc = rs;
+        log = rsvc.getLog();
 
         int maxSize =
             rsvc.getInt(RuntimeConstants.RESOURCE_MANAGER_DEFAULTCACHE_SIZE, 89);
-        if (maxSize > 0)
+        int weight =
+            rsvc.getInt(RuntimeConstants.RESOURCE_MANAGER_DEFAULTCACHE_WEIGHT, 0);
+        if (weight > 0)
+        {
+            maxWeight = weight;
+            weighted = true;
+            heapWeights = "heap".equals(rsvc.getString(RuntimeConstants.RESOURCE_MANAGER_DEFAULTCACHE_WEIGHER, "nodes"));
+            // assume a few hundred nodes per template to size the sketch
+            sketch = new FrequencySketch(Math.max(weight / 256, maxSize));
+        }
+        else if (maxSize > 0)
         {
-            // Create a whole new Map here to avoid hanging on to a
-            // handle to the unsynch'd LRUMap for our lifetime.
-            Map<Object, Resource> lruCache = Collections.synchronizedMap(new LRUMap<Object, Resource>(maxSize));
-            lruCache.putAll(cache);
-            cache = lruCache;
+            maxWeight = maxSize;
+            sketch = new FrequencySketch(maxSize);
         }
-        rsvc.getLog().debug("initialized ({}) with {} cache map.", this.getClass(), cache.getClass());
+        if (maxWeight > 0)
+        {
+            for (Map.Entry<Object, Resource> entry : cache.entrySet())
+            {
+                track(entry.getKey(), entry.getValue(), false);
+            }
+        }
+        log.debug("initialized ({}) with max weight {} ({}).", this.getClass(), maxWeight,
+            maxWeight == 0 ? "unbounded" : heapWeights ? "kilobytes" : weighted ? "AST nodes" : "entries");
     }
 
     /**
      * @see org.apache.velocity.runtime.resource.ResourceCache#get(java.lang.Object)
      */
     public Resource get( Object key )
+    {
+        Resource resource = cache.get( key );
+        (resource == null ? misses : hits).incrementAndGet();
+        if (sketch != null)
+        {
+            sketch.increment(key);
+        }
+        return resource;
+    }
+
+    /**
+     * Looks up a resource without recording the access, neither in the hit and miss
+     * counts nor in the frequencies used for admission.
+     * @param key resource key
+     * @return cached resource, or null
+     * @since 2.0
+     */
+    public Resource peek( Object key )
     {
         return cache.get( key );
     }
@@ -131,7 +179,16 @@ public Resource get( Object key )
      */
     public Resource put( Object key, Resource value )
     {
-        return cache.put( key, value );
+        Resource previous = cache.put( key, value );
+        if (maxWeight > 0)
+        {
+            track(key, value, previous == null);
+            if (totalWeight.get() > maxWeight)
+            {
+                evict(key);
+            }
+        }
+        return previous;
     }
 
     /**
@@ -139,7 +196,13 @@ public Resource put( Object key, Resource value )
      */
     public Resource remove( Object key )
     {
-        return cache.remove( key );
+        Resource removed = cache.remove( key );
+        if (removed != null && maxWeight > 0)
+        {
+            untrack(key);
+            order.remove(key);
+        }
+        return removed;
     }
 
     /**
@@ -148,7 +211,13 @@ public Resource remove( Object key )
      */
     public void clear()
     {
-        cache.clear();
+        synchronized (evictionLock)
+        {
+            cache.clear();
+            weights.clear();
+            order.clear();
+            totalWeight.set(0);
+        }
     }
 
     /**
@@ -158,5 +227,158 @@ public Iterator<Object> enumerateKeys()
     {
         return cache.keySet().iterator();
     }
-}
 
+    /**
+     * @return number of lookups which found a cached resource
+     * @since 2.0
+     */
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups which did not find a cached resource
+     * @since 2.0
+     */
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    /**
+     * @return number of resources evicted or not admitted because of the cache bound
+     * @since 2.0
+     */
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * @return current total weight of cached resources, only maintained for a bounded cache
+     * @since 2.0
+     */
+    public long getWeight()
+    {
+        return totalWeight.get();
+    }
+
+    /**
+     * @return maximum total weight, zero for an unbounded cache
+     * @since 2.0
+     */
+    public long getMaxWeight()
+    {
+        return maxWeight;
+    }
+
+    /**
+     * @return cached resources, without recording any access
+     * @since 2.0
+     */
+    public Collection<Resource> getResources()
+    {
+        return Collections.unmodifiableCollection(cache.values());
+    }
+
+    /**
+     * Estimates the weight of a resource. When the cache is bounded by weight, the
+     * weight of a template is its number of AST nodes, or its estimated retained size
+     * in kilobytes if the <code>resource.manager.defaultcache.weigher</code> property
+     * is <code>heap</code>. Otherwise, it is always one.
+     * @param resource resource to weigh
+     * @return resource weight, at least one
+     * @since 2.0
+     */
+    protected int weigh(Resource resource)
+    {
+        if (!weighted || !(resource.getData() instanceof Node))
+        {
+            return 1;
+        }
+        if (heapWeights && resource instanceof Template)
+        {
+            long size = ((Template)resource).getRetainedSize();
+            return (int)Math.max(1, Math.min(Integer.MAX_VALUE, (size + 1023) / 1024));
+        }
+        int count = 0;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push((Node)resource.getData());
+        while (!stack.isEmpty())
+        {
+            Node node = stack.pop();
+            ++count;
+            for (int i = node.jjtGetNumChildren() - 1; i >= 0; --i)
+            {
+                stack.push(node.jjtGetChild(i));
+            }
+        }
+        return count;
+    }
+
+    private void track(Object key, Resource resource, boolean inserted)
+    {
+        int weight = weigh(resource);
+        Integer previous = weights.put(key, weight);
+        totalWeight.addAndGet(previous == null ? weight : weight - previous);
+        if (inserted)
+        {
+            order.add(key);
+        }
+    }
+
+    private void untrack(Object key)
+    {
+        Integer previous = weights.remove(key);
+        if (previous != null)
+        {
+            totalWeight.addAndGet(-previous);
+        }
+    }
+
+    /**
+     * Evicts resources until the cache fits its bound.
+     * @param candidate key of the resource just inserted
+     */
+    private void evict(Object candidate)
+    {
+        synchronized (evictionLock)
+        {
+            // bound the number of victims reinserted in the queue
+            int attempts = order.size();
+            while (totalWeight.get() > maxWeight && attempts-- >= 0)
+            {
+                Object victim = order.poll();
+                if (victim == null)
+                {
+                    break;
+                }
+                if (!cache.containsKey(victim))
+                {
+                    // stale key, removed in the meantime
+                    continue;
+                }
+                if (victim.equals(candidate))
+                {
+                    order.add(victim);
+                    continue;
+                }
+                Object evicted = victim;
+                if (cache.containsKey(candidate) && sketch.frequency(candidate) < sketch.frequency(victim))
+                {
+                    // the victim is more popular than the newcomer: keep it, drop the newcomer
+                    order.add(victim);
+                    order.remove(candidate);
+                    evicted = candidate;
+                }
+                if (cache.remove(evicted) != null)
+                {
+                    untrack(evicted);
+                    evictions.incrementAndGet();
+                    log.debug("evicted resource {} from cache", evicted);
+                }
+            }
+        }
+    }
+}
@@ -19,11 +19,14 @@
  * under the License.
  */
 
+import org.apache.velocity.Template;
 import org.apache.velocity.exception.ParseErrorException;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RenderListener;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.resource.loader.ResourceChangeListener;
 import org.apache.velocity.runtime.resource.loader.ResourceLoader;
 import org.apache.velocity.runtime.resource.loader.ResourceLoaderFactory;
 import org.apache.velocity.util.ClassUtils;
@@ -34,10 +37,20 @@
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 
 /**
@@ -82,6 +95,50 @@
     /** switch to turn off log notice when a resource is found for the first time. */
     private boolean logWhenFound = true;
 
+    /** switch to serve the cached resource while another thread refreshes it. */
+    private boolean staleWhileRevalidate = false;
+
+    /**
+     * Flags cached resources as changed when their loader notices it, and evicts the
+     * templates depending upon them so that they get parsed and resolve their macros again.
+     */
+    private final ResourceChangeListener changeListener = new ResourceChangeListener()
+    {
+        public void resourceChanged(ResourceLoader loader, String resourceName)
+        {
+            if (globalCache == null)
+            {
+                return;
+            }
+            for (int resourceType : new int[] { RESOURCE_TEMPLATE, RESOURCE_CONTENT })
+            {
+                Resource resource = peek(resourceType + resourceName);
+                if (resource != null)
+                {
+                    log.debug("ResourceManager: {} has changed", resourceName);
+                    resource.setChanged();
+                }
+            }
+            if (dependencyGraph != null)
+            {
+                for (String dependent : dependencyGraph.getAllDependents(resourceName))
+                {
+                    if (globalCache.remove(RESOURCE_TEMPLATE + dependent) != null)
+                    {
+                        log.debug("ResourceManager: evicted {} which depends upon changed {}", dependent, resourceName);
+                    }
+                }
+                dependencyGraph.fireResourceChanged(loader, resourceName);
+            }
+        }
+    };
+
+    /** Dependencies between templates, only maintained when tracking is enabled. */
+    private DependencyGraph dependencyGraph = null;
+
+    /** Loads and refreshes in progress, by resource key. */
+    private final ConcurrentMap<String, ResourceLoading> loadings = new ConcurrentHashMap<>();
+
     /** The internal RuntimeServices object. */
     protected RuntimeServices rsvc = null;
 
@@ -138,6 +195,7 @@ public synchronized void initialize(final RuntimeServices rs)
 
             resourceLoader.commonInit(rsvc, configuration);
             resourceLoader.init(configuration);
+            resourceLoader.setResourceChangeListener(changeListener);
             resourceLoaders.add(resourceLoader);
         }
 
@@ -146,6 +204,11 @@ public synchronized void initialize(final RuntimeServices rs)
          */
 
         logWhenFound = rsvc.getBoolean(RuntimeConstants.RESOURCE_MANAGER_LOGWHENFOUND, true);
+        staleWhileRevalidate = rsvc.getBoolean(RuntimeConstants.RESOURCE_MANAGER_STALE_WHILE_REVALIDATE, false);
+        if (rsvc.getBoolean(RuntimeConstants.RESOURCE_MANAGER_DEPENDENCY_TRACKING, false))
+        {
+            dependencyGraph = new DependencyGraph();
+        }
 
         /*
          *  now, is a global cache specified?
@@ -301,18 +364,14 @@ public Resource getResource(final String resourceName, final int resourceType, f
                      * a new Resource instance when they are called
                      * (put in the cache when appropriate) in order to allow
                      * several threads to parse the same template simultaneously.
-                     * It is redundant work and will cause more garbage collection but the
-                     * benefit is that it allows concurrent parsing and processing
-                     * without race conditions when multiple requests try to
-                     * refresh/load the same template at the same time.
-                     *
-                     * Another alternative is to limit template parsing/retrieval
-                     * so that only one thread can parse each template at a time
-                     * but that creates a scalability bottleneck.
+                     * Loads and refreshes are coalesced per resource key: one thread
+                     * does the work while the other ones requesting the same resource
+                     * wait for its result (or get the stale resource if configured so),
+                     * and different templates are still parsed concurrently.
                      *
                      * See VELOCITY-606, VELOCITY-595 and VELOCITY-24
                      */
-                    resource = refreshResource(resource, encoding);
+                    resource = refreshShared(resourceKey, resource, encoding);
                 }
             }
             catch (ResourceNotFoundException rnfe)
@@ -340,12 +399,7 @@ public Resource getResource(final String resourceName, final int resourceType, f
                 /*
                  *  it's not in the cache, so load it.
                  */
-                resource = loadResource(resourceName, resourceType, encoding);
-
-                if (resource.getResourceLoader().isCachingOn())
-                {
-                    globalCache.put(resourceKey, resource);
-                }
+                resource = loadShared(resourceKey, resourceName, resourceType, encoding);
             }
             catch (ResourceNotFoundException rnfe)
             {
@@ -367,6 +421,127 @@ public Resource getResource(final String resourceName, final int resourceType, f
         return resource;
     }
 
+    /**
+     * Loads a resource and puts it in the cache, unless another thread is already loading it,
+     * in which case the result of this other thread is awaited.
+     */
+    private Resource loadShared(final String resourceKey, final String resourceName, final int resourceType, final String encoding)
+    {
+        return runShared(resourceKey, new Callable<Resource>()
+        {
+            public Resource call()
+            {
+                Resource resource = loadResource(resourceName, resourceType, encoding);
+                if (resource.getResourceLoader().isCachingOn())
+                {
+                    globalCache.put(resourceKey, resource);
+                }
+                return resource;
+            }
+        });
+    }
+
+    /**
+     * Refreshes a resource, unless another thread is already refreshing it, in which case
+     * either the stale resource is returned (if <code>resource.manager.stale.while.revalidate</code>
+     * is true), or the result of this other thread is awaited.
+     */
+    private Resource refreshShared(String resourceKey, final Resource resource, final String encoding)
+    {
+        if (staleWhileRevalidate && loadings.containsKey(resourceKey))
+        {
+            return resource;
+        }
+        return runShared(resourceKey, new Callable<Resource>()
+        {
+            public Resource call()
+            {
+                return refreshResource(resource, encoding);
+            }
+        });
+    }
+
+    /**
+     * Runs a load or refresh operation for the given resource key, or waits for the
+     * result of the one already running in another thread.
+     */
+    private Resource runShared(String resourceKey, Callable<Resource> operation)
+    {
+        ResourceLoading loading = new ResourceLoading(operation);
+        ResourceLoading running = loadings.putIfAbsent(resourceKey, loading);
+        if (running == null)
+        {
+            try
+            {
+                loading.run();
+            }
+            finally
+            {
+                loadings.remove(resourceKey, loading);
+            }
+            return loading.getResource();
+        }
+        else if (running.owner == Thread.currentThread())
+        {
+            // reentrant load of the same resource, don't wait for ourselves
+            try
+            {
+                return operation.call();
+            }
+            catch (RuntimeException re)
+            {
+                throw re;
+            }
+            catch (Exception e)
+            {
+                throw new VelocityException(e);
+            }
+        }
+        else
+        {
+            return running.getResource();
+        }
+    }
+
+    /**
+     * Load or refresh operation shared by all threads requesting the same resource.
+     */
+    private static class ResourceLoading extends FutureTask<Resource>
+    {
+        final Thread owner = Thread.currentThread();
+
+        ResourceLoading(Callable<Resource> operation)
+        {
+            super(operation);
+        }
+
+        Resource getResource()
+        {
+            try
+            {
+                return get();
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+                throw new VelocityException("interrupted while waiting for resource loading", ie);
+            }
+            catch (ExecutionException ee)
+            {
+                Throwable cause = ee.getCause();
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException)cause;
+                }
+                if (cause instanceof Error)
+                {
+                    throw (Error)cause;
+                }
+                throw new VelocityException(cause);
+            }
+        }
+    }
+
     /**
      * Create a new Resource of the specified type.
      *
@@ -398,6 +573,7 @@ protected Resource loadResource(String resourceName, int resourceType, String en
     {
         Resource resource = createResource(resourceName, resourceType);
         resource.setRuntimeServices(rsvc);
+        forgetDependencies(resourceName, resourceType);
         resource.setName(resourceName);
         resource.setEncoding(encoding);
 
@@ -411,6 +587,9 @@ protected Resource loadResource(String resourceName, int resourceType, String en
 
         long howOldItWas = 0;
 
+        RenderListener listener = rsvc.getRenderListener();
+        long start = listener != null && listener.sample() ? System.nanoTime() : 0;
+
         for (ResourceLoader resourceLoader : resourceLoaders)
         {
             resource.setResourceLoader(resourceLoader);
@@ -471,6 +650,11 @@ protected Resource loadResource(String resourceName, int resourceType, String en
 
         resource.touch();
 
+        if (start != 0)
+        {
+            listener.resourceLoaded(resource, System.nanoTime() - start);
+        }
+
         return resource;
     }
 
@@ -550,9 +734,18 @@ protected Resource refreshResource(Resource resource, final String encoding)
             newResource.setEncoding(resource.getEncoding());
             newResource.setResourceLoader(loader);
             newResource.setModificationCheckInterval(loader.getModificationCheckInterval());
+            forgetDependencies(newResource.getName(), newResource.getType());
+
+            RenderListener listener = rsvc.getRenderListener();
+            long start = listener != null && listener.sample() ? System.nanoTime() : 0;
 
             newResource.process();
             newResource.setLastModified(howOldItWas);
+
+            if (start != 0)
+            {
+                listener.resourceLoaded(newResource, System.nanoTime() - start);
+            }
             resource = newResource;
 
             globalCache.put(resourceKey, newResource);
@@ -579,6 +772,141 @@ public String getLoaderNameForResource(String resourceName)
         return loader.getClass().toString();
     }
 
+    /**
+     * Lists the names of the resources which the configured loaders can enumerate.
+     *
+     * @return resource names, without duplicates
+     * @see ResourceLoader#listResources()
+     * @since 2.0
+     */
+    public List<String> listResources()
+    {
+        Set<String> names = new LinkedHashSet<>();
+        for (ResourceLoader loader : resourceLoaders)
+        {
+            List<String> loaderNames = loader.listResources();
+            if (loaderNames != null)
+            {
+                names.addAll(loaderNames);
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Tells which templates are not in the resource cache, without recording any access.
+     *
+     * @param templateNames template names
+     * @return names of the templates which are not cached
+     * @since 2.0
+     */
+    public List<String> getUncachedTemplates(Collection<String> templateNames)
+    {
+        List<String> uncached = new ArrayList<>();
+        for (String name : templateNames)
+        {
+            if (peek(RESOURCE_TEMPLATE + name) == null)
+            {
+                uncached.add(name);
+            }
+        }
+        return uncached;
+    }
+
+    /**
+     * Returns the graph of the dependencies between templates.
+     *
+     * @return dependency graph, or null if the <code>resource.manager.dependency.tracking</code>
+     * property is not true
+     * @since 2.0
+     */
+    public DependencyGraph getDependencyGraph()
+    {
+        return dependencyGraph;
+    }
+
+    /**
+     * Looks up a cached resource for internal purposes, without recording the
+     * access when the cache allows it, so as not to skew its statistics.
+     */
+    private Resource peek(String resourceKey)
+    {
+        if (globalCache instanceof ResourceCacheImpl)
+        {
+            return ((ResourceCacheImpl)globalCache).peek(resourceKey);
+        }
+        return globalCache.get(resourceKey);
+    }
+
+    /**
+     * Closes all the resource loaders, stopping their background change detection.
+     * The resource manager must not be used afterwards.
+     *
+     * @since 2.0
+     */
+    public synchronized void close()
+    {
+        for (ResourceLoader loader : resourceLoaders)
+        {
+            try
+            {
+                loader.close();
+            }
+            catch (RuntimeException re)
+            {
+                log.error("ResourceManager: could not close resource loader {}", loader.getClassName(), re);
+            }
+        }
+    }
+
+    /**
+     * Drops the dependencies recorded by a template which is about to be (re)loaded,
+     * its initialization and renderings will record them again.
+     */
+    private void forgetDependencies(String resourceName, int resourceType)
+    {
+        if (dependencyGraph != null && resourceType == RESOURCE_TEMPLATE)
+        {
+            dependencyGraph.removeDependencies(resourceName);
+        }
+    }
+
+    /**
+     * Estimates the heap retained by each cached template, see {@link Template#getRetainedSize()}.
+     *
+     * @return retained sizes in bytes, by template name
+     * @since 2.0
+     */
+    public Map<String, Long> getTemplateSizes()
+    {
+        Map<String, Long> sizes = new TreeMap<>();
+        Collection<Resource> resources;
+        if (globalCache instanceof ResourceCacheImpl)
+        {
+            resources = ((ResourceCacheImpl)globalCache).getResources();
+        }
+        else
+        {
+            resources = new ArrayList<>();
+            for (Iterator keys = globalCache.enumerateKeys(); keys.hasNext(); )
+            {
+                Resource resource = globalCache.get(keys.next());
+                if (resource != null)
+                {
+                    resources.add(resource);
+                }
+            }
+        }
+        for (Resource resource : resources)
+        {
+            if (resource instanceof Template)
+            {
+                sizes.put(resource.getName(), ((Template)resource).getRetainedSize());
+            }
+        }
+        return sizes;
+    }
+
     /**
      * Returns the first {@link ResourceLoader} in which the specified
      * resource exists.
@@ -0,0 +1,173 @@
+package org.apache.velocity.runtime.resource.loader;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Background detector of template changes for the {@link DataSourceResourceLoader}.</p>
+ *
+ * <p>Every interval, it fetches the timestamps of all the templates of the table with
+ * a single query, and notifies the loader of the loaded templates whose timestamp has
+ * changed or which have been deleted.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+class DataSourceRefresher implements Runnable
+{
+    /**
+     * The loader is weakly referenced, so that it can be finalized once discarded:
+     * the thread ends when it is collected.
+     */
+    private final WeakReference<DataSourceResourceLoader> loader;
+
+    private final long interval;
+
+    private final Logger log;
+
+    /**
+     * Last known timestamp of loaded templates.
+     */
+    private final Map<String, Long> timestamps = new ConcurrentHashMap<>();
+
+    private Thread thread = null;
+
+    /**
+     * @param loader data source resource loader to notify
+     * @param interval refresh interval, in milliseconds
+     * @param log logger
+     */
+    DataSourceRefresher(DataSourceResourceLoader loader, long interval, Logger log)
+    {
+        this.loader = new WeakReference<>(loader);
+        this.interval = interval;
+        this.log = log;
+    }
+
+    /**
+     * Starts refreshing, in a daemon thread.
+     */
+    synchronized void start()
+    {
+        log.debug("DataSourceRefresher: refreshing timestamps every {} ms", interval);
+        thread = new Thread(this, "velocity-datasource-refresher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops refreshing.
+     */
+    synchronized void stop()
+    {
+        if (thread != null)
+        {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * Records the timestamp of a loaded template, so that its changes get detected.
+     * @param name template name
+     * @param timestamp template timestamp
+     */
+    void track(String name, long timestamp)
+    {
+        timestamps.put(name, timestamp);
+    }
+
+    public void run()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted() && loader.get() != null)
+            {
+                TimeUnit.MILLISECONDS.sleep(interval);
+                if (!timestamps.isEmpty())
+                {
+                    refresh();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // stopped
+        }
+    }
+
+    /**
+     * Compares the known timestamps with the current ones and notifies changes.
+     */
+    void refresh()
+    {
+        DataSourceResourceLoader dataSourceLoader = loader.get();
+        if (dataSourceLoader == null)
+        {
+            return;
+        }
+        Map<String, Long> current;
+        try
+        {
+            current = dataSourceLoader.readAllLastModified();
+        }
+        catch (RuntimeException re)
+        {
+            log.error("DataSourceRefresher: could not fetch template timestamps", re);
+            return;
+        }
+        Map<String, Long> changed = new HashMap<>();
+        for (Map.Entry<String, Long> entry : timestamps.entrySet())
+        {
+            Long timestamp = current.get(entry.getKey());
+            if (!entry.getValue().equals(timestamp))
+            {
+                changed.put(entry.getKey(), timestamp);
+            }
+        }
+        for (Map.Entry<String, Long> entry : changed.entrySet())
+        {
+            String name = entry.getKey();
+            if (entry.getValue() == null)
+            {
+                timestamps.remove(name);
+            }
+            else
+            {
+                timestamps.put(name, entry.getValue());
+            }
+            try
+            {
+                dataSourceLoader.fireResourceChanged(name);
+            }
+            catch (RuntimeException re)
+            {
+                log.error("DataSourceRefresher: exception while notifying change of {}", name, re);
+            }
+        }
+    }
+}
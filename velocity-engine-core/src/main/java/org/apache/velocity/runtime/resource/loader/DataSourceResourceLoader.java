@@ -33,11 +33,17 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * <P>This is a simple template file loader that loads templates
@@ -63,6 +69,17 @@
  * ds.resource.loader.resource.timestampcolumn = template_timestamp <br>
  * ds.resource.loader.cache = false <br>
  * ds.resource.loader.modificationCheckInterval = 60 <br>
+ * ds.resource.loader.pooled = true <br>
+ * ds.resource.loader.refresh = true <br>
+ * <br>
+ * <P>By default, the loader keeps one connection open and serializes all the
+ * queries through it. When <code>pooled</code> is true, each query borrows a connection
+ * from the DataSource instead, and returns it once the template has been read, so that
+ * templates are loaded concurrently. The DataSource is then expected to be pooling.
+ * <P>When <code>refresh</code> is true, a background thread fetches the timestamps of all
+ * the templates with a single query every <code>modificationCheckInterval</code> seconds
+ * (two by default), and flags the changed ones for reloading, instead of having one
+ * timestamp query per template and per check on the request path.
  * <br>
  * <P>Optionally, the developer can instantiate the DataSourceResourceLoader and set the DataSource via code in
  * a manner similar to the following:
@@ -136,7 +153,17 @@ public class DataSourceResourceLoader extends ResourceLoader
     private String templateColumn;
     private String timestampColumn;
     private InitialContext ctx;
-    private DataSource dataSource;
+    private volatile DataSource dataSource;
+
+    /**
+     * Whether each query borrows its own connection from the DataSource.
+     */
+    private boolean pooled = false;
+
+    /**
+     * Background change detector, if the <code>refresh</code> property is true.
+     */
+    private volatile DataSourceRefresher refresher = null;
 
     /*
         Keep connection and prepared statements open. It's not just an optimization:
@@ -186,6 +213,7 @@ public void init(ExtProperties configuration)
         keyColumn       = StringUtils.trim(configuration.getString("resource.keycolumn"));
         templateColumn  = StringUtils.trim(configuration.getString("resource.templatecolumn"));
         timestampColumn = StringUtils.trim(configuration.getString("resource.timestampcolumn"));
+        pooled          = configuration.getBoolean("pooled", false);
 
         if (dataSource != null)
         {
@@ -207,6 +235,13 @@ else if (dataSourceName != null)
             log.error(msg);
             throw new RuntimeException(msg);
         }
+
+        if (configuration.getBoolean("refresh", false))
+        {
+            long interval = super.getModificationCheckInterval() > 0 ? super.getModificationCheckInterval() : 2;
+            refresher = new DataSourceRefresher(this, interval * 1000, log);
+            refresher.start();
+        }
     }
 
     /**
@@ -219,6 +254,49 @@ public void setDataSource(final DataSource dataSource)
         this.dataSource = dataSource;
     }
 
+    /**
+     * When changes are detected in the background, resources don't need
+     * to be periodically checked.
+     * @see ResourceLoader#getModificationCheckInterval()
+     */
+    public long getModificationCheckInterval()
+    {
+        return refresher != null ? 0 : super.getModificationCheckInterval();
+    }
+
+    /**
+     * @see ResourceLoader#isNotifyingChanges()
+     */
+    public boolean isNotifyingChanges()
+    {
+        return refresher != null;
+    }
+
+    /**
+     * Lists the keys of all the templates of the table.
+     * @see ResourceLoader#listResources()
+     */
+    public List<String> listResources()
+    {
+        List<String> names = new ArrayList<>();
+        try (Connection conn = getDataSource().getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT " + keyColumn + " FROM " + tableName))
+        {
+            while (rs.next())
+            {
+                names.add(rs.getString(1));
+            }
+        }
+        catch (SQLException | NamingException sqle)
+        {
+            String msg = "DataSourceResourceLoader: database problem while listing resources";
+            log.error(msg, sqle);
+            throw new VelocityException(msg, sqle);
+        }
+        return names;
+    }
+
     /**
      * @see ResourceLoader#isSourceModified(org.apache.velocity.runtime.resource.Resource)
      */
@@ -246,7 +324,7 @@ public long getLastModified(final Resource resource)
      * @throws ResourceNotFoundException
      * @since 2.0
      */
-    public synchronized Reader getResourceReader(final String name, String encoding)
+    public Reader getResourceReader(final String name, String encoding)
             throws ResourceNotFoundException
     {
         if (StringUtils.isEmpty(name))
@@ -254,6 +332,22 @@ public synchronized Reader getResourceReader(final String name, String encoding)
             throw new ResourceNotFoundException("DataSourceResourceLoader: Template name was empty or null");
         }
 
+        if (pooled)
+        {
+            return readPooledResource(name, encoding);
+        }
+        synchronized (this)
+        {
+            return readResource(name, encoding);
+        }
+    }
+
+    /**
+     * Reads a resource through the shared connection.
+     */
+    private Reader readResource(final String name, String encoding)
+            throws ResourceNotFoundException
+    {
         ResultSet rs = null;
         try
         {
@@ -289,6 +383,52 @@ public synchronized Reader getResourceReader(final String name, String encoding)
         }
     }
 
+    /**
+     * Reads a resource through a connection borrowed from the DataSource. Since
+     * the reader may not outlive the result set, the whole template is read before
+     * the connection is returned.
+     */
+    private Reader readPooledResource(final String name, String encoding)
+            throws ResourceNotFoundException
+    {
+        try (Connection conn = getDataSource().getConnection();
+             PreparedStatement ps = prepareStatement(conn, templateColumn, tableName, keyColumn);
+             ResultSet rs = fetchResult(ps, name))
+        {
+            if (!rs.next())
+            {
+                throw new ResourceNotFoundException("DataSourceResourceLoader: "
+                        + "could not find resource '"
+                        + name + "'");
+            }
+            try (Reader reader = getReader(rs, templateColumn, encoding))
+            {
+                if (reader == null)
+                {
+                    throw new ResourceNotFoundException("DataSourceResourceLoader: "
+                            + "template column for '"
+                            + name + "' is null");
+                }
+                StringBuilder content = new StringBuilder();
+                char[] buffer = new char[4096];
+                int n;
+                while ((n = reader.read(buffer)) != -1)
+                {
+                    content.append(buffer, 0, n);
+                }
+                return new StringReader(content.toString());
+            }
+        }
+        catch (SQLException | NamingException | IOException e)
+        {
+            String msg = "DataSourceResourceLoader: database problem while getting resource '"
+                    + name + "': ";
+
+            log.error(msg, e);
+            throw new ResourceNotFoundException(msg);
+        }
+    }
+
     /**
      * Fetches the last modification time of the resource
      *
@@ -311,24 +451,23 @@ private long readLastModified(final Resource resource, final String operation)
         }
         else
         {
-            ResultSet rs = null;
-
             try
             {
-                checkDBConnection();
-                rs = fetchResult(timestampPrepStatement, name);
-
-                if (rs.next())
+                if (pooled)
                 {
-                    Timestamp ts = rs.getTimestamp(timestampColumn);
-                    timeStamp = ts != null ? ts.getTime() : 0;
+                    try (Connection conn = getDataSource().getConnection();
+                         PreparedStatement ps = prepareStatement(conn, timestampColumn, tableName, keyColumn))
+                    {
+                        timeStamp = fetchLastModified(ps, name, operation);
+                    }
                 }
                 else
                 {
-                    String msg = "DataSourceResourceLoader: could not find resource "
-                              + name + " while " + operation;
-                    log.error(msg);
-                    throw new ResourceNotFoundException(msg);
+                    synchronized (this)
+                    {
+                        checkDBConnection();
+                        timeStamp = fetchLastModified(timestampPrepStatement, name, operation);
+                    }
                 }
             }
             catch (SQLException | NamingException sqle)
@@ -339,37 +478,111 @@ private long readLastModified(final Resource resource, final String operation)
                 log.error(msg, sqle);
                 throw new VelocityException(msg, sqle);
             }
-            finally
+            DataSourceRefresher timestampRefresher = refresher;
+            if (timestampRefresher != null)
             {
-                closeResultSet(rs);
+                timestampRefresher.track(name, timeStamp);
             }
         }
         return timeStamp;
     }
 
     /**
-     * Gets connection to the datasource specified through the configuration
-     * parameters.
+     * Runs the timestamp query for a resource.
+     */
+    private long fetchLastModified(final PreparedStatement ps, final String name, final String operation)
+        throws SQLException
+    {
+        ResultSet rs = null;
+        try
+        {
+            rs = fetchResult(ps, name);
+            if (rs.next())
+            {
+                Timestamp ts = rs.getTimestamp(timestampColumn);
+                return ts != null ? ts.getTime() : 0;
+            }
+            else
+            {
+                String msg = "DataSourceResourceLoader: could not find resource "
+                          + name + " while " + operation;
+                log.error(msg);
+                throw new ResourceNotFoundException(msg);
+            }
+        }
+        finally
+        {
+            closeResultSet(rs);
+        }
+    }
+
+    /**
+     * Fetches the timestamps of all the templates, with a single query on a
+     * connection borrowed from the DataSource.
      *
+     * @return timestamps by template name
      */
-    private void openDBConnection() throws NamingException, SQLException
+    Map<String, Long> readAllLastModified()
     {
-        if (dataSource == null)
+        Map<String, Long> timestamps = new HashMap<>();
+        try (Connection conn = getDataSource().getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT " + keyColumn + ", " + timestampColumn + " FROM " + tableName))
         {
-            if (ctx == null)
+            while (rs.next())
             {
-                ctx = new InitialContext();
+                Timestamp ts = rs.getTimestamp(2);
+                timestamps.put(rs.getString(1), ts != null ? ts.getTime() : 0);
             }
+        }
+        catch (SQLException | NamingException sqle)
+        {
+            String msg = "DataSourceResourceLoader: database problem while refreshing timestamps";
+            throw new VelocityException(msg, sqle);
+        }
+        return timestamps;
+    }
+
+    /**
+     * Gets the DataSource, looking it up by name the first time if it has not been set.
+     */
+    private DataSource getDataSource() throws NamingException
+    {
+        DataSource ds = dataSource;
+        if (ds == null)
+        {
+            synchronized (this)
+            {
+                if (dataSource == null)
+                {
+                    if (ctx == null)
+                    {
+                        ctx = new InitialContext();
+                    }
 
-            dataSource = (DataSource) ctx.lookup(dataSourceName);
+                    dataSource = (DataSource) ctx.lookup(dataSourceName);
+                }
+                ds = dataSource;
+            }
         }
+        return ds;
+    }
+
+    /**
+     * Gets connection to the datasource specified through the configuration
+     * parameters.
+     *
+     */
+    private void openDBConnection() throws NamingException, SQLException
+    {
+        DataSource ds = getDataSource();
 
         if (connection != null)
         {
             closeDBConnection();
         }
 
-        connection = dataSource.getConnection();
+        connection = ds.getConnection();
         templatePrepStatement = prepareStatement(connection, templateColumn, tableName, keyColumn);
         timestampPrepStatement = prepareStatement(connection, timestampColumn, tableName, keyColumn);
     }
@@ -386,6 +599,22 @@ private void checkDBConnection() throws NamingException, SQLException
         }
     }
 
+    /**
+     * Stops the background refresh, if any, and closes the DB connection,
+     * which is reopened if the loader is used again.
+     * @see ResourceLoader#close()
+     * @since 2.0
+     */
+    public synchronized void close()
+    {
+        if (refresher != null)
+        {
+            refresher.stop();
+            refresher = null;
+        }
+        closeDBConnection();
+    }
+
     /**
      * Close DB connection on finalization
      *
@@ -394,7 +623,7 @@ private void checkDBConnection() throws NamingException, SQLException
     protected void finalize()
         throws Throwable
     {
-        closeDBConnection();
+        close();
     }
 
     /**
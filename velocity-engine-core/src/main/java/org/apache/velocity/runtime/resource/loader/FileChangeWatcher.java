@@ -0,0 +1,298 @@
+package org.apache.velocity.runtime.resource.loader;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Background detector of template file changes for the {@link FileResourceLoader}.</p>
+ *
+ * <p>It watches the loader root directories using a {@link WatchService}. When the file system
+ * doesn't support it, it falls back to periodically polling the modification time of
+ * the loaded files.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+class FileChangeWatcher implements Runnable
+{
+    /**
+     * The loader is weakly referenced, so that a discarded engine doesn't stay
+     * reachable from this thread: the thread ends once the loader is collected.
+     */
+    private final WeakReference<FileResourceLoader> loader;
+
+    private final List<File> roots;
+
+    private final long pollInterval;
+
+    private final Logger log;
+
+    /**
+     * Last known modification time of loaded files, for polling.
+     */
+    private final Map<File, Long> lastModified = new ConcurrentHashMap<>();
+
+    /**
+     * Watched directories, by key.
+     */
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+
+    private volatile WatchService watchService = null;
+
+    private Thread thread = null;
+
+    /**
+     * @param loader file resource loader to notify
+     * @param roots root directories
+     * @param pollInterval polling interval, in milliseconds
+     * @param log logger
+     */
+    FileChangeWatcher(FileResourceLoader loader, List<File> roots, long pollInterval, Logger log)
+    {
+        this.loader = new WeakReference<>(loader);
+        this.roots = roots;
+        this.pollInterval = pollInterval;
+        this.log = log;
+    }
+
+    /**
+     * Starts watching, in a daemon thread.
+     */
+    synchronized void start()
+    {
+        try
+        {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (File root : roots)
+            {
+                if (root.isDirectory())
+                {
+                    registerAll(root.toPath(), watchService);
+                }
+            }
+            log.debug("FileChangeWatcher: watching {} directories", directories.size());
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            log.info("FileChangeWatcher: file system watch service unavailable ({}), polling files every {} ms instead", e.getMessage(), pollInterval);
+            closeWatchService();
+        }
+        thread = new Thread(this, "velocity-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching.
+     */
+    synchronized void stop()
+    {
+        if (thread != null)
+        {
+            thread.interrupt();
+            thread = null;
+        }
+        closeWatchService();
+    }
+
+    /**
+     * Records a loaded file, so that its modification time gets polled
+     * if there is no watch service.
+     * @param file loaded file
+     */
+    void track(File file)
+    {
+        lastModified.put(file.getAbsoluteFile(), file.lastModified());
+    }
+
+    /**
+     * @return whether changes are detected with a watch service rather than by polling
+     */
+    boolean isWatching()
+    {
+        return watchService != null;
+    }
+
+    public void run()
+    {
+        try
+        {
+            WatchService service = watchService;
+            if (service != null)
+            {
+                watch(service);
+            }
+            else
+            {
+                poll();
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            // stopped
+        }
+        finally
+        {
+            closeWatchService();
+        }
+    }
+
+    private void watch(WatchService service)
+        throws InterruptedException
+    {
+        while (!Thread.currentThread().isInterrupted() && loader.get() != null)
+        {
+            WatchKey key = service.poll(pollInterval, TimeUnit.MILLISECONDS);
+            if (key == null)
+            {
+                continue;
+            }
+            Path directory = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents())
+            {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                {
+                    log.debug("FileChangeWatcher: events overflow, considering all files as changed");
+                    for (File file : lastModified.keySet())
+                    {
+                        changed(file);
+                    }
+                    continue;
+                }
+                if (directory == null)
+                {
+                    continue;
+                }
+                Path path = directory.resolve((Path)event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path))
+                {
+                    try
+                    {
+                        registerAll(path, service);
+                    }
+                    catch (IOException ioe)
+                    {
+                        log.warn("FileChangeWatcher: could not watch new directory {}", path, ioe);
+                    }
+                }
+                changed(path.toFile());
+            }
+            if (!key.reset())
+            {
+                directories.remove(key);
+            }
+        }
+    }
+
+    private void poll()
+        throws InterruptedException
+    {
+        while (!Thread.currentThread().isInterrupted() && loader.get() != null)
+        {
+            TimeUnit.MILLISECONDS.sleep(pollInterval);
+            for (Map.Entry<File, Long> entry : lastModified.entrySet())
+            {
+                File file = entry.getKey();
+                long modified = file.lastModified();
+                if (modified != entry.getValue())
+                {
+                    changed(file);
+                }
+            }
+        }
+    }
+
+    private void changed(File file)
+    {
+        file = file.getAbsoluteFile();
+        if (lastModified.containsKey(file))
+        {
+            lastModified.put(file, file.lastModified());
+        }
+        FileResourceLoader fileLoader = loader.get();
+        if (fileLoader == null)
+        {
+            return;
+        }
+        try
+        {
+            fileLoader.fileChanged(file);
+        }
+        catch (RuntimeException re)
+        {
+            log.error("FileChangeWatcher: exception while notifying change of {}", file, re);
+        }
+    }
+
+    private void registerAll(Path start, final WatchService service)
+        throws IOException
+    {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>()
+        {
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                throws IOException
+            {
+                WatchKey key = dir.register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+                directories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private synchronized void closeWatchService()
+    {
+        if (watchService != null)
+        {
+            try
+            {
+                watchService.close();
+            }
+            catch (IOException ioe)
+            {
+                // ignore
+            }
+            watchService = null;
+            directories.clear();
+        }
+    }
+}
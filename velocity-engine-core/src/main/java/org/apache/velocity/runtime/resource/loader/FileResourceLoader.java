@@ -65,6 +65,11 @@ public class FileResourceLoader extends ResourceLoader
      */
     private Map templatePaths = Collections.synchronizedMap(new HashMap());
 
+    /**
+     * Background change detector, if the <code>watch</code> property is true.
+     */
+    private volatile FileChangeWatcher watcher = null;
+
     /**
      * @see ResourceLoader#init(org.apache.velocity.util.ExtProperties)
      */
@@ -81,9 +86,37 @@ public void init( ExtProperties configuration)
             it.set(path);
             log.debug("FileResourceLoader: adding path '{}'", path);
         }
+
+        if (configuration.getBoolean("watch", false))
+        {
+            List<File> roots = new ArrayList<>();
+            for (String path : paths)
+            {
+                if (path.length() > 0)
+                {
+                    roots.add(new File(path).getAbsoluteFile());
+                }
+            }
+            long pollInterval = super.getModificationCheckInterval() > 0 ? super.getModificationCheckInterval() : 2;
+            watcher = new FileChangeWatcher(this, roots, pollInterval * 1000, log);
+            watcher.start();
+        }
         log.trace("FileResourceLoader: initialization complete.");
     }
 
+    /**
+     * Stops the background change detection, if any.
+     * @see ResourceLoader#close()
+     */
+    public synchronized void close()
+    {
+        if (watcher != null)
+        {
+            watcher.stop();
+            watcher = null;
+        }
+    }
+
     /**
      * Get a Reader so that the Runtime can build a
      * template with it.
@@ -152,6 +185,11 @@ public Reader getResourceReader(String templateName, String encoding)
                  * time.
                  */
                 templatePaths.put(templateName, path);
+                FileChangeWatcher changeWatcher = watcher;
+                if (changeWatcher != null)
+                {
+                    changeWatcher.track(getFile(path, template));
+                }
                 return reader;
             }
         }
@@ -164,6 +202,36 @@ public Reader getResourceReader(String templateName, String encoding)
         throw new ResourceNotFoundException("FileResourceLoader: cannot find " + template);
     }
 
+    /**
+     * Finds the template file on the paths, in the same order as
+     * {@link #getResourceReader(String, String)}.
+     * @see ResourceLoader#getResourceFile(String)
+     * @since 2.0
+     */
+    public File getResourceFile(String templateName)
+    {
+        String template = templateName == null ? null : FilenameUtils.normalize(templateName, true);
+        if (template == null || template.length() == 0)
+        {
+            return null;
+        }
+        for (String path : paths)
+        {
+            File file = getFile(path, template);
+            if (file.canRead())
+            {
+                templatePaths.put(templateName, path);
+                FileChangeWatcher changeWatcher = watcher;
+                if (changeWatcher != null)
+                {
+                    changeWatcher.track(file);
+                }
+                return file;
+            }
+        }
+        return null;
+    }
+
     /**
      * Overrides superclass for better performance.
      * @since 1.6
@@ -318,6 +386,55 @@ else if (currentFile.equals(file) && file.canRead())
         return modified;
     }
 
+    /**
+     * When changes are detected in the background, resources don't need
+     * to be periodically checked.
+     * @see ResourceLoader#getModificationCheckInterval()
+     */
+    public long getModificationCheckInterval()
+    {
+        return watcher != null ? 0 : super.getModificationCheckInterval();
+    }
+
+    /**
+     * @see ResourceLoader#isNotifyingChanges()
+     */
+    public boolean isNotifyingChanges()
+    {
+        return watcher != null;
+    }
+
+    /**
+     * Called by the change watcher when a file has been created, modified or deleted.
+     * Notifies the change of every known template which resolves, on any path,
+     * to this file, since a new file may also shadow a template found on a later path.
+     * @param file changed file, absolute
+     */
+    void fileChanged(File file)
+    {
+        List<String> changed = new ArrayList<>();
+        synchronized (templatePaths)
+        {
+            for (Object templateName : templatePaths.keySet())
+            {
+                String name = (String)templateName;
+                for (String path : paths)
+                {
+                    if (getFile(path, name).getAbsoluteFile().equals(file))
+                    {
+                        changed.add(name);
+                        break;
+                    }
+                }
+            }
+        }
+        for (String name : changed)
+        {
+            log.debug("FileResourceLoader: {} has changed", name);
+            fireResourceChanged(name);
+        }
+    }
+
     /**
      * @see ResourceLoader#getLastModified(org.apache.velocity.runtime.resource.Resource)
      */
@@ -337,6 +454,45 @@ public long getLastModified(Resource resource)
     }
 
 
+    /**
+     * Lists the files found under the configured paths, as relative names.
+     * @see ResourceLoader#listResources()
+     * @since 2.0
+     */
+    public List<String> listResources()
+    {
+        List<String> names = new ArrayList<>();
+        for (String path : paths)
+        {
+            /* the empty path stands for absolute file names, which cannot be enumerated */
+            if (path.length() > 0)
+            {
+                listFiles(new File(path), "", names);
+            }
+        }
+        return names;
+    }
+
+    private void listFiles(File directory, String prefix, List<String> names)
+    {
+        File[] files = directory.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        for (File file : files)
+        {
+            if (file.isDirectory())
+            {
+                listFiles(file, prefix + file.getName() + '/', names);
+            }
+            else if (file.canRead())
+            {
+                names.add(prefix + file.getName());
+            }
+        }
+    }
+
     /**
      * Create a File based on either a relative path if given, or absolute path otherwise
      */
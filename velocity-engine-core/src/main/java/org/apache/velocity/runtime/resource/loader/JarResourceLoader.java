@@ -30,6 +30,7 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
@@ -257,4 +258,14 @@ public long getLastModified(Resource resource)
     {
         return 0;
     }
+
+    /**
+     * Lists the entries of all the jars.
+     * @see ResourceLoader#listResources()
+     * @since 2.0
+     */
+    public List<String> listResources()
+    {
+        return new ArrayList<String>(entryDirectory.keySet());
+    }
 }
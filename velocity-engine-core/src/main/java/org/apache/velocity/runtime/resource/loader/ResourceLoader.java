@@ -30,11 +30,13 @@
 
 import org.slf4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.util.List;
 
 /**
  * This is abstract class the all text resource loaders should
@@ -68,6 +70,11 @@
     protected RuntimeServices rsvc = null;
     protected Logger log = null;
 
+    /**
+     * Listener to notify of detected resource changes, if any.
+     */
+    private volatile ResourceChangeListener changeListener = null;
+
     /**
      * This initialization is used by all resource
      * loaders and must be called to set up common
@@ -227,6 +234,85 @@ public long getModificationCheckInterval()
         return modificationCheckInterval;
     }
 
+    /**
+     * Set the listener to notify when this loader detects by itself
+     * that a resource has changed.
+     *
+     * @param listener resource change listener
+     * @since 2.0
+     */
+    public void setResourceChangeListener(ResourceChangeListener listener)
+    {
+        this.changeListener = listener;
+    }
+
+    /**
+     * Tells whether this loader detects by itself that resources have changed and
+     * notifies its resource change listener, in which case its resources don't need
+     * to be checked for modifications. False by default.
+     *
+     * @return whether changes are notified to the listener
+     * @since 2.0
+     */
+    public boolean isNotifyingChanges()
+    {
+        return false;
+    }
+
+    /**
+     * Notify the resource change listener, if any, that a resource has changed.
+     *
+     * @param resourceName name of the changed resource
+     * @since 2.0
+     */
+    protected void fireResourceChanged(String resourceName)
+    {
+        ResourceChangeListener listener = changeListener;
+        if (listener != null)
+        {
+            listener.resourceChanged(this, resourceName);
+        }
+    }
+
+    /**
+     * Releases the resources held by this loader, like the threads detecting changes
+     * in the background. Called by the resource manager when the engine is reset;
+     * the loader may be initialized again afterwards. Does nothing by default.
+     *
+     * @since 2.0
+     */
+    public void close()
+    {
+    }
+
+    /**
+     * Returns the file a resource is read from, for loaders which read their
+     * resources from the file system, so that large static content can be
+     * mapped in memory rather than read. Other loaders return null, which is
+     * the default.
+     *
+     * @param resourceName name of the resource
+     * @return readable file, or null
+     * @since 2.0
+     */
+    public File getResourceFile(String resourceName)
+    {
+        return null;
+    }
+
+    /**
+     * Lists the names of the resources this loader can provide, so that
+     * templates can be preloaded. Loaders which cannot enumerate their
+     * resources return null, which is the default.
+     *
+     * @return resource names, or null
+     * @since 2.0
+     */
+    public List<String> listResources()
+    {
+        return null;
+    }
+
     /**
      * Check whether any given resource exists. This is not really
      * a very efficient test and it can and should be overridden in the
@@ -38,6 +38,7 @@
 import java.io.UnsupportedEncodingException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -409,5 +410,19 @@ public long getLastModified(final Resource resource)
                 : 0;
     }
 
+    /**
+     * Lists the resources of the repository, when it is a {@link StringResourceRepositoryImpl}.
+     * @see ResourceLoader#listResources()
+     * @since 2.0
+     */
+    public List<String> listResources()
+    {
+        if (repository instanceof StringResourceRepositoryImpl)
+        {
+            return ((StringResourceRepositoryImpl)repository).getResourceNames();
+        }
+        return null;
+    }
+
 }
 
@@ -0,0 +1,194 @@
+package org.apache.velocity.runtime.resource.loader;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.exception.VelocityException;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>On-disk cache of the content fetched by the {@link URLResourceLoader}, along with
+ * its HTTP validators, so that it survives restarts and can be revalidated with a
+ * conditional request rather than downloaded again.</p>
+ *
+ * <p>There is one file per URL, named after the SHA-256 digest of the URL, and written
+ * to a temporary file then renamed, so that concurrent readers never see a partial file.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+class URLContentCache
+{
+    /**
+     * "VUC1"
+     */
+    private static final int MAGIC = 0x56554331;
+
+    private final Path directory;
+
+    private final Logger log;
+
+    /**
+     * Cached content of a URL.
+     */
+    static final class Entry
+    {
+        final String etag;
+        final long lastModified;
+        final byte[] content;
+
+        Entry(String etag, long lastModified, byte[] content)
+        {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+    }
+
+    /**
+     * @param directory cache directory, created if needed
+     * @param log logger
+     */
+    URLContentCache(Path directory, Logger log)
+    {
+        this.directory = directory;
+        this.log = log;
+        try
+        {
+            Files.createDirectories(directory);
+        }
+        catch (IOException ioe)
+        {
+            String msg = "URLResourceLoader: cannot create disk cache directory " + directory;
+            log.error(msg, ioe);
+            throw new VelocityException(msg, ioe);
+        }
+    }
+
+    /**
+     * @param url fetched URL
+     * @return cached content, or null
+     */
+    Entry get(String url)
+    {
+        Path file = file(url);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (in.readInt() != MAGIC || !url.equals(in.readUTF()))
+            {
+                return null;
+            }
+            String etag = in.readUTF();
+            long lastModified = in.readLong();
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+            return new Entry(etag.length() == 0 ? null : etag, lastModified, content);
+        }
+        catch (NoSuchFileException nsfe)
+        {
+            return null;
+        }
+        catch (IOException ioe)
+        {
+            log.warn("URLResourceLoader: cannot read disk cache file {}: {}", file, ioe.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param url fetched URL
+     * @param entry content to cache
+     */
+    void put(String url, Entry entry)
+    {
+        Path file = file(url);
+        Path tmp = null;
+        try
+        {
+            tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeUTF(url);
+                out.writeUTF(entry.etag == null ? "" : entry.etag);
+                out.writeLong(entry.lastModified);
+                out.writeInt(entry.content.length);
+                out.write(entry.content);
+            }
+            try
+            {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException amnse)
+            {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        }
+        catch (IOException ioe)
+        {
+            log.warn("URLResourceLoader: cannot write disk cache file {}: {}", file, ioe.getMessage());
+        }
+        finally
+        {
+            if (tmp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(tmp);
+                }
+                catch (IOException ioe) {}
+            }
+        }
+    }
+
+    private Path file(String url)
+    {
+        byte[] hash;
+        try
+        {
+            hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+        }
+        catch (NoSuchAlgorithmException nsae)
+        {
+            throw new VelocityException("SHA-256 not available", nsae);
+        }
+        char[] hex = new char[2 * hash.length];
+        for (int i = 0; i < hash.length; ++i)
+        {
+            hex[2 * i] = Character.forDigit((hash[i] >> 4) & 0xF, 16);
+            hex[2 * i + 1] = Character.forDigit(hash[i] & 0xF, 16);
+        }
+        return directory.resolve(new String(hex) + ".vuc");
+    }
+}
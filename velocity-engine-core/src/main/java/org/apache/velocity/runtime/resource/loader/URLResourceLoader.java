@@ -19,22 +19,44 @@
  * under the License.
  */
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.velocity.exception.ResourceNotFoundException;
 import org.apache.velocity.exception.VelocityException;
 import org.apache.velocity.runtime.resource.Resource;
 import org.apache.velocity.util.ExtProperties;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * This is a simple URL-based loader.
+ * <p>This is a simple URL-based loader.</p>
+ *
+ * <p>Templates are fetched concurrently. Modification checks of HTTP resources are
+ * conditional requests using the <code>ETag</code> and <code>Last-Modified</code>
+ * validators of the last fetch, so that an unchanged template costs a
+ * <code>304 Not Modified</code> response rather than a download.</p>
+ *
+ * <p>When the <code>diskcache.path</code> property is set, fetched templates are also
+ * stored in this directory with their validators. Templates are then revalidated
+ * rather than downloaded again after a restart, and when <code>diskcache.stale</code>
+ * is true, the cached content is served if the origin fails or doesn't answer within
+ * the <code>timeout</code>:</p>
+ * <pre>
+ * url.resource.loader.root = http://assets.example.com/templates/
+ * url.resource.loader.timeout = 2000
+ * url.resource.loader.diskcache.path = /var/cache/velocity
+ * url.resource.loader.diskcache.stale = true
+ * </pre>
  *
  * @author <a href="mailto:geirm@apache.org">Geir Magnusson Jr.</a>
  * @author <a href="mailto:nbubna@apache.org">Nathan Bubna</a>
@@ -47,6 +69,21 @@ public class URLResourceLoader extends ResourceLoader
     protected HashMap templateRoots = null;
     private int timeout = -1;
 
+    /**
+     * Validators of the last fetch of each template (without content).
+     */
+    private final ConcurrentMap<String, URLContentCache.Entry> validators = new ConcurrentHashMap<>();
+
+    /**
+     * On-disk content cache, if the <code>diskcache.path</code> property is set.
+     */
+    private URLContentCache diskCache = null;
+
+    /**
+     * Whether cached content is served when the origin fails.
+     */
+    private boolean serveStale = false;
+
     /**
      * @see ResourceLoader#init(org.apache.velocity.util.ExtProperties)
      */
@@ -68,6 +105,14 @@ public void init(ExtProperties configuration)
         // init the template paths map
         templateRoots = new HashMap();
 
+        String cachePath = StringUtils.trim(configuration.getString("diskcache.path"));
+        if (StringUtils.isNotEmpty(cachePath))
+        {
+            diskCache = new URLContentCache(Paths.get(cachePath), log);
+            serveStale = configuration.getBoolean("diskcache.stale", false);
+            log.debug("URLResourceLoader: caching content in '{}'", cachePath);
+        }
+
         log.trace("URLResourceLoader: initialization complete.");
     }
 
@@ -82,7 +127,7 @@ public void init(ExtProperties configuration)
      *         in the file template path.
      * @since 2.0
      */
-    public synchronized Reader getResourceReader(String name, String encoding)
+    public Reader getResourceReader(String name, String encoding)
             throws ResourceNotFoundException
     {
         if (StringUtils.isEmpty(name))
@@ -90,41 +135,23 @@ public synchronized Reader getResourceReader(String name, String encoding)
             throw new ResourceNotFoundException("URLResourceLoader: No template name provided");
         }
 
-        Reader reader = null;
         Exception exception = null;
         for (String root : roots)
         {
-            InputStream rawStream = null;
             try
             {
-                URL u = new URL(root + name);
-                URLConnection conn = u.openConnection();
-                conn.setConnectTimeout(timeout);
-                conn.setReadTimeout(timeout);
-                rawStream = conn.getInputStream();
-                reader = buildReader(rawStream, encoding);
-
-                if (reader != null)
-                {
-                    log.debug("URLResourceLoader: Found '{}' at '{}'", name, root);
+                byte[] content = fetch(root, name);
+                log.debug("URLResourceLoader: Found '{}' at '{}'", name, root);
 
-                    // save this root for later re-use
+                // save this root for later re-use
+                synchronized (templateRoots)
+                {
                     templateRoots.put(name, root);
-                    break;
                 }
+                return buildReader(new ByteArrayInputStream(content), encoding);
             }
             catch (IOException ioe)
             {
-                if (rawStream != null)
-                {
-                    try
-                    {
-                        rawStream.close();
-                    }
-                    catch (IOException e)
-                    {
-                    }
-                }
                 log.debug("URLResourceLoader: Exception when looking for '{}' at '{}'", name, root, ioe);
 
                 // only save the first one for later throwing
@@ -135,41 +162,147 @@ public synchronized Reader getResourceReader(String name, String encoding)
             }
         }
 
-        // if we never found the template
-        if (reader == null)
+        // the origin may only be failing: fall back to the content cached on disk
+        if (serveStale && exception != null)
         {
-            String msg;
-            if (exception == null)
+            for (String root : roots)
             {
-                msg = "URLResourceLoader: Resource '" + name + "' not found.";
+                URLContentCache.Entry cached = diskCache.get(root + name);
+                if (cached != null)
+                {
+                    log.warn("URLResourceLoader: serving cached content of '{}' from '{}': {}", name, root, exception.getMessage());
+                    validators.put(name, new URLContentCache.Entry(cached.etag, cached.lastModified, null));
+                    synchronized (templateRoots)
+                    {
+                        templateRoots.put(name, root);
+                    }
+                    try
+                    {
+                        return buildReader(new ByteArrayInputStream(cached.content), encoding);
+                    }
+                    catch (IOException ioe)
+                    {
+                        // cannot happen when reading from memory
+                        throw new VelocityException(ioe);
+                    }
+                }
             }
-            else
+        }
+
+        // we never found the template
+        String msg;
+        if (exception == null)
+        {
+            msg = "URLResourceLoader: Resource '" + name + "' not found.";
+        }
+        else
+        {
+            msg = exception.getMessage();
+        }
+        // convert to a general Velocity ResourceNotFoundException
+        throw new ResourceNotFoundException(msg);
+    }
+
+    /**
+     * Fetches the whole content of a template, revalidating the content cached
+     * on disk, if any, with a conditional request.
+     */
+    private byte[] fetch(String root, String name)
+        throws IOException
+    {
+        String url = root + name;
+        URLContentCache.Entry cached = diskCache == null ? null : diskCache.get(url);
+        URLConnection conn = openConnection(url);
+        if (cached != null && conn instanceof HttpURLConnection)
+        {
+            HttpURLConnection http = (HttpURLConnection)conn;
+            setValidators(http, cached);
+            if (http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED)
             {
-                msg = exception.getMessage();
+                log.debug("URLResourceLoader: cached content of '{}' is up to date", url);
+                validators.put(name, new URLContentCache.Entry(cached.etag, cached.lastModified, null));
+                return cached.content;
             }
-            // convert to a general Velocity ResourceNotFoundException
-            throw new ResourceNotFoundException(msg);
         }
-
-        return reader;
+        byte[] content;
+        try (InputStream rawStream = conn.getInputStream())
+        {
+            content = IOUtils.toByteArray(rawStream);
+        }
+        String etag = conn.getHeaderField("ETag");
+        long lastModified = conn.getLastModified();
+        validators.put(name, new URLContentCache.Entry(etag, lastModified, null));
+        if (diskCache != null)
+        {
+            diskCache.put(url, new URLContentCache.Entry(etag, lastModified, content));
+        }
+        return content;
     }
 
     /**
-     * Checks to see if a resource has been deleted, moved or modified.
+     * Checks to see if a resource has been deleted, moved or modified. For HTTP
+     * resources, this is a conditional request which doesn't download the content.
      *
      * @param resource Resource  The resource to check for modification
      * @return boolean  True if the resource has been modified, moved, or unreachable
      */
     public boolean isSourceModified(Resource resource)
     {
-        long fileLastModified = getLastModified(resource);
-        // if the file is unreachable or otherwise changed
-        return fileLastModified == 0 ||
-            fileLastModified != resource.getLastModified();
+        String name = resource.getName();
+        String root = getRoot(name);
+        URLContentCache.Entry last = validators.get(name);
+        try
+        {
+            URLConnection conn = openConnection(root + name);
+            long lastModified;
+            if (last != null && (last.etag != null || last.lastModified != 0)
+                && conn instanceof HttpURLConnection)
+            {
+                HttpURLConnection http = (HttpURLConnection)conn;
+                setValidators(http, last);
+                int status = http.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED)
+                {
+                    return false;
+                }
+                lastModified = http.getLastModified();
+                // the new content will be fetched by the reload
+                release(http);
+                if (status != HttpURLConnection.HTTP_OK)
+                {
+                    return true;
+                }
+            }
+            else
+            {
+                lastModified = conn.getLastModified();
+                release(conn);
+                // if the file is unreachable or otherwise changed
+                if (lastModified != 0 && lastModified == resource.getLastModified())
+                {
+                    return false;
+                }
+            }
+            validators.put(name, new URLContentCache.Entry(last == null ? null : last.etag, lastModified, null));
+            return true;
+        }
+        catch (IOException ioe)
+        {
+            if (serveStale)
+            {
+                log.warn("URLResourceLoader: cannot check '{}' at '{}', keeping current content: {}", name, root, ioe.getMessage());
+                return false;
+            }
+            // the file is not reachable at its previous address
+            String msg = "URLResourceLoader: '"+name+"' is no longer reachable at '"+root+"'";
+            log.error(msg, ioe);
+            throw new ResourceNotFoundException(msg, ioe);
+        }
     }
 
     /**
-     * Checks to see when a resource was last modified
+     * Checks to see when a resource was last modified. This is known from the
+     * last fetch or modification check, if any.
      *
      * @param resource Resource the resource to check
      * @return long The time when the resource was last modified or 0 if the file can't be reached
@@ -178,16 +311,20 @@ public long getLastModified(Resource resource)
     {
         // get the previously used root
         String name = resource.getName();
-        String root = (String)templateRoots.get(name);
+        URLContentCache.Entry last = validators.get(name);
+        if (last != null)
+        {
+            return last.lastModified;
+        }
+        String root = getRoot(name);
 
         try
         {
             // get a connection to the URL
-            URL u = new URL(root + name);
-            URLConnection conn = u.openConnection();
-            conn.setConnectTimeout(timeout);
-            conn.setReadTimeout(timeout);
-            return conn.getLastModified();
+            URLConnection conn = openConnection(root + name);
+            long lastModified = conn.getLastModified();
+            release(conn);
+            return lastModified;
         }
         catch (IOException ioe)
         {
@@ -206,4 +343,44 @@ public int getTimeout()
     {
         return timeout;
     }
+
+    private String getRoot(String name)
+    {
+        synchronized (templateRoots)
+        {
+            return (String)templateRoots.get(name);
+        }
+    }
+
+    private URLConnection openConnection(String url)
+        throws IOException
+    {
+        URLConnection conn = new URL(url).openConnection();
+        if (timeout >= 0)
+        {
+            conn.setConnectTimeout(timeout);
+            conn.setReadTimeout(timeout);
+        }
+        return conn;
+    }
+
+    private static void release(URLConnection conn)
+    {
+        if (conn instanceof HttpURLConnection)
+        {
+            ((HttpURLConnection)conn).disconnect();
+        }
+    }
+
+    private static void setValidators(HttpURLConnection conn, URLContentCache.Entry entry)
+    {
+        if (entry.etag != null)
+        {
+            conn.setRequestProperty("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != 0)
+        {
+            conn.setIfModifiedSince(entry.lastModified);
+        }
+    }
 }
@@ -21,8 +21,10 @@
 
 import org.apache.velocity.runtime.RuntimeConstants;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -94,4 +96,17 @@ public void setEncoding(final String encoding)
     {
 	    this.encoding = encoding;
     }
+
+    /**
+     * Gets the names of the stored resources.
+     * @return resource names
+     * @since 2.0
+     */
+    public List<String> getResourceNames()
+    {
+        synchronized (resources)
+        {
+            return new ArrayList<String>(resources.keySet());
+        }
+    }
 }
@@ -22,9 +22,11 @@
 import org.apache.velocity.context.InternalContextAdapter;
 import org.apache.velocity.exception.MethodInvocationException;
 import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RenderListener;
 import org.apache.velocity.runtime.parser.node.ASTMethod.MethodCacheKey;
 import org.apache.velocity.runtime.parser.node.SimpleNode;
 import org.apache.velocity.util.introspection.Info;
+import org.apache.velocity.util.introspection.InlineCache;
 import org.apache.velocity.util.introspection.IntrospectionCacheData;
 import org.apache.velocity.util.introspection.VelMethod;
 
@@ -172,44 +174,91 @@ public static InputStream getResourceAsStream(Class claz, String name)
   public static VelMethod getMethod(String methodName, Object[] params,
                                     Class[] paramClasses, Object o, InternalContextAdapter context,
                                     SimpleNode node, boolean strictRef)
+  {
+    return getMethod(methodName, params, paramClasses, o, context, node, null, strictRef);
+  }
+
+  /**
+   * Lookup a VelMethod object given the method signature that is specified in
+   * the passed in parameters.  This method first searches the given node-level cache,
+   * which is shared by all merges, then the context cache. If not found in
+   * the caches then uses reflections to inspect Object o, for the given method.
+   * @param methodName Name of method
+   * @param params Array of objects that are parameters to the method
+   * @param paramClasses Array of Classes corresponding to the types in params.
+   * @param o Object to introspect for the given method.
+   * @param context Context from which the method cache is acquired
+   * @param node ASTNode, used for error reporting.
+   * @param inlineCache node-level cache, or null to only use the context cache
+   * @param strictRef If no method is found, throw an exception, never return null in this case
+   * @return VelMethod object if the object is found, null if not matching method is found
+   * @since 2.0
+   */
+  public static VelMethod getMethod(String methodName, Object[] params,
+                                    Class[] paramClasses, Object o, InternalContextAdapter context,
+                                    SimpleNode node, InlineCache inlineCache, boolean strictRef)
   {
     VelMethod method = null;
+    boolean cached = true;
     try
     {
       /*
-       * check the cache
-       */
-      MethodCacheKey mck = new MethodCacheKey(methodName, paramClasses);
-      IntrospectionCacheData icd = context.icacheGet(mck);
-
-      /*
-       * like ASTIdentifier, if we have cache information, and the Class of
-       * Object o is the same as that in the cache, we are safe.
+       * check the node cache first, which is shared by all merges
        */
-      if (icd != null && (o != null && icd.contextData == o.getClass()))
+      if (inlineCache != null && o != null)
       {
+        method = (VelMethod) inlineCache.get(o.getClass(), methodName, paramClasses);
+      }
 
+      if (method == null)
+      {
         /*
-         * get the method from the cache
+         * check the context cache
          */
-        method = (VelMethod) icd.thingy;
-      }
-      else
-      {
+        MethodCacheKey mck = new MethodCacheKey(methodName, paramClasses);
+        IntrospectionCacheData icd = context.icacheGet(mck);
+
         /*
-         * otherwise, do the introspection, and then cache it
+         * like ASTIdentifier, if we have cache information, and the Class of
+         * Object o is the same as that in the cache, we are safe.
          */
-        method = node.getRuntimeServices().getUberspect().getMethod(o, methodName, params,
-           new Info(node.getTemplateName(), node.getLine(), node.getColumn()));
+        if (icd != null && (o != null && icd.contextData == o.getClass()))
+        {
 
-        if ((method != null) && (o != null))
+          /*
+           * get the method from the cache
+           */
+          method = (VelMethod) icd.thingy;
+        }
+        else
         {
-          icd = new IntrospectionCacheData();
-          icd.contextData = o.getClass();
-          icd.thingy = method;
+          /*
+           * otherwise, do the introspection, and then cache it
+           */
+          cached = false;
+          method = node.getRuntimeServices().getUberspect().getMethod(o, methodName, params,
+             new Info(node.getTemplateName(), node.getLine(), node.getColumn()));
 
-          context.icachePut(mck, icd);
+          if ((method != null) && (o != null))
+          {
+            icd = new IntrospectionCacheData();
+            icd.contextData = o.getClass();
+            icd.thingy = method;
+
+            context.icachePut(mck, icd);
+          }
         }
+
+        if (inlineCache != null && method != null && method.isCacheable() && o != null)
+        {
+          inlineCache.put(o.getClass(), methodName, paramClasses, method);
+        }
+      }
+
+      RenderListener listener = node.getRuntimeServices().getRenderListener();
+      if (listener != null && listener.sample())
+      {
+        listener.introspectionLookup(cached);
       }
 
       /*
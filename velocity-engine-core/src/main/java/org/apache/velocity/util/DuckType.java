@@ -19,13 +19,15 @@
  * under the License.
  */
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
 
 import static org.apache.velocity.runtime.parser.node.MathUtils.isZero;
 
@@ -48,25 +50,90 @@
         SIZE("size");
 
         final String name;
-        final Map<Class,Object> cache = new HashMap();
 
         Types(String name)
         {
             this.name = name;
         }
+    }
+
+    protected static final Object NO_METHOD = new Object();
 
-        void set(Class c, Object o)
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * Duck-typing accessors of all types, resolved once per class.
+     */
+    private static final ClassValue<Accessors> ACCESSORS = new ClassValue<Accessors>()
+    {
+        protected Accessors computeValue(Class<?> c)
         {
-            cache.put(c, o);
+            return new Accessors(c);
         }
+    };
+
+    /**
+     * Accessors of a class for each duck type, bound to method handles when possible.
+     * Immutable once built.
+     */
+    private static final class Accessors
+    {
+        private final Method[] methods = new Method[Types.values().length];
+        private final MethodHandle[] handles = new MethodHandle[methods.length];
 
-        Object get(Class c)
+        Accessors(Class c)
         {
-            return cache.get(c);
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            for (Types type : Types.values())
+            {
+                Method method = findMethod(c, type);
+                if (method != null)
+                {
+                    methods[type.ordinal()] = method;
+                    try
+                    {
+                        handles[type.ordinal()] = lookup.unreflect(method).asType(ACCESSOR_TYPE);
+                    }
+                    catch (IllegalAccessException iae)
+                    {
+                        // keep using reflection
+                    }
+                }
+            }
         }
-    }
 
-    protected static final Object NO_METHOD = new Object();
+        Object get(Object value, Types type)
+        {
+            int index = type.ordinal();
+            Method method = methods[index];
+            if (method == null)
+            {
+                return NO_METHOD;
+            }
+            MethodHandle handle = handles[index];
+            try
+            {
+                if (handle != null)
+                {
+                    return (Object)handle.invokeExact(value);
+                }
+                return method.invoke(value);
+            }
+            catch (InvocationTargetException ite)
+            {
+                throw new RuntimeException(ite);// no checked exceptions, please
+            }
+            catch (IllegalAccessException iae)
+            {
+                throw new RuntimeException(iae);
+            }
+            catch (Throwable t)
+            {
+                // same wrapping as with reflection
+                throw new RuntimeException(new InvocationTargetException(t));
+            }
+        }
+    }
 
     public static String asString(Object value)
     {
@@ -108,14 +175,15 @@ public static boolean asBoolean(Object value, boolean coerceType)
         {
             return (Boolean) value;
         }
-        Object got = get(value, Types.BOOLEAN);
+        Accessors accessors = ACCESSORS.get(value.getClass());
+        Object got = accessors.get(value, Types.BOOLEAN);
         if (got != NO_METHOD)
         {
             return (Boolean) got;
         }
         if (coerceType)
         {
-            return !asEmpty(value);
+            return !asEmpty(value, accessors);
         }
         return true;
     }
@@ -129,6 +197,11 @@ public static boolean asEmpty(Object value)
             return true;
         }
 
+        return asEmpty(value, ACCESSORS.get(value.getClass()));
+    }
+
+    private static boolean asEmpty(Object value, Accessors accessors)
+    {
         // empty array
         if (value.getClass().isArray())
         {
@@ -136,21 +209,21 @@ public static boolean asEmpty(Object value)
         }
 
         // isEmpty() for object / string
-        Object isEmpty = get(value, Types.EMPTY);
+        Object isEmpty = accessors.get(value, Types.EMPTY);
         if (isEmpty != NO_METHOD)
         {
             return (Boolean)isEmpty;
         }
 
         // isEmpty() for object / other char sequences
-        Object length = get(value, Types.LENGTH);
+        Object length = accessors.get(value, Types.LENGTH);
         if (length != NO_METHOD && length instanceof Number)
         {
             return isZero((Number)length);
         }
 
         // size() object / collection
-        Object size = get(value, Types.SIZE);
+        Object size = accessors.get(value, Types.SIZE);
         if (size != NO_METHOD && size instanceof Number)
         {
             return isZero((Number)size);
@@ -163,7 +236,7 @@ public static boolean asEmpty(Object value)
         }
 
         // null getAsString()
-        Object asString = get(value, Types.STRING);
+        Object asString = accessors.get(value, Types.STRING);
         if (asString == null)
         {
             return true;// duck null
@@ -175,7 +248,7 @@ else if (asString != NO_METHOD)
         }
 
         // null getAsNumber()
-        Object asNumber = get(value, Types.NUMBER);
+        Object asNumber = accessors.get(value, Types.NUMBER);
         if (asNumber == null)
         {
             return true;
@@ -222,37 +295,7 @@ public static Number asNumber(Object value, boolean coerceType)
 
     protected static Object get(Object value, Types type)
     {
-        try
-        {
-            // check cache
-            Class c = value.getClass();
-            Object cached = type.get(c);
-            if (cached == NO_METHOD)
-            {
-                return cached;
-            }
-            if (cached != null)
-            {
-                return ((Method)cached).invoke(value);
-            }
-            // ok, search the class
-            Method method = findMethod(c, type);
-            if (method == null)
-            {
-                type.set(c, NO_METHOD);
-                return NO_METHOD;
-            }
-            type.set(c, method);
-            return method.invoke(value);
-        }
-        catch (RuntimeException re)
-        {
-            throw re;
-        }
-        catch (Exception e)
-        {
-            throw new RuntimeException(e);// no checked exceptions, please
-        }
+        return ACCESSORS.get(value.getClass()).get(value, type);
     }
 
     protected static Method findMethod(Class c, Types type)
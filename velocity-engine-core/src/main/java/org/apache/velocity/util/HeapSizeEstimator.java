@@ -0,0 +1,327 @@
+package org.apache.velocity.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.runtime.directive.VelocimacroProxy;
+import org.apache.velocity.util.introspection.Info;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Estimates the heap retained by a template object graph: AST nodes, directives,
+ * the tokens, strings, arrays and collections they own.</p>
+ *
+ * <p>Only objects owned by the template are followed: references towards shared engine
+ * objects (runtime services, loggers, introspection caches, the template itself,
+ * global macro definitions...) are neither counted nor traversed. Object sizes are
+ * computed from the field layout, assuming a 64 bits JVM with compressed references
+ * for heaps under 32GB, so the result is an estimate rather than an exact measure.</p>
+ *
+ * <p>An estimator instance is not thread-safe; objects reachable from several
+ * roots added to the same instance are counted once.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class HeapSizeEstimator
+{
+    private static final boolean COMPRESSED_REFS = Runtime.getRuntime().maxMemory() < 32L * 1024 * 1024 * 1024;
+
+    private static final int REFERENCE_SIZE = COMPRESSED_REFS ? 4 : 8;
+
+    private static final int OBJECT_HEADER = COMPRESSED_REFS ? 12 : 16;
+
+    private static final int ARRAY_HEADER = COMPRESSED_REFS ? 16 : 24;
+
+    /**
+     * whether strings made of latin-1 characters use one byte per character (JDK 9+)
+     */
+    private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version", "").startsWith("1.");
+
+    /**
+     * rough per-entry overhead of hashed collections (node object or table slot)
+     */
+    private static final int ENTRY_OVERHEAD = 32;
+
+    /**
+     * Shallow size and traversable reference fields of a class.
+     */
+    private static final class Layout
+    {
+        final long size;
+        final Field[] references;
+
+        Layout(long size, Field[] references)
+        {
+            this.size = size;
+            this.references = references;
+        }
+    }
+
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>()
+    {
+        protected Layout computeValue(Class<?> type)
+        {
+            return layout(type);
+        }
+    };
+
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+    private final Deque<Object> pending = new ArrayDeque<>();
+
+    private long size = 0;
+
+    /**
+     * Adds an object graph to the estimate. The root itself is always followed,
+     * even if it wouldn't be considered as owned when reached from another object.
+     * @param root root object, may be null
+     * @return this estimator
+     */
+    public HeapSizeEstimator add(Object root)
+    {
+        if (root != null && visited.add(root))
+        {
+            pending.push(root);
+            drain();
+        }
+        return this;
+    }
+
+    /**
+     * @return estimated size in bytes of all the objects added so far
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    private void drain()
+    {
+        while (!pending.isEmpty())
+        {
+            Object object = pending.pop();
+            Class<?> type = object.getClass();
+            if (object instanceof String)
+            {
+                size += stringSize((String)object);
+            }
+            else if (type.isArray())
+            {
+                size += arraySize(object);
+            }
+            else if (object instanceof Collection)
+            {
+                Collection<?> collection = (Collection<?>)object;
+                size += LAYOUTS.get(type).size + (long)collection.size() * (REFERENCE_SIZE + ENTRY_OVERHEAD / 2);
+                for (Object element : snapshot(collection))
+                {
+                    follow(element);
+                }
+            }
+            else if (object instanceof Map)
+            {
+                Map<?, ?> map = (Map<?, ?>)object;
+                size += LAYOUTS.get(type).size + (long)map.size() * (REFERENCE_SIZE + ENTRY_OVERHEAD);
+                for (Map.Entry<?, ?> entry : snapshot(map.entrySet()))
+                {
+                    follow(entry.getKey());
+                    follow(entry.getValue());
+                }
+            }
+            else
+            {
+                Layout layout = LAYOUTS.get(type);
+                size += layout.size;
+                for (Field field : layout.references)
+                {
+                    try
+                    {
+                        follow(field.get(object));
+                    }
+                    catch (IllegalAccessException iae)
+                    {
+                        // not reachable: fields are made accessible beforehand
+                    }
+                }
+            }
+        }
+    }
+
+    private void follow(Object object)
+    {
+        if (object != null && isOwned(object) && visited.add(object))
+        {
+            pending.push(object);
+        }
+    }
+
+    /**
+     * Copies a possibly concurrently modified collection.
+     */
+    private static <T> List<T> snapshot(Collection<T> collection)
+    {
+        List<T> copy = new ArrayList<>(collection.size());
+        try
+        {
+            copy.addAll(collection);
+        }
+        catch (RuntimeException re)
+        {
+            // concurrent modification of a non thread-safe collection: count what we got
+        }
+        return copy;
+    }
+
+    /**
+     * Whether an object reached from a template object belongs to the template.
+     */
+    private static boolean isOwned(Object object)
+    {
+        if (object instanceof String || object instanceof Number || object instanceof Boolean
+            || object instanceof Character || object instanceof Collection || object instanceof Map
+            || object.getClass().isArray())
+        {
+            return true;
+        }
+        if (object instanceof VelocimacroProxy)
+        {
+            // macro definitions are owned by their defining template or by the engine
+            return false;
+        }
+        String name = object.getClass().getName();
+        return name.startsWith("org.apache.velocity.runtime.parser.node.")
+            || name.startsWith("org.apache.velocity.runtime.directive.")
+            || name.equals("org.apache.velocity.runtime.parser.Token")
+            || object instanceof Info;
+    }
+
+    private static long stringSize(String string)
+    {
+        long chars = string.length();
+        if (COMPACT_STRINGS)
+        {
+            for (int i = 0; i < string.length(); ++i)
+            {
+                if (string.charAt(i) > 0xFF)
+                {
+                    chars *= 2;
+                    break;
+                }
+            }
+        }
+        else
+        {
+            chars *= 2;
+        }
+        return LAYOUTS.get(String.class).size + align(ARRAY_HEADER + chars);
+    }
+
+    private long arraySize(Object array)
+    {
+        Class<?> component = array.getClass().getComponentType();
+        int length = Array.getLength(array);
+        if (component.isPrimitive())
+        {
+            return align(ARRAY_HEADER + (long)length * primitiveSize(component));
+        }
+        Object[] elements = (Object[])array;
+        for (Object element : elements)
+        {
+            follow(element);
+        }
+        return align(ARRAY_HEADER + (long)length * REFERENCE_SIZE);
+    }
+
+    private static Layout layout(Class<?> type)
+    {
+        long size = OBJECT_HEADER;
+        boolean traversable = type.getName().startsWith("org.apache.velocity.");
+        List<Field> references = new ArrayList<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass())
+        {
+            for (Field field : c.getDeclaredFields())
+            {
+                if (Modifier.isStatic(field.getModifiers()))
+                {
+                    continue;
+                }
+                Class<?> fieldType = field.getType();
+                if (fieldType.isPrimitive())
+                {
+                    size += primitiveSize(fieldType);
+                }
+                else
+                {
+                    size += REFERENCE_SIZE;
+                    if (traversable)
+                    {
+                        try
+                        {
+                            field.setAccessible(true);
+                            references.add(field);
+                        }
+                        catch (RuntimeException re)
+                        {
+                            // security manager or module restriction: don't follow this field
+                        }
+                    }
+                }
+            }
+        }
+        return new Layout(align(size), references.toArray(new Field[references.size()]));
+    }
+
+    private static int primitiveSize(Class<?> type)
+    {
+        if (type == long.class || type == double.class)
+        {
+            return 8;
+        }
+        else if (type == int.class || type == float.class)
+        {
+            return 4;
+        }
+        else if (type == short.class || type == char.class)
+        {
+            return 2;
+        }
+        else
+        {
+            return 1;
+        }
+    }
+
+    private static long align(long size)
+    {
+        return (size + 7) & ~7L;
+    }
+}
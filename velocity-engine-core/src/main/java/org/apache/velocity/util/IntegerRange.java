@@ -0,0 +1,175 @@
+package org.apache.velocity.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.exception.VelocityException;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * <p>List of the consecutive integers of a <code>[n..m]</code> range, computed on demand
+ * instead of being stored. Elements are boxed with {@link Integer#valueOf(int)}, so small
+ * values share cached boxes.</p>
+ *
+ * <p>Ranges used to be plain <code>ArrayList</code>s, which templates may have modified.
+ * To stay compatible, the first modification copies the elements into an
+ * <code>ArrayList</code> to which all further operations are delegated.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public class IntegerRange extends AbstractList<Integer> implements RandomAccess
+{
+    private final int first;
+    private final int step;
+    private final int size;
+
+    /**
+     * elements copy, once the range has been modified
+     */
+    private List<Integer> elements = null;
+
+    /**
+     * Builds the range from <code>from</code> to <code>to</code>, both included,
+     * counting down if <code>from</code> is greater than <code>to</code>.
+     * @param from first element
+     * @param to last element
+     * @throws VelocityException if the range has more than <code>Integer.MAX_VALUE</code> elements
+     */
+    public IntegerRange(int from, int to)
+    {
+        long span = Math.abs((long)to - (long)from) + 1;
+        if (span > Integer.MAX_VALUE)
+        {
+            throw new VelocityException("Range [" + from + ".." + to + "] has too many elements: " + span);
+        }
+        first = from;
+        step = from > to ? -1 : 1;
+        size = (int)span;
+    }
+
+    /**
+     * @return whether elements are still computed on demand, that is
+     * whether the range has never been modified
+     */
+    public boolean isLazy()
+    {
+        return elements == null;
+    }
+
+    /**
+     * @return first element of the range
+     */
+    public int getFirst()
+    {
+        return first;
+    }
+
+    /**
+     * @return difference between an element and the previous one, 1 or -1
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    public Integer get(int index)
+    {
+        if (elements != null)
+        {
+            return elements.get(index);
+        }
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return first + index * step;
+    }
+
+    public int size()
+    {
+        return elements == null ? size : elements.size();
+    }
+
+    public int indexOf(Object o)
+    {
+        if (elements != null)
+        {
+            return elements.indexOf(o);
+        }
+        if (!(o instanceof Integer))
+        {
+            return -1;
+        }
+        long index = ((long)(Integer)o - first) * step;
+        return index >= 0 && index < size ? (int)index : -1;
+    }
+
+    public int lastIndexOf(Object o)
+    {
+        return elements == null ? indexOf(o) : elements.lastIndexOf(o);
+    }
+
+    public boolean contains(Object o)
+    {
+        return indexOf(o) >= 0;
+    }
+
+    public Iterator<Integer> iterator()
+    {
+        return elements == null ? super.iterator() : elements.iterator();
+    }
+
+    public Integer set(int index, Integer element)
+    {
+        return materialize().set(index, element);
+    }
+
+    public void add(int index, Integer element)
+    {
+        materialize().add(index, element);
+        modCount++;
+    }
+
+    public Integer remove(int index)
+    {
+        Integer removed = materialize().remove(index);
+        modCount++;
+        return removed;
+    }
+
+    private List<Integer> materialize()
+    {
+        if (elements == null)
+        {
+            List<Integer> copy = new ArrayList<>(size);
+            for (int i = 0, value = first; i < size; i++, value += step)
+            {
+                copy.add(value);
+            }
+            elements = copy;
+        }
+        return elements;
+    }
+}
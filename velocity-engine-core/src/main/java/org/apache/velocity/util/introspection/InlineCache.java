@@ -0,0 +1,151 @@
+package org.apache.velocity.util.introspection;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * <p>Thread-safe introspection cache meant to be held by a single AST node, and thus
+ * shared by all the merges of its template.</p>
+ *
+ * <p>Entries are keyed by the class of the receiver object, plus an optional method name
+ * and argument classes. A cache holding one entry is monomorphic; up to {@link #MAX_ENTRIES}
+ * receiver shapes are kept (polymorphic cache), after which the oldest entry gets evicted.</p>
+ *
+ * <p>Lookups only involve a volatile read of an immutable snapshot. All caches are
+ * invalidated whenever an {@link IntrospectorCache} is cleared, for instance after a
+ * classloader change.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public final class InlineCache
+{
+    /**
+     * Maximum number of cached receiver shapes
+     */
+    public static final int MAX_ENTRIES = 4;
+
+    private static final Snapshot EMPTY = new Snapshot(-1, new Entry[0]);
+
+    private volatile Snapshot snapshot = EMPTY;
+
+    /**
+     * Lookup a cached target.
+     * @param receiver class of the receiver object
+     * @param name method name, or null
+     * @param args argument classes, or null
+     * @return cached target, or null if not found
+     */
+    public Object get(Class receiver, String name, Class[] args)
+    {
+        Snapshot current = snapshot;
+        if (current.generation != IntrospectorCache.getGeneration())
+        {
+            return null;
+        }
+        for (Entry entry : current.entries)
+        {
+            if (entry.matches(receiver, name, args))
+            {
+                return entry.target;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cache a target.
+     * @param receiver class of the receiver object
+     * @param name method name, or null
+     * @param args argument classes, or null
+     * @param target introspection result
+     */
+    public synchronized void put(Class receiver, String name, Class[] args, Object target)
+    {
+        Snapshot current = snapshot;
+        int generation = IntrospectorCache.getGeneration();
+        Entry[] entries = current.generation == generation ? current.entries : EMPTY.entries;
+        for (Entry entry : entries)
+        {
+            if (entry.matches(receiver, name, args))
+            {
+                return;
+            }
+        }
+        int kept = Math.min(entries.length, MAX_ENTRIES - 1);
+        Entry[] updated = new Entry[kept + 1];
+        System.arraycopy(entries, entries.length - kept, updated, 0, kept);
+        updated[kept] = new Entry(receiver, name, args == null ? null : args.clone(), target);
+        snapshot = new Snapshot(generation, updated);
+    }
+
+    /**
+     * @return number of valid cached entries
+     */
+    public int size()
+    {
+        Snapshot current = snapshot;
+        return current.generation == IntrospectorCache.getGeneration() ? current.entries.length : 0;
+    }
+
+    /**
+     * Drops all cached entries.
+     */
+    public synchronized void clear()
+    {
+        snapshot = EMPTY;
+    }
+
+    private static final class Snapshot
+    {
+        final int generation;
+        final Entry[] entries;
+
+        Snapshot(int generation, Entry[] entries)
+        {
+            this.generation = generation;
+            this.entries = entries;
+        }
+    }
+
+    private static final class Entry
+    {
+        final Class receiver;
+        final String name;
+        final Class[] args;
+        final Object target;
+
+        Entry(Class receiver, String name, Class[] args, Object target)
+        {
+            this.receiver = receiver;
+            this.name = name;
+            this.args = args;
+            this.target = target;
+        }
+
+        boolean matches(Class receiver, String name, Class[] args)
+        {
+            return this.receiver == receiver
+                && (this.name == name || this.name != null && this.name.equals(name))
+                && Arrays.equals(this.args, args);
+        }
+    }
+}
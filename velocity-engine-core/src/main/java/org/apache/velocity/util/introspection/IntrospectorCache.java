@@ -27,6 +27,7 @@
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is the internal introspector cache implementation.
@@ -44,6 +45,12 @@
     public final static String CACHEDUMP_MSG =
             "IntrospectorCache detected classloader change. Dumping cache.";
 
+    /**
+     * Incremented each time any introspector cache is cleared, so that
+     * node-level {@link InlineCache}s know they have to be invalidated.
+     */
+    private static final AtomicInteger generation = new AtomicInteger();
+
     /** Class logger */
     private final Logger log;
 
@@ -89,10 +96,22 @@ public void clear()
             classMapCache.clear();
             classFieldMapCache.clear();
             classNameCache.clear();
+            generation.incrementAndGet();
             log.debug(CACHEDUMP_MSG);
         }
     }
 
+    /**
+     * Get the current introspection generation, which changes each time
+     * an introspector cache is cleared.
+     * @return current generation
+     * @since 2.0
+     */
+    public static int getGeneration()
+    {
+        return generation.get();
+    }
+
     /**
      * Lookup a given Class object in the cache. If it does not exist,
      * check whether this is due to a class change and purge the caches
@@ -0,0 +1,293 @@
+package org.apache.velocity.util.introspection;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * <p>Invokes a resolved method through a {@link MethodHandle} bound once, instead of going
+ * through {@link Method#invoke(Object, Object...)} for each call.</p>
+ *
+ * <p>Argument conversions (when {@link Converter}s are needed) and argument checks are composed
+ * into the handle with method handle combinators. The invocation contract of <code>Method.invoke</code>
+ * is kept: an {@link IllegalArgumentException} is thrown for mismatching arguments (allowing
+ * the same widening primitive conversions), and any exception thrown by the target method is
+ * wrapped in an {@link InvocationTargetException}.</p>
+ *
+ * @version $Id$
+ * @since 2.0
+ */
+public final class MethodHandleInvoker
+{
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private static final MethodHandle CHECK_ARGUMENT;
+
+    private static final MethodHandle CONVERT_ARGUMENT;
+
+    static
+    {
+        try
+        {
+            CHECK_ARGUMENT = LOOKUP.findStatic(MethodHandleInvoker.class, "checkArgument",
+                MethodType.methodType(Object.class, Class.class, Object.class));
+            CONVERT_ARGUMENT = LOOKUP.findStatic(MethodHandleInvoker.class, "convertArgument",
+                MethodType.methodType(Object.class, Converter.class, Object.class));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * handle of type (Object, Object[])Object
+     */
+    private final MethodHandle handle;
+
+    private final int argCount;
+
+    private final boolean isStatic;
+
+    private MethodHandleInvoker(MethodHandle handle, int argCount, boolean isStatic)
+    {
+        this.handle = handle;
+        this.argCount = argCount;
+        this.isStatic = isStatic;
+    }
+
+    /**
+     * Binds the given method.
+     * @param method method to invoke
+     * @param converters argument converters, or null
+     * @return method invoker, or null if the method cannot be bound (for instance
+     *         because it is not accessible)
+     */
+    public static MethodHandleInvoker create(Method method, Converter[] converters)
+    {
+        try
+        {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            Class[] formal = method.getParameterTypes();
+            boolean isStatic = Modifier.isStatic(method.getModifiers());
+            if (isStatic)
+            {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            else
+            {
+                handle = MethodHandles.filterArguments(handle, 0, checker(method.getDeclaringClass()));
+            }
+
+            MethodHandle[] filters = new MethodHandle[formal.length];
+            for (int i = 0; i < formal.length; ++i)
+            {
+                MethodHandle filter = checker(formal[i]);
+                if (converters != null && i < converters.length && converters[i] != null)
+                {
+                    filter = MethodHandles.filterReturnValue(
+                        CONVERT_ARGUMENT.bindTo(converters[i]), filter);
+                }
+                filters[i] = filter;
+            }
+            handle = MethodHandles.filterArguments(handle, 1, filters);
+            handle = handle.asType(MethodType.genericMethodType(formal.length + 1));
+            handle = handle.asSpreader(Object[].class, formal.length);
+            return new MethodHandleInvoker(handle, formal.length, isStatic);
+        }
+        catch (IllegalAccessException e)
+        {
+            return null;
+        }
+        catch (RuntimeException e)
+        {
+            // unsupported signature, let the caller use reflection
+            return null;
+        }
+    }
+
+    /**
+     * Invokes the method.
+     * @param o receiver object, ignored for static methods
+     * @param actual arguments, may be null if the method takes no argument
+     * @return method result, null for void methods
+     * @throws IllegalArgumentException if arguments do not match
+     * @throws InvocationTargetException if the method threw an exception
+     */
+    public Object invoke(Object o, Object[] actual)
+        throws InvocationTargetException
+    {
+        if (actual == null)
+        {
+            actual = EMPTY_ARGS;
+        }
+        if (actual.length != argCount)
+        {
+            throw new IllegalArgumentException("wrong number of arguments");
+        }
+        if (o == null && !isStatic)
+        {
+            throw new NullPointerException();
+        }
+        try
+        {
+            return (Object)handle.invokeExact(o, actual);
+        }
+        catch (AdaptationException e)
+        {
+            throw e.getCause();
+        }
+        catch (Throwable t)
+        {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    private static MethodHandle checker(Class type)
+    {
+        return CHECK_ARGUMENT.bindTo(type).asType(MethodType.methodType(type, Object.class));
+    }
+
+    /**
+     * Checks that a value can be passed for the given formal type, applying
+     * primitive widening conversions if needed.
+     */
+    private static Object checkArgument(Class type, Object value)
+    {
+        if (value == null)
+        {
+            if (type.isPrimitive())
+            {
+                throw new AdaptationException(new IllegalArgumentException(
+                    "null value for primitive argument of type " + type.getName()));
+            }
+            return null;
+        }
+        if (!type.isPrimitive())
+        {
+            if (!type.isInstance(value))
+            {
+                throw new AdaptationException(new IllegalArgumentException(
+                    "argument type mismatch: expecting " + type.getName() + ", got " + value.getClass().getName()));
+            }
+            return value;
+        }
+        Object widened = widen(type, value);
+        if (widened == null)
+        {
+            throw new AdaptationException(new IllegalArgumentException(
+                "argument type mismatch: expecting " + type.getName() + ", got " + value.getClass().getName()));
+        }
+        return widened;
+    }
+
+    private static Object convertArgument(Converter converter, Object value)
+    {
+        try
+        {
+            return converter.convert(value);
+        }
+        catch (RuntimeException e)
+        {
+            throw new AdaptationException(e);
+        }
+    }
+
+    /**
+     * Boxes a value to the wrapper of the given primitive type, following
+     * the widening primitive conversions allowed by Method.invoke().
+     * @return widened value, or null if not convertible
+     */
+    private static Object widen(Class type, Object value)
+    {
+        Class valueClass = value.getClass();
+        if (type == Boolean.TYPE)
+        {
+            return valueClass == Boolean.class ? value : null;
+        }
+        if (type == Character.TYPE)
+        {
+            return valueClass == Character.class ? value : null;
+        }
+        long integral;
+        boolean isIntegral;
+        int rank;
+        if (valueClass == Byte.class) { rank = 1; integral = (Byte)value; isIntegral = true; }
+        else if (valueClass == Short.class) { rank = 2; integral = (Short)value; isIntegral = true; }
+        else if (valueClass == Character.class) { rank = 2; integral = (Character)value; isIntegral = true; }
+        else if (valueClass == Integer.class) { rank = 3; integral = (Integer)value; isIntegral = true; }
+        else if (valueClass == Long.class) { rank = 4; integral = (Long)value; isIntegral = true; }
+        else if (valueClass == Float.class) { rank = 5; integral = 0; isIntegral = false; }
+        else if (valueClass == Double.class) { rank = 6; integral = 0; isIntegral = false; }
+        else
+        {
+            return null;
+        }
+        if (type == Byte.TYPE)
+        {
+            return valueClass == Byte.class ? value : null;
+        }
+        if (type == Short.TYPE)
+        {
+            return valueClass == Short.class ? value : valueClass == Byte.class ? (Object)(short)integral : null;
+        }
+        if (type == Integer.TYPE)
+        {
+            return rank <= 3 ? (Object)(int)integral : null;
+        }
+        if (type == Long.TYPE)
+        {
+            return rank <= 4 ? (Object)integral : null;
+        }
+        if (type == Float.TYPE)
+        {
+            return rank <= 4 ? (Object)(float)integral : rank == 5 ? value : null;
+        }
+        if (type == Double.TYPE)
+        {
+            return isIntegral ? (Object)(double)integral : ((Number)value).doubleValue();
+        }
+        return null;
+    }
+
+    /**
+     * Carries an argument adaptation failure through the method handle chain,
+     * to distinguish it from an exception thrown by the target method.
+     */
+    private static class AdaptationException extends RuntimeException
+    {
+        AdaptationException(RuntimeException cause)
+        {
+            super(cause);
+        }
+
+        public RuntimeException getCause()
+        {
+            return (RuntimeException)super.getCause();
+        }
+    }
+}
@@ -76,6 +76,11 @@ public class UberspectImpl implements Uberspect, RuntimeServicesAware
      */
     protected RuntimeServices rsvc;
 
+    /**
+     * whether to bind introspected methods into method handles
+     */
+    protected boolean methodHandles;
+
     /**
      *  init - generates the Introspector. As the setup code
      *  makes sure that the log gets set before this is called,
@@ -99,6 +104,7 @@ public void setRuntimeServices(RuntimeServices rs)
     {
         rsvc = rs;
         log = rsvc.getLog("rendering");
+        methodHandles = rsvc.getBoolean(RuntimeConstants.INTROSPECTOR_METHOD_HANDLES, false);
 
         String conversionHandlerClass = rs.getString(RuntimeConstants.CONVERSION_HANDLER_CLASS);
         if (conversionHandlerClass == null || conversionHandlerClass.equals("none"))
@@ -369,7 +375,15 @@ public VelPropertyGet getPropertyGet(Object obj, String identifier, Info i)
                     identifier, true);
         }
 
-        return (executor.isAlive()) ? new VelGetterImpl(executor) : null;
+        if (!executor.isAlive())
+        {
+            return null;
+        }
+        if (methodHandles)
+        {
+            executor.bindMethodHandle();
+        }
+        return new VelGetterImpl(executor);
     }
 
     /**
@@ -421,9 +435,15 @@ public VelPropertySet getPropertySet(Object obj, String identifier,
     public class VelMethodImpl implements VelMethod
     {
         final Method method;
-        Boolean isVarArg;
+        /**
+         * varargs information, computed upfront since instances are shared between threads
+         */
+        final boolean isVarArg;
+        final Class varArgType;
+        final int varArgIndex;
         boolean wrapArray;
         Converter converters[];
+        MethodHandleInvoker invoker;
 
         /**
          * @param m
@@ -449,11 +469,34 @@ public VelMethodImpl(Method method, boolean wrapArray, Converter[] converters)
             this.method = method;
             this.wrapArray = wrapArray;
             this.converters = converters;
+            Class[] formal = method.getParameterTypes();
+            // if the last arg is an array, then
+            // we consider this a varargs method
+            if (formal.length > 0 && formal[formal.length - 1].isArray())
+            {
+                isVarArg = true;
+                varArgType = formal[formal.length - 1].getComponentType();
+                varArgIndex = formal.length - 1;
+            }
+            else
+            {
+                isVarArg = false;
+                varArgType = null;
+                varArgIndex = 0;
+            }
+            // subclasses may override doInvoke(), so only bind handles for plain instances
+            if (methodHandles && getClass() == VelMethodImpl.class)
+            {
+                invoker = MethodHandleInvoker.create(method, converters);
+            }
         }
 
         private VelMethodImpl()
         {
             method = null;
+            isVarArg = false;
+            varArgType = null;
+            varArgIndex = 0;
         }
 
         /**
@@ -470,15 +513,18 @@ public Object invoke(Object o, Object[] actual)
 
             if (isVarArg())
             {
-                Class[] formal = method.getParameterTypes();
-                int index = formal.length - 1;
-                if (actual.length >= index)
+                if (actual.length >= varArgIndex)
                 {
-                    Class type = formal[index].getComponentType();
-                    actual = handleVarArg(type, index, actual);
+                    actual = handleVarArg(varArgType, varArgIndex, actual);
                 }
             }
 
+            if (invoker != null)
+            {
+                // converters are part of the bound handle
+                return invoker.invoke(o, actual);
+            }
+
             if (converters != null)
             {
                 for (int i = 0; i < actual.length; ++i)
@@ -512,21 +558,6 @@ protected Object doInvoke(Object o, Object[] actual)
          */
         public boolean isVarArg()
         {
-            if (isVarArg == null)
-            {
-                Class[] formal = method.getParameterTypes();
-                if (formal == null || formal.length == 0)
-                {
-                    this.isVarArg = Boolean.FALSE;
-                }
-                else
-                {
-                    Class last = formal[formal.length - 1];
-                    // if the last arg is an array, then
-                    // we consider this a varargs method
-                    this.isVarArg = last.isArray();
-                }
-            }
             return isVarArg;
         }
 
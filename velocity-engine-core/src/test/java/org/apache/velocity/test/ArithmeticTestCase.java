@@ -226,6 +226,27 @@ private void negateHelper(Number n, double expectedResult, Class expectedResultT
  *
  */
 
+    public void testIntAndLongFastPaths()
+    {
+        addHelper (Integer.MIN_VALUE, -1, (double)Integer.MIN_VALUE-1, Long.class);
+        addHelper (10, 20L, 30, Long.class);
+        subtractHelper (Integer.MIN_VALUE, 1, (double)Integer.MIN_VALUE-1, Long.class);
+        subtractHelper (Long.MIN_VALUE, 1, (double)Long.MIN_VALUE-1, BigInteger.class);
+        multiplyHelper (Integer.MAX_VALUE, Integer.MAX_VALUE, (double)Integer.MAX_VALUE*Integer.MAX_VALUE, Long.class);
+        multiplyHelper (Long.MIN_VALUE, -1, -(double)Long.MIN_VALUE, BigInteger.class);
+        multiplyHelper (Long.MIN_VALUE, 1, (double)Long.MIN_VALUE, Long.class);
+        divideHelper (Integer.MIN_VALUE, -1, -(double)Integer.MIN_VALUE, Long.class);
+        divideHelper (Long.MIN_VALUE, -1L, -(double)Long.MIN_VALUE, BigInteger.class);
+        divideHelper (-7, 2, -3, Integer.class);
+        moduloHelper (-7, 2L, -1, Long.class);
+
+        assertEquals (BigInteger.valueOf(Long.MIN_VALUE).negate(), MathUtils.multiply(Long.MIN_VALUE, -1L));
+        assertSame (MathUtils.add(500, 500), MathUtils.add(999, 1));
+        assertEquals (-1, MathUtils.compare(Integer.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals (0, MathUtils.compare(5, 5L));
+        assertTrue (MathUtils.isZero (0L));
+    }
+
     /**
      * Test additional functions
      */
@@ -303,6 +303,78 @@ public void testEscapeReferenceMatch() throws Exception
 
     }
 
+    /**
+     * test that escaping straight into the writer gives the same output
+     * @throws Exception
+     */
+    public void testEscapeStreaming() throws Exception
+    {
+        VelocityEngine ve = new VelocityEngine();
+        ve.setProperty(RuntimeConstants.EVENTHANDLER_REFERENCEINSERTION, "org.apache.velocity.app.event.implement.EscapeHtmlReference,org.apache.velocity.app.event.implement.EscapeSqlReference");
+        ve.setProperty("eventhandler.escape.sql.match", "\\$sql.*");
+        ve.setProperty(RuntimeConstants.EVENTHANDLER_ESCAPE_STREAMING, "true");
+        ve.init();
+
+        Context context = newEscapeContext();
+        context.put("sql", "O'Neil & <i>co</i>");
+
+        // twice, the second time with remembered matches
+        for (int i = 0; i < 2; i++)
+        {
+            Writer writer = new StringWriter();
+            ve.evaluate(context, writer, "test", "$test1 $sql $test1.substring(0,7) $!nothing");
+            assertEquals("Jimmy's &lt;b&gt;pizza&lt;/b&gt; O''Neil &amp; &lt;i&gt;co&lt;/i&gt; Jimmy's ", writer.toString());
+        }
+
+        log("Escaped straight into the writer");
+    }
+
+    /**
+     * test that null escaped values fall back to the null reference handling in both modes
+     * @throws Exception
+     */
+    public void testEscapeStreamingNull() throws Exception
+    {
+        for (String streaming : new String[] { "false", "true" })
+        {
+            VelocityEngine ve = new VelocityEngine();
+            ve.setProperty(RuntimeConstants.EVENTHANDLER_REFERENCEINSERTION, "org.apache.velocity.app.event.implement.EscapeHtmlReference," + NullingEscape.class.getName());
+            ve.setProperty("eventhandler.escape.nulling.match", "\\$hidden.*");
+            ve.setProperty(RuntimeConstants.EVENTHANDLER_ESCAPE_STREAMING, streaming);
+            ve.init();
+
+            Context context = newEscapeContext();
+            context.put("hidden", "secret");
+            context.put("nothing", new Object()
+            {
+                public String toString()
+                {
+                    return null;
+                }
+            });
+
+            Writer writer = new StringWriter();
+            ve.evaluate(context, writer, "test", "$test1 [$nothing] [$hidden] [$!hidden]");
+            assertEquals(streaming, "Jimmy's &lt;b&gt;pizza&lt;/b&gt; [$nothing] [$hidden] []", writer.toString());
+        }
+    }
+
+    /**
+     * escaping handler which hides all values
+     */
+    public static class NullingEscape extends EscapeReference
+    {
+        protected String escape(Object text)
+        {
+            return null;
+        }
+
+        protected String getMatchAttribute()
+        {
+            return "eventhandler.escape.nulling.match";
+        }
+    }
+
     private Context newEscapeContext()
     {
         Context context = new VelocityContext();
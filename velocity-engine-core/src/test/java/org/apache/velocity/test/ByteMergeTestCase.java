@@ -0,0 +1,120 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.io.ByteVelocityWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Checks that merging towards an output stream produces the same output as merging
+ * towards a writer, for several charsets.
+ */
+public class ByteMergeTestCase extends BaseTestCase
+{
+    private static final String TEMPLATE =
+        "<p>café € $name</p>\n#foreach($i in $list)<li>$i à</li>#end\n## comment\n#[[ $raw ]]# 😀 done";
+
+    public ByteMergeTestCase(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        context.put("name", "wörld");
+        context.put("list", Arrays.asList("a", "ß", "c"));
+        addTemplate("bytes", TEMPLATE);
+    }
+
+    protected void assertSameOutput(String charsetName)
+    {
+        Charset charset = Charset.forName(charsetName);
+        Template template = engine.getTemplate("bytes");
+
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        byte[] expected = writer.toString().getBytes(charset);
+
+        // merge twice to use the encoded text cached in nodes
+        for (int i = 0; i < 2; ++i)
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            template.merge(context, out, charset);
+            assertTrue(charsetName, Arrays.equals(expected, out.toByteArray()));
+        }
+    }
+
+    public void testUTF8()
+    {
+        assertSameOutput("UTF-8");
+    }
+
+    public void testISO88591()
+    {
+        assertSameOutput("ISO-8859-1");
+    }
+
+    public void testUTF16()
+    {
+        assertSameOutput("UTF-16");
+    }
+
+    public void testStatefulCharset()
+    {
+        Charset charset = Charset.forName("ISO-2022-JP");
+        assertFalse(new ByteVelocityWriter(new ByteArrayOutputStream(), charset).acceptsEncodedBytes());
+        context.put("name", "\u3042\u3044");
+        assertSameOutput("ISO-2022-JP");
+    }
+
+    public void testSmallBuffers()
+        throws Exception
+    {
+        Charset utf8 = Charset.forName("UTF-8");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteVelocityWriter writer = new ByteVelocityWriter(out, utf8, 3);
+        assertTrue(writer.acceptsEncodedBytes());
+        writer.write("été ");
+        writer.writeBytes("<b>".getBytes(utf8));
+        writer.write("😀");
+        writer.write('!');
+        writer.finish();
+        assertEquals("été <b>😀!", new String(out.toByteArray(), utf8));
+    }
+
+    public void testDanglingSurrogate()
+        throws Exception
+    {
+        Charset utf8 = Charset.forName("UTF-8");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteVelocityWriter writer = new ByteVelocityWriter(out, utf8);
+        writer.write("a\ud83d");
+        writer.writeBytes("<b>".getBytes(utf8));
+        writer.write('c');
+        writer.finish();
+        assertEquals("a?<b>c", new String(out.toByteArray(), utf8));
+    }
+}
@@ -0,0 +1,110 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+/**
+ * Tests the compaction of initialized templates and the retained size accounting.
+ */
+public class CompactTemplateTestCase extends BaseTestCase
+{
+    private static final String TEMPLATE =
+        "#macro(greet $who)Hello $who!#end"
+        + "#foreach($i in [1..4])#if($i > 1 && $i != 3)\\\\#if(true)$i#end#end#end"
+        + " #greet('world') #set($n = 2 * 3)$n $!missing #if($n == 6)six#else other#end";
+
+    private boolean compact = true;
+
+    public CompactTemplateTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.RUNTIME_COMPACT_TEMPLATES, compact);
+        engine.setProperty("string.resource.loader.cache", true);
+    }
+
+    private Template load(boolean compact)
+    {
+        this.compact = compact;
+        engine = createEngine();
+        addTemplate("compact", TEMPLATE);
+        return engine.getTemplate("compact");
+    }
+
+    private String render(Template template)
+    {
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer);
+        return writer.toString();
+    }
+
+    private boolean hasTokens(Node node)
+    {
+        if (node instanceof SimpleNode && ((SimpleNode)node).getFirstToken() != null)
+        {
+            return true;
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); ++i)
+        {
+            if (hasTokens(node.jjtGetChild(i)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void testCompaction()
+    {
+        Template plain = load(false);
+        Template compacted = load(true);
+        assertTrue(hasTokens((Node)plain.getData()));
+        assertFalse(hasTokens((Node)compacted.getData()));
+
+        // twice, since some nodes cache values upon first rendering
+        String expected = render(plain);
+        assertEquals(expected, render(compacted));
+        assertEquals(expected, render(compacted));
+    }
+
+    public void testRetainedSize()
+    {
+        Template plain = load(false);
+        long plainSize = plain.getRetainedSize();
+        Template compacted = load(true);
+        long compactSize = compacted.getRetainedSize();
+        assertTrue(compactSize > 0);
+        assertTrue("compact size " + compactSize + " not below " + plainSize, compactSize < plainSize);
+
+        Map<String, Long> sizes = engine.getTemplateSizes();
+        assertEquals(Long.valueOf(compactSize), sizes.get("compact"));
+    }
+}
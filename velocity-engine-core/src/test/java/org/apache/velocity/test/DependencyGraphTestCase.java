@@ -0,0 +1,168 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+import org.apache.velocity.runtime.resource.util.StringResourceRepositoryImpl;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests the dependency graph between templates and the change notifications
+ * it propagates, with per-request modification checks disabled.
+ */
+public class DependencyGraphTestCase extends BaseTestCase
+{
+    private static final String REPOSITORY = "dependencies";
+
+    private StringResourceRepository repository;
+
+    private NotifyingLoader loader;
+
+    public DependencyGraphTestCase(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        repository = new StringResourceRepositoryImpl();
+        repository.putStringResource("lib.vm", "#macro(hello)hello#end");
+        repository.putStringResource("page", "#parse('layout')");
+        repository.putStringResource("layout", "[#parse('header')|#include('footer.txt')|#hello()]");
+        repository.putStringResource("header", "head");
+        repository.putStringResource("footer.txt", "foot");
+        repository.putStringResource("unused", "#if(false)#parse('header')#end");
+        repository.putStringResource("other", "other");
+
+        loader = new NotifyingLoader();
+        engine = createTrackingEngine(loader);
+    }
+
+    private VelocityEngine createTrackingEngine(StringResourceLoader loader)
+    {
+        VelocityEngine engine = new VelocityEngine();
+        engine.setProperty(RuntimeConstants.RUNTIME_LOG_INSTANCE, log);
+        engine.setProperty(RuntimeConstants.RESOURCE_LOADER, "string");
+        engine.setProperty("string.resource.loader.instance", loader);
+        engine.setProperty("string.resource.loader.repository.name", REPOSITORY);
+        engine.setProperty("string.resource.loader.repository.static", false);
+        engine.setProperty("string.resource.loader.cache", true);
+        engine.setProperty("string.resource.loader.modificationCheckInterval", 0);
+        engine.setProperty(RuntimeConstants.RESOURCE_MANAGER_DEPENDENCY_TRACKING, true);
+        engine.setProperty(RuntimeConstants.VM_LIBRARY, "lib.vm");
+        engine.setProperty(RuntimeConstants.VM_LIBRARY_AUTORELOAD, true);
+        engine.setApplicationAttribute(REPOSITORY, repository);
+        engine.init();
+        return engine;
+    }
+
+    private String render(String name)
+    {
+        StringWriter writer = new StringWriter();
+        engine.getTemplate(name).merge(new VelocityContext(), writer);
+        return writer.toString();
+    }
+
+    private static Set<String> set(String... names)
+    {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    public void testDependents()
+    {
+        assertEquals("[head|foot|hello]", render("page"));
+        engine.getTemplate("unused");
+
+        // constant #parse arguments are recorded at init, even if never rendered
+        assertEquals(set("layout", "page", "unused"), new HashSet<>(engine.getTemplateDependents("header")));
+        assertEquals(set("layout", "page"), new HashSet<>(engine.getTemplateDependents("footer.txt")));
+        assertEquals(Collections.<String>emptySet(), engine.getTemplateDependents("page"));
+    }
+
+    public void testInvalidation()
+        throws Exception
+    {
+        assertEquals("[head|foot|hello]", render("page"));
+        Template layout = engine.getTemplate("layout");
+        Template other = engine.getTemplate("other");
+        assertFalse(layout.requiresChecking());
+
+        Thread.sleep(10);
+        repository.putStringResource("header", "HEAD");
+
+        // no per-request check: the change is only seen once notified
+        assertEquals("[head|foot|hello]", render("page"));
+        loader.change("header");
+        assertEquals("[HEAD|foot|hello]", render("page"));
+
+        // dependents are parsed again, unrelated templates are kept
+        assertNotSame(layout, engine.getTemplate("layout"));
+        assertSame(other, engine.getTemplate("other"));
+    }
+
+    public void testMacroLibraryReload()
+        throws Exception
+    {
+        assertEquals("[head|foot|hello]", render("layout"));
+
+        Thread.sleep(10);
+        repository.putStringResource("lib.vm", "#macro(hello)bonjour#end");
+        assertEquals("[head|foot|hello]", render("layout"));
+
+        loader.change("lib.vm");
+        assertEquals("[head|foot|bonjour]", render("layout"));
+    }
+
+    public void testUnnotifiedLibraryReload()
+        throws Exception
+    {
+        // the library loader doesn't notify changes: it is still checked on macro calls
+        engine = createTrackingEngine(new StringResourceLoader());
+        assertEquals("[head|foot|hello]", render("layout"));
+
+        Thread.sleep(10);
+        repository.putStringResource("lib.vm", "#macro(hello)bonjour#end");
+        assertEquals("[head|foot|bonjour]", render("layout"));
+    }
+
+    public static class NotifyingLoader extends StringResourceLoader
+    {
+        public boolean isNotifyingChanges()
+        {
+            return true;
+        }
+
+        public void change(String name)
+        {
+            fireResourceChanged(name);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.EvaluateCache;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.parser.node.ASTprocess;
+import org.apache.velocity.runtime.parser.node.ParserTreeConstants;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Tests the cache of initialized trees for evaluate() and #evaluate.
+ */
+public class EvaluateCacheTestCase extends BaseTestCase
+{
+    public EvaluateCacheTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.EVALUATE_CACHE_SIZE, 3);
+    }
+
+    public void testEvaluate()
+    {
+        context.put("name", "world");
+        assertEvalEquals("hello world", "hello $name");
+        context.put("name", "you");
+        assertEvalEquals("hello you", "hello $name");
+
+        EvaluateCache cache = engine.getEvaluateCache();
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0.5, cache.getHitRate(), 0.0001);
+
+        // readers are never cached
+        StringWriter writer = new StringWriter();
+        engine.evaluate(context, writer, "reader", new StringReader("hello $name"));
+        assertEquals("hello you", writer.toString());
+        assertEquals(1, cache.size());
+    }
+
+    public void testBound()
+    {
+        for (int i = 0; i < 5; ++i)
+        {
+            assertEvalEquals(String.valueOf(i), "#set($i = " + i + ")$i");
+        }
+        EvaluateCache cache = engine.getEvaluateCache();
+        assertEquals(3, cache.size());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    public void testLeastRecentlyUsed()
+        throws Exception
+    {
+        EvaluateCache cache = new EvaluateCache(2);
+        SimpleNode first = new ASTprocess(ParserTreeConstants.JJTPROCESS);
+        SimpleNode second = new ASTprocess(ParserTreeConstants.JJTPROCESS);
+        cache.put("tag", null, "first", first);
+        Thread.sleep(1);
+        cache.put("tag", null, "second", second);
+        Thread.sleep(1);
+        assertSame(first, cache.get("tag", null, "first"));
+        Thread.sleep(1);
+        cache.put("tag", null, "third", new ASTprocess(ParserTreeConstants.JJTPROCESS));
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get("tag", null, "first"));
+        assertNull(cache.get("tag", null, "second"));
+    }
+
+    public void testReloadedTemplate()
+    {
+        EvaluateCache cache = new EvaluateCache(3);
+        Template template = new Template();
+        Template reloaded = new Template();
+        SimpleNode tree = new ASTprocess(ParserTreeConstants.JJTPROCESS);
+        cache.put("page", template, "src", tree);
+        assertSame(tree, cache.get("page", template, "src"));
+
+        // the new version doesn't reuse the trees referring to the old one, and replaces them
+        assertNull(cache.get("page", reloaded, "src"));
+        cache.put("page", reloaded, "src", tree);
+        assertEquals(1, cache.size());
+        assertNull(cache.get("page", template, "src"));
+    }
+
+    public void testMacrosNotCached()
+    {
+        assertEvalEquals("m", "#macro(m)m#end#m()");
+        assertEvalEquals("m", "#macro(m)m#end#m()");
+        assertEquals(0, engine.getEvaluateCache().size());
+    }
+
+    public void testEvaluateDirective()
+    {
+        context.put("src", "[$x]");
+        addTemplate("eval", "#foreach($x in [1..3])#evaluate($src)#end");
+        assertTmplEquals("[1][2][3]", "eval");
+        assertTmplEquals("[1][2][3]", "eval");
+
+        EvaluateCache cache = engine.getEvaluateCache();
+        assertEquals(1, cache.getMissCount());
+        assertEquals(5, cache.getHitCount());
+    }
+
+    public void testEvaluateDirectiveNotCached()
+    {
+        VelocityEngine other = createEngine();
+        other.setProperty(RuntimeConstants.EVALUATE_DIRECTIVE_CACHE, Boolean.FALSE);
+        other.init();
+        context.put("src", "[$x]");
+
+        StringWriter writer = new StringWriter();
+        other.evaluate(context, writer, "eval", "#foreach($x in [1..3])#evaluate($src)#end");
+        assertEquals("[1][2][3]", writer.toString());
+        assertEquals(1, other.getEvaluateCache().size());
+        assertEquals(0, other.getEvaluateCache().getHitCount());
+    }
+}
@@ -0,0 +1,138 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.test.misc.TestLogger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Tests background detection of template file changes.
+ */
+public class FileChangeWatcherTestCase extends BaseTestCase
+{
+    private static final String WATCHED_DIR = TEST_RESULT_DIR + "/watch";
+
+    public FileChangeWatcherTestCase(String name)
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(FileChangeWatcherTestCase.class);
+    }
+
+    public void setUp()
+        throws Exception
+    {
+        assureResultsDirectoryExists(WATCHED_DIR);
+    }
+
+    private void write(String content)
+        throws Exception
+    {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(WATCHED_DIR, "watched.vm")), "UTF-8");
+        writer.write(content);
+        writer.close();
+    }
+
+    private String render(VelocityEngine engine)
+    {
+        StringWriter writer = new StringWriter();
+        engine.getTemplate("watched.vm").merge(new VelocityContext(), writer);
+        return writer.toString();
+    }
+
+    private VelocityEngine createWatchingEngine()
+    {
+        VelocityEngine engine = new VelocityEngine();
+        engine.setProperty(RuntimeConstants.RUNTIME_LOG_INSTANCE, new TestLogger());
+        engine.setProperty("file.resource.loader.path", WATCHED_DIR);
+        engine.setProperty("file.resource.loader.cache", "true");
+        engine.setProperty("file.resource.loader.modificationCheckInterval", "1");
+        engine.setProperty("file.resource.loader.watch", "true");
+        engine.init();
+        return engine;
+    }
+
+    private int countWatcherThreads()
+    {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if ("velocity-file-watcher".equals(thread.getName()) && thread.isAlive())
+            {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    public void testChangeDetection()
+        throws Exception
+    {
+        write("before");
+
+        VelocityEngine engine = createWatchingEngine();
+        assertEquals("before", render(engine));
+
+        write("after");
+        String result = null;
+        for (int i = 0; i < 100; ++i)
+        {
+            result = render(engine);
+            if ("after".equals(result))
+            {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals("after", result);
+        engine.reset();
+    }
+
+    public void testStopOnReset()
+        throws Exception
+    {
+        write("content");
+
+        int before = countWatcherThreads();
+        VelocityEngine engine = createWatchingEngine();
+        assertEquals("content", render(engine));
+        assertEquals(before + 1, countWatcherThreads());
+
+        engine.reset();
+        for (int i = 0; i < 100 && countWatcherThreads() > before; ++i)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(before, countWatcherThreads());
+    }
+}
@@ -118,6 +118,18 @@ public void testNestedVelocityHasNextProperty()
         assertEvalEquals("test1 (a1;a2;a3)-test2 (a1;a2;a3)-test3 (a1;a2;a3)-test4 (a1;a2;a3)", "#foreach ($value in $list)$value (#foreach ($val in $list2)$val#if( $foreach.hasNext );#end#end)#if( $foreach.hasNext )-#end#end");
     }
 
+    public void testRanges()
+        throws Exception
+    {
+        context.put("n", 4);
+        assertEvalEquals("1 2 3 4 ", "#foreach ($i in [1..$n])$i #end");
+        assertEvalEquals("2,1,0,-1", "#foreach ($i in [2..-1])$i#if( $foreach.hasNext ),#end#end");
+        assertEvalEquals("0:5 ", "#foreach ($i in [5..5])$foreach.index:$i #end");
+        assertEvalEquals("3 4 ", "#set($r = [1..3])$r.size() #set($ok = $r.add(9))$r.size() ");
+        assertEvalEquals("1 2 3 9 ", "#set($r = [1..3])#set($ok = $r.add(9))#foreach ($i in $r)$i #end");
+        assertEvalEquals("true 3 [1, 2, 3]", "#set($r = [1..3])$r.contains(2) $r.get(2) $r");
+    }
+
     public static class MyIterable
     {
         private List foo;
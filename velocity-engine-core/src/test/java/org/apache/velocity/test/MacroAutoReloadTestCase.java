@@ -19,14 +19,17 @@
  * under the License.
  */
 
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.apache.velocity.runtime.resource.loader.StringResourceLoader;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
 import org.apache.velocity.test.misc.TestLogger;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.StringWriter;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
@@ -60,6 +63,7 @@ protected void setUp() throws Exception
         engine.addProperty("velocimacro.library", "macros2.vtl");
         engine.addProperty("velocimacro.library.autoreload", "true");
         engine.addProperty("file.resource.loader.cache", "false");
+        engine.addProperty("file.resource.loader.modificationCheckInterval", "1");
         engine.addProperty("string.resource.loader.class", StringResourceLoader.class.getName());
         engine.addProperty("string.resource.loader.repository.name", "stringRepo");
         engine.addProperty("string.resource.loader.repository.static", "false");
@@ -99,4 +103,41 @@ public void testNewMacro() throws Exception
         template = "#foo('hip') #bar('hip')";
         assertEvalEquals("hop_hip hep_hip", template);
     }
+
+    public void testChangedMacroSameCallSite() throws Exception
+    {
+        engine.init();
+        ((StringResourceRepository)engine.getApplicationAttribute("stringRepo")).putStringResource("caller", "#foo('hip')");
+        Template template = engine.getTemplate("caller");
+
+        StringWriter out = new StringWriter();
+        template.merge(context, out);
+        assertEquals("hop_hip", out.toString());
+
+        FileWriter writer = new FileWriter(RELOAD_TEMPLATE_PATH + "/macros2.vtl");
+        writer.write("#macro(foo $txt)hip_$txt#{end}");
+        writer.close();
+        File macros2 = new File(TEST_COMPARE_DIR + "/reload/macros2.vtl");
+        macros2.setLastModified(macros2.lastModified() + 1000);
+
+        // the call site has cached the previous macro, it must notice the reload
+        out = new StringWriter();
+        template.merge(context, out);
+        assertEquals("hip_hip", out.toString());
+
+        // the library has just been checked, so it is not checked again before the interval
+        writer = new FileWriter(RELOAD_TEMPLATE_PATH + "/macros2.vtl");
+        writer.write("#macro(foo $txt)hup_$txt#{end}");
+        writer.close();
+        macros2.setLastModified(macros2.lastModified() + 2000);
+
+        out = new StringWriter();
+        template.merge(context, out);
+        assertEquals("hip_hip", out.toString());
+
+        Thread.sleep(1100);
+        out = new StringWriter();
+        template.merge(context, out);
+        assertEquals("hup_hip", out.toString());
+    }
 }
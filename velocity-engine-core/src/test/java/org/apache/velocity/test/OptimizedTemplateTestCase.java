@@ -0,0 +1,111 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.parser.node.ASTprocess;
+import org.apache.velocity.runtime.parser.node.OptimizerReport;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+/**
+ * Checks that optimized templates render exactly like non optimized ones.
+ */
+public class OptimizedTemplateTestCase extends BaseTestCase
+{
+    private VelocityEngine plain;
+
+    public OptimizedTemplateTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.RUNTIME_OPTIMIZE_TEMPLATES, Boolean.TRUE);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        plain = createEngine();
+        plain.setProperty(RuntimeConstants.RUNTIME_OPTIMIZE_TEMPLATES, Boolean.FALSE);
+        plain.init();
+        context.put("name", "world");
+        context.put("list", Arrays.asList("a", "b", "c"));
+    }
+
+    protected OptimizerReport assertSameOutput(String name, String template)
+    {
+        addTemplate(name, template);
+        ((StringResourceRepository)plain.getApplicationAttribute(stringRepoName)).putStringResource(name, template);
+
+        StringWriter writer = new StringWriter();
+        plain.mergeTemplate(name, "utf-8", context, writer);
+        assertTmplEquals(writer.toString(), name);
+
+        OptimizerReport report = engine.getTemplate(name).getOptimizerReport();
+        assertNotNull(report);
+        assertEquals(name, report.getTemplateName());
+        return report;
+    }
+
+    public void testConstantFolding()
+    {
+        OptimizerReport report = assertSameOutput("math", "#set($x = 1 + 2 * 3)$x #set($y = 7 / 2.0 - 1)$y #set($s = 'a' + 'b' + 1)$s");
+        assertEquals(6, report.getFoldedExpressions());
+
+        report = assertSameOutput("logic", "#if(2 > 1 && 'a' == 'a')yes#end #if(false && $name)no#end #set($b = !true || 1 != 2)$b");
+        assertTrue(report.getFoldedExpressions() >= 5);
+
+        // operations which log or fail at render time are left alone
+        report = assertSameOutput("invalid", "#set($z = 1 / 0)$!z #set($w = 1 % 0)$!w #set($c = 'a' < 'b')$c");
+        assertEquals(0, report.getFoldedExpressions());
+
+        report = assertSameOutput("dynamic", "#set($n = $list.size() + 1)$n");
+        assertEquals(0, report.getFoldedExpressions());
+    }
+
+    public void testDeadBranches()
+    {
+        OptimizerReport report = assertSameOutput("if", "#if(false)A#elseif($name)B#elseif(true)C#elseif($name)D#{else}E#end|#if(true)F#{else}G#end");
+        assertEquals(4, report.getPrunedBranches());
+
+        report = assertSameOutput("nested", "#foreach($i in $list)#if(1 == 2)$i#{else}[$i]#end#end");
+        assertEquals(1, report.getPrunedBranches());
+
+        report = assertSameOutput("live", "#if($name)A#elseif($list)B#{else}C#end");
+        assertEquals(0, report.getPrunedBranches());
+    }
+
+    public void testTextCoalescing()
+    {
+        OptimizerReport report = assertSameOutput("text", "one ## comment\ntwo #* block *# three \\#four #[[ $raw ]]# five $name six");
+        assertTrue(report.getCoalescedTexts() > 0);
+        assertEquals(report.getCoalescedTexts(), report.getRemovedNodes());
+
+        Template template = engine.getTemplate("text");
+        assertEquals(3, ((ASTprocess)template.getData()).jjtGetNumChildren());
+    }
+}
@@ -29,7 +29,10 @@
 import java.io.BufferedWriter;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Test case for including macro libraries via the #parse method.
@@ -204,6 +207,34 @@ private VelocityEngine createEngine(boolean cache, boolean local)
     }
 
 
+    /**
+     * Macro calls cache the macro they resolved; check that a call site
+     * follows the macro libraries of each merge.
+     */
+    public void testCallSiteFollowsMacroLibraries()
+        throws Exception
+    {
+        engine.setProperty(RuntimeConstants.VM_PERM_INLINE_LOCAL, Boolean.TRUE);
+        addTemplate("lib1", "#macro(m)one#end");
+        addTemplate("lib2", "#macro(m)two#end");
+        addTemplate("caller", "#m()");
+        Template caller = engine.getTemplate("caller");
+
+        assertEquals("#m()", merge(caller, null));
+        assertEquals("one", merge(caller, Arrays.asList("lib1")));
+        assertEquals("two", merge(caller, Arrays.asList("lib2")));
+        assertEquals("two", merge(caller, Arrays.asList("lib1", "lib2")));
+        assertEquals("one", merge(caller, Arrays.asList("lib1")));
+        assertEquals("#m()", merge(caller, null));
+    }
+
+    private String merge(Template template, List macroLibraries)
+    {
+        StringWriter writer = new StringWriter();
+        template.merge(context, writer, macroLibraries);
+        return writer.toString();
+    }
+
     /**
      * Test whether the literal text is given if a definition cannot be
      * found for a macro.
@@ -0,0 +1,203 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.ParsedTemplateCache;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+
+/**
+ * Tests the on-disk cache of parsed templates.
+ */
+public class ParsedTemplateCacheTestCase extends BaseTestCase
+{
+    private static final String[] TEMPLATES =
+    {
+        "#if($a)\n  yes\n#elseif($b)\n  maybe\n#else\n  no\n#end\n",
+        "#foreach($i in [1..3])$i#if($foreach.hasNext),#end#end",
+        "#set($m = {'k': 'v', 'l': [1, 2]})$m.k $m.l.get(1) #set($s = \"<$m.k>\")$s",
+        "#macro(m $x)[$x]#end#m('a') #m($a)\n## comment\n#* block *#\\$a $!nothing",
+        "#macro(bm)<$bodyContent>#end#@bm()body $a#end #define($d)defined $a#end$d",
+        "  #set($x = 1)\n  #if($x == 1)\n    one\n  #end\n",
+        "${a}text#{if}(true)ok#{end} #[[raw $a]]# $a.length() $a.substring(0, 1)",
+    };
+
+    private File directory;
+
+    private boolean useCache = true;
+
+    public ParsedTemplateCacheTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        if (useCache)
+        {
+            engine.setProperty(RuntimeConstants.PARSED_TEMPLATES_CACHE_PATH, directory.getPath());
+        }
+    }
+
+    public void setUp() throws Exception
+    {
+        directory = new File(TEST_RESULT_DIR, "parsedcache");
+        if (directory.isDirectory())
+        {
+            for (File file : directory.listFiles())
+            {
+                file.delete();
+            }
+        }
+        super.setUp();
+        context.put("a", "A");
+        context.put("b", Boolean.TRUE);
+    }
+
+    protected String render(VelocityEngine engine, String name, String template)
+    {
+        engine.init();
+        ((StringResourceRepository)engine.getApplicationAttribute(stringRepoName)).putStringResource(name, template);
+        StringWriter writer = new StringWriter();
+        engine.mergeTemplate(name, "utf-8", context, writer);
+        return writer.toString();
+    }
+
+    protected int countCacheFiles()
+    {
+        return directory.list().length;
+    }
+
+    public void testSameOutput()
+    {
+        useCache = false;
+        VelocityEngine uncached = createEngine();
+        useCache = true;
+        VelocityEngine warm = createEngine();
+
+        for (int i = 0; i < TEMPLATES.length; ++i)
+        {
+            String expected = render(uncached, "t" + i, TEMPLATES[i]);
+            assertEquals(expected, render(engine, "t" + i, TEMPLATES[i]));
+            assertEquals(expected, render(warm, "t" + i, TEMPLATES[i]));
+        }
+
+        assertNull(uncached.getParsedTemplateCache());
+        ParsedTemplateCache cold = engine.getParsedTemplateCache();
+        assertEquals(0, cold.getHitCount());
+        assertEquals(TEMPLATES.length, cold.getMissCount());
+        ParsedTemplateCache cache = warm.getParsedTemplateCache();
+        assertEquals(TEMPLATES.length, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.getErrorCount());
+        assertEquals(TEMPLATES.length, countCacheFiles());
+    }
+
+    public void testSameContent()
+    {
+        // the cache is keyed by content, not by name
+        render(engine, "first", TEMPLATES[0]);
+        render(engine, "second", TEMPLATES[0]);
+        assertEquals(1, engine.getParsedTemplateCache().getHitCount());
+        assertEquals(1, countCacheFiles());
+    }
+
+    public void testCorruption() throws Exception
+    {
+        String expected = render(engine, "corrupted", TEMPLATES[3]);
+        File file = directory.listFiles()[0];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0xFF);
+        }
+
+        VelocityEngine other = createEngine();
+        assertEquals(expected, render(other, "corrupted", TEMPLATES[3]));
+        assertEquals(1, other.getParsedTemplateCache().getErrorCount());
+        assertEquals(1, other.getParsedTemplateCache().getMissCount());
+
+        // the file has been rewritten
+        other = createEngine();
+        assertEquals(expected, render(other, "corrupted", TEMPLATES[3]));
+        assertEquals(1, other.getParsedTemplateCache().getHitCount());
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(raf.length() - 1);
+        }
+        other = createEngine();
+        assertEquals(expected, render(other, "corrupted", TEMPLATES[3]));
+        assertEquals(1, other.getParsedTemplateCache().getErrorCount());
+    }
+
+    public void testParserSettings()
+    {
+        render(engine, "t", TEMPLATES[3]);
+        VelocityEngine strict = createEngine();
+        strict.setProperty(RuntimeConstants.RUNTIME_REFERENCES_STRICT_ESCAPE, Boolean.TRUE);
+        render(strict, "t", TEMPLATES[3]);
+        assertEquals(1, strict.getParsedTemplateCache().getMissCount());
+        assertEquals(2, countCacheFiles());
+    }
+
+    public void testMacroDependentTemplates()
+    {
+        useCache = false;
+        VelocityEngine uncached = createEngine();
+        useCache = true;
+
+        // escaped directives are parsed differently whether their name is a macro or not
+        String escaped = "#macro(m $x)[$x]#end\\#m('b') \\#n('b') \\\\#m('c')";
+        assertEquals(render(uncached, "escaped", escaped), render(engine, "escaped", escaped));
+        // bare word arguments are only parse errors in macro calls
+        String words = "#n(word)";
+        assertEquals(render(uncached, "words", words), render(engine, "words", words));
+
+        assertEquals(0, countCacheFiles());
+        assertEquals(2, engine.getParsedTemplateCache().getMissCount());
+
+        // known directives may take words
+        render(engine, "foreach", "#foreach($i in [1..2])$i#end");
+        assertEquals(1, countCacheFiles());
+    }
+
+    public void testParseError()
+    {
+        try
+        {
+            render(engine, "bad", "#if($a)unclosed");
+            fail("expected a parse error");
+        }
+        catch (ParseErrorException pee)
+        {
+            // expected
+        }
+        assertEquals(0, countCacheFiles());
+    }
+}
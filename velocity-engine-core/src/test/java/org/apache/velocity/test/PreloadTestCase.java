@@ -0,0 +1,141 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.PreloadReport;
+import org.apache.velocity.runtime.RuntimeConstants;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests parallel preloading of templates.
+ */
+public class PreloadTestCase extends BaseTestCase
+{
+    private File directory;
+
+    private boolean cache = true;
+
+    public PreloadTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_PATH, directory.getPath());
+        engine.setProperty(RuntimeConstants.RUNTIME_PRELOAD_PARALLELISM, 2);
+        engine.setProperty("file.resource.loader.cache", cache);
+        engine.setProperty("string.resource.loader.cache", cache);
+    }
+
+    public void setUp() throws Exception
+    {
+        directory = new File(TEST_RESULT_DIR, "preload");
+        new File(directory, "sub").mkdirs();
+        write("a.vm", "a $name");
+        write("sub/b.vm", "#parse('a.vm') b");
+        write("bad.vm", "#if($name)unclosed");
+        write("image.png", "#if(");
+        super.setUp();
+        context.put("name", "world");
+    }
+
+    protected void write(String name, String content) throws IOException
+    {
+        try (Writer writer = new FileWriter(new File(directory, name)))
+        {
+            writer.write(content);
+        }
+    }
+
+    public void testListTemplates()
+    {
+        addTemplate("lib.vtl", "#macro(greet $who)hello $who#end");
+        assertEquals(new HashSet<String>(Arrays.asList("a.vm", "sub/b.vm", "bad.vm", "image.png", "lib.vtl")),
+                     new HashSet<String>(engine.listTemplates()));
+        assertEquals(new HashSet<String>(Arrays.asList("a.vm", "sub/b.vm", "bad.vm")),
+                     new HashSet<String>(engine.listTemplates("VM")));
+    }
+
+    public void testPreload()
+    {
+        addTemplate("lib.vtl", "#macro(greet $who)hello $who#end");
+        PreloadReport report = engine.preload();
+
+        assertEquals(3, report.getLoadedCount());
+        assertTrue(report.getLoadTimes().containsKey("sub/b.vm"));
+        assertTrue(report.getLoadTimes().get("a.vm") > 0);
+        assertTrue(report.getElapsedTime() > 0);
+        assertEquals(1, report.getFailedCount());
+        assertTrue(report.getFailures().get("bad.vm") instanceof ParseErrorException);
+        assertFalse(report.getFailures().containsKey("image.png"));
+        assertTrue(report.getDiscarded().isEmpty());
+
+        // inline macros of preloaded templates are registered
+        assertEvalEquals("hello world", "#greet($name)");
+        assertTmplEquals("a world b", "sub/b.vm");
+    }
+
+    public void testExplicitList()
+    {
+        addTemplate("lib", "#macro(greet $who)hello $who#end");
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try
+        {
+            PreloadReport report = engine.preload(Arrays.asList("lib", "a.vm", "missing"), pool);
+            assertEquals(2, report.getLoadedCount());
+            assertEquals(1, report.getFailedCount());
+            assertTrue(report.getFailures().get("missing") instanceof ResourceNotFoundException);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        assertEquals(0, engine.preload(Arrays.<String>asList()).getLoadedCount());
+    }
+
+    public void testDiscarded()
+    {
+        cache = false;
+        engine = createEngine();
+        addTemplate("lib.vtl", "#macro(greet $who)hello $who#end");
+        PreloadReport report = engine.preload();
+        assertEquals(new HashSet<String>(Arrays.asList("a.vm", "sub/b.vm", "lib.vtl")), report.getDiscarded());
+
+        cache = true;
+        engine = createEngine();
+        engine.setProperty(RuntimeConstants.RESOURCE_MANAGER_DEFAULTCACHE_SIZE, 1);
+        addTemplate("lib.vtl", "#macro(greet $who)hello $who#end");
+        report = engine.preload();
+        assertEquals(3, report.getLoadedCount());
+        // a single template can stay in the cache
+        assertTrue(report.getDiscarded().size() >= 2);
+    }
+}
@@ -0,0 +1,112 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.runtime.RenderMetrics;
+
+import java.util.Map;
+
+/**
+ * Tests the render instrumentation hooks and the metrics they feed.
+ */
+public class RenderMetricsTestCase extends BaseTestCase
+{
+    public RenderMetricsTestCase(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        context.put("name", "world");
+        addTemplate("child", "[$name.length()]");
+        addTemplate("main", "#macro(m)m#end#foreach($i in [1..3])#parse('child')#end#m()");
+    }
+
+    public void testMetrics()
+    {
+        assertNull(engine.getRenderListener());
+        RenderMetrics metrics = new RenderMetrics();
+        engine.setRenderListener(metrics);
+
+        assertTmplEquals("[5][5][5]m", "main");
+        assertTmplEquals("[5][5][5]m", "main");
+
+        Map<String, RenderMetrics.Timer> merges = metrics.getMergeTimers();
+        assertEquals(1, merges.size());
+        assertEquals(2, merges.get("main").getCount());
+        assertEquals(2, metrics.getMergeCount());
+        assertTrue(metrics.getSlowestTemplates()[0].startsWith("main: 2 times"));
+
+        Map<String, RenderMetrics.Timer> directives = metrics.getDirectiveTimers();
+        assertEquals(2, directives.get("foreach").getCount());
+        assertEquals(6, directives.get("parse").getCount());
+        assertEquals(2, directives.get("m").getCount());
+        assertTrue(directives.get("foreach").getTotalTime() >= directives.get("parse").getMaxTime());
+
+        Map<String, RenderMetrics.Timer> loads = metrics.getLoadTimers();
+        assertEquals(1, loads.get("main").getCount());
+        assertEquals(1, loads.get("child").getCount());
+
+        assertEquals(6, metrics.getIntrospectionHitCount() + metrics.getIntrospectionMissCount());
+        assertTrue(metrics.getIntrospectionHitCount() >= 5);
+        assertTrue(metrics.getIntrospectionCacheHitRate() > 0.8);
+
+        engine.setRenderListener(null);
+        assertTmplEquals("[5][5][5]m", "main");
+        assertEquals(2, metrics.getMergeCount());
+
+        metrics.reset();
+        assertEquals(0, metrics.getMergeTimers().size());
+        assertEquals(0.0, metrics.getIntrospectionCacheHitRate());
+    }
+
+    public void testSampling()
+    {
+        RenderMetrics metrics = new RenderMetrics(4);
+        int sampled = 0;
+        for (int i = 0; i < 40; ++i)
+        {
+            if (metrics.sample())
+            {
+                ++sampled;
+            }
+        }
+        assertEquals(10, sampled);
+        assertEquals(4, metrics.getSamplingInterval());
+    }
+
+    public void testPercentiles()
+    {
+        RenderMetrics metrics = new RenderMetrics();
+        engine.setRenderListener(metrics);
+        for (int i = 0; i < 10; ++i)
+        {
+            assertTmplEquals("[5]", "child");
+        }
+        RenderMetrics.Timer timer = metrics.getMergeTimers().get("child");
+        assertEquals(10, timer.getCount());
+        assertTrue(timer.getMeanTime() <= timer.getMaxTime());
+        assertTrue(timer.getPercentile(50) <= timer.getPercentile(99));
+        assertTrue(timer.getPercentile(100) <= timer.getMaxTime());
+        assertTrue(timer.getMaxTime() > 0);
+    }
+}
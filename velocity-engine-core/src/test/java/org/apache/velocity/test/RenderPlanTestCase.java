@@ -0,0 +1,190 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.app.event.EventCartridge;
+import org.apache.velocity.app.event.InvalidReferenceEventHandler;
+import org.apache.velocity.context.Context;
+import org.apache.velocity.exception.MethodInvocationException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.parser.node.ASTprocess;
+import org.apache.velocity.runtime.parser.node.RenderPlan;
+import org.apache.velocity.runtime.resource.util.StringResourceRepository;
+import org.apache.velocity.util.introspection.Info;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+/**
+ * Checks that templates rendered through render plans render exactly like interpreted ones.
+ */
+public class RenderPlanTestCase extends BaseTestCase
+{
+    private VelocityEngine interpreted;
+
+    public RenderPlanTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.RUNTIME_RENDER_PLANS, Boolean.TRUE);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        interpreted = createEngine();
+        interpreted.setProperty(RuntimeConstants.RUNTIME_RENDER_PLANS, Boolean.FALSE);
+        interpreted.init();
+        context.put("name", "world");
+        context.put("list", Arrays.asList("a", "b", "c"));
+    }
+
+    protected void assertSameOutput(String name, String template)
+    {
+        addTemplate(name, template);
+        ((StringResourceRepository)interpreted.getApplicationAttribute(stringRepoName)).putStringResource(name, template);
+
+        StringWriter writer = new StringWriter();
+        interpreted.mergeTemplate(name, "utf-8", context, writer);
+        assertTmplEquals(writer.toString(), name);
+    }
+
+    public void testStaticTemplate()
+    {
+        assertSameOutput("static", "hello ## comment\n#[[ $raw ]]# \\#world\n#* block *#done");
+
+        Template template = engine.getTemplate("static");
+        RenderPlan plan = ((ASTprocess)template.getData()).getRenderPlan();
+        assertNotNull(plan);
+        assertEquals(1, plan.size());
+        assertEquals(1, plan.getStaticStepCount());
+    }
+
+    public void testReferences()
+    {
+        assertSameOutput("refs", "Hello $name! $!missing $missing ${name}.");
+
+        // the text between references is merged, references become guarded steps
+        Template template = engine.getTemplate("refs");
+        RenderPlan plan = ((ASTprocess)template.getData()).getRenderPlan();
+        assertEquals(9, plan.size());
+        assertEquals(5, plan.getStaticStepCount());
+        assertEquals(4, plan.getGuardedStepCount());
+
+        // escaped references are left to the interpreter
+        assertSameOutput("escaped", "\\$name \\$missing");
+        plan = ((ASTprocess)engine.getTemplate("escaped").getData()).getRenderPlan();
+        assertEquals(0, plan.getGuardedStepCount());
+    }
+
+    public void testGuardedReferences()
+    {
+        context.put("items", Arrays.asList("abc", 42, "", 7L));
+        context.put("bean", new Bean());
+
+        // the receiver classes change along the loop, so guards fail and get refilled
+        assertSameOutput("chains", "#foreach($i in $items)$i.class.simpleName:$i.toString().length():$!i.empty:$i.missing|#end\n"
+            + "$bean.name.length() [$bean.nothing] [$!bean.nothing] [$bean.nothing.length()] [$bean.touch()]");
+        assertEquals(2, ((Bean)context.get("bean")).count);
+    }
+
+    public void testGuardedReferenceEvents()
+    {
+        EventCartridge cartridge = new EventCartridge();
+        cartridge.addEventHandler(new InvalidReferenceEventHandler()
+        {
+            public Object invalidGetMethod(Context context, String reference, Object object, String property, Info info)
+            {
+                return "<" + reference + ">";
+            }
+
+            public boolean invalidSetMethod(Context context, String leftreference, String rightreference, Info info)
+            {
+                return false;
+            }
+
+            public Object invalidMethod(Context context, String reference, Object object, String method, Info info)
+            {
+                return "<" + reference + ">";
+            }
+        });
+        cartridge.attachToContext(context);
+        context.put("bean", new Bean());
+        assertSameOutput("events", "$missing $bean.nothing $bean.absent() $name.length()");
+        // a getter returning null is not an invalid reference
+        assertTmplEquals("<$missing> $bean.nothing <$bean.absent()> 5", "events");
+    }
+
+    public void testGuardedReferenceException()
+    {
+        context.put("bean", new Bean());
+        addTemplate("failing", "$bean.name $bean.failing");
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                engine.getTemplate("failing").merge(context, new StringWriter());
+                fail("expected a MethodInvocationException");
+            }
+            catch (MethodInvocationException mie)
+            {
+                assertEquals("bean", mie.getReferenceName());
+                assertEquals("getFailing", mie.getMethodName());
+            }
+        }
+    }
+
+    public static class Bean
+    {
+        public int count = 0;
+
+        public String getName()
+        {
+            return "bean";
+        }
+
+        public Object getNothing()
+        {
+            return null;
+        }
+
+        public void touch()
+        {
+            ++count;
+        }
+
+        public String getFailing()
+        {
+            throw new IllegalStateException("failing");
+        }
+    }
+
+    public void testBlocks()
+    {
+        assertSameOutput("if", "#if($name)\n  yes $name\n#else\n  no\n#end\n");
+        assertSameOutput("foreach", "<ul>\n  #foreach($item in $list)\n    <li>$item</li>\n  #end\n</ul>\n");
+        assertSameOutput("macro", "#macro(hello $who)\n  Hello $who\n#end\n#hello($name)\n#hello('you')\n");
+    }
+}
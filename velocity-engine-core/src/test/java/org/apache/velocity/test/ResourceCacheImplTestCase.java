@@ -0,0 +1,118 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.resource.ContentResource;
+import org.apache.velocity.runtime.resource.Resource;
+import org.apache.velocity.runtime.resource.ResourceCacheImpl;
+import org.apache.velocity.test.misc.TestLogger;
+
+/**
+ * Tests the bounds, admission policy and statistics of the default resource cache.
+ */
+public class ResourceCacheImplTestCase extends TestCase
+{
+    private ResourceCacheImpl createCache(int size, int weight)
+    {
+        RuntimeInstance ri = new RuntimeInstance();
+        ri.setProperty(RuntimeConstants.RUNTIME_LOG_INSTANCE, new TestLogger());
+        ri.setProperty(RuntimeConstants.RESOURCE_MANAGER_DEFAULTCACHE_SIZE, String.valueOf(size));
+        ri.setProperty(RuntimeConstants.RESOURCE_MANAGER_DEFAULTCACHE_WEIGHT, String.valueOf(weight));
+        ri.init();
+        ResourceCacheImpl cache = new ResourceCacheImpl();
+        cache.initialize(ri);
+        return cache;
+    }
+
+    private Resource resource(String name)
+    {
+        Resource resource = new ContentResource();
+        resource.setName(name);
+        resource.setData(name);
+        return resource;
+    }
+
+    public void testStatistics()
+    {
+        ResourceCacheImpl cache = createCache(10, 0);
+        assertNull(cache.get("a"));
+        cache.put("a", resource("a"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("a"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getWeight());
+        cache.remove("a");
+        assertEquals(0, cache.getWeight());
+    }
+
+    public void testSizeBound()
+    {
+        ResourceCacheImpl cache = createCache(3, 0);
+        for (int i = 0; i < 10; ++i)
+        {
+            String key = "key" + i;
+            cache.get(key);
+            cache.put(key, resource(key));
+        }
+        assertEquals(3, cache.getWeight());
+        assertEquals(7, cache.getEvictionCount());
+        // the last inserted resource, as popular as the others, is cached
+        assertNotNull(cache.get("key9"));
+    }
+
+    public void testFrequentResourcesAreKept()
+    {
+        ResourceCacheImpl cache = createCache(2, 0);
+        for (String key : new String[] { "hot1", "hot2" })
+        {
+            for (int i = 0; i < 5; ++i)
+            {
+                cache.get(key);
+            }
+            cache.put(key, resource(key));
+        }
+        // one-hit wonders are not admitted
+        for (int i = 0; i < 10; ++i)
+        {
+            String key = "cold" + i;
+            cache.get(key);
+            cache.put(key, resource(key));
+        }
+        assertNotNull(cache.get("hot1"));
+        assertNotNull(cache.get("hot2"));
+        assertEquals(2, cache.getWeight());
+    }
+
+    public void testUnbounded()
+    {
+        ResourceCacheImpl cache = createCache(0, 0);
+        for (int i = 0; i < 200; ++i)
+        {
+            cache.put("key" + i, resource("key" + i));
+        }
+        assertEquals(0, cache.getMaxWeight());
+        assertEquals(0, cache.getEvictionCount());
+        assertNotNull(cache.get("key0"));
+    }
+}
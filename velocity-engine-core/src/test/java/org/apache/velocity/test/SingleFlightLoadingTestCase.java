@@ -0,0 +1,177 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.Resource;
+import org.apache.velocity.runtime.resource.loader.ResourceLoader;
+import org.apache.velocity.test.misc.TestLogger;
+import org.apache.velocity.util.ExtProperties;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that concurrent loads and refreshes of the same template are coalesced.
+ */
+public class SingleFlightLoadingTestCase extends TestCase
+{
+    private static final int THREADS = 8;
+
+    private SlowResourceLoader loader;
+
+    private ExecutorService executor;
+
+    public void setUp()
+    {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    private VelocityEngine createEngine(boolean staleWhileRevalidate)
+    {
+        loader = new SlowResourceLoader();
+        VelocityEngine engine = new VelocityEngine();
+        engine.setProperty(RuntimeConstants.RUNTIME_LOG_INSTANCE, new TestLogger());
+        engine.setProperty(RuntimeConstants.RESOURCE_LOADER, "slow");
+        engine.setProperty("slow.resource.loader.instance", loader);
+        engine.setProperty("slow.resource.loader.cache", "true");
+        engine.setProperty("slow.resource.loader.modificationCheckInterval", "1");
+        engine.setProperty(RuntimeConstants.RESOURCE_MANAGER_STALE_WHILE_REVALIDATE, String.valueOf(staleWhileRevalidate));
+        engine.init();
+        return engine;
+    }
+
+    private List<Template> getConcurrently(final VelocityEngine engine)
+        throws Exception
+    {
+        List<Future<Template>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; ++i)
+        {
+            futures.add(executor.submit(new Callable<Template>()
+            {
+                public Template call()
+                {
+                    return engine.getTemplate("layout.vm");
+                }
+            }));
+        }
+        List<Template> templates = new ArrayList<>();
+        for (Future<Template> future : futures)
+        {
+            templates.add(future.get());
+        }
+        return templates;
+    }
+
+    public void testConcurrentLoad()
+        throws Exception
+    {
+        VelocityEngine engine = createEngine(false);
+        List<Template> templates = getConcurrently(engine);
+        assertEquals(1, loader.loads.get());
+        for (Template template : templates)
+        {
+            assertSame(templates.get(0), template);
+        }
+    }
+
+    public void testConcurrentRefresh()
+        throws Exception
+    {
+        VelocityEngine engine = createEngine(false);
+        Template first = engine.getTemplate("layout.vm");
+        loader.modified = true;
+        // wait for the modification check interval to elapse
+        Thread.sleep(1100);
+        getConcurrently(engine);
+        assertEquals(2, loader.loads.get());
+        assertNotSame(first, engine.getTemplate("layout.vm"));
+    }
+
+    public void testStaleWhileRevalidate()
+        throws Exception
+    {
+        VelocityEngine engine = createEngine(true);
+        Template first = engine.getTemplate("layout.vm");
+        loader.modified = true;
+        Thread.sleep(1100);
+        List<Template> templates = getConcurrently(engine);
+        assertEquals(2, loader.loads.get());
+        Template fresh = engine.getTemplate("layout.vm");
+        assertNotSame(first, fresh);
+        for (Template template : templates)
+        {
+            assertTrue(template == first || template == fresh);
+        }
+    }
+
+    public static class SlowResourceLoader extends ResourceLoader
+    {
+        final AtomicInteger loads = new AtomicInteger();
+
+        volatile boolean modified = false;
+
+        public void init(ExtProperties configuration)
+        {
+        }
+
+        public Reader getResourceReader(String source, String encoding)
+            throws ResourceNotFoundException
+        {
+            loads.incrementAndGet();
+            modified = false;
+            try
+            {
+                Thread.sleep(200);
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return new StringReader("slowly loaded $template");
+        }
+
+        public boolean isSourceModified(Resource resource)
+        {
+            return modified;
+        }
+
+        public long getLastModified(Resource resource)
+        {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.velocity.Template;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.test.misc.TestLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Tests #include of content streamed from direct buffers.
+ */
+public class StreamingIncludeTestCase extends BaseTestCase
+{
+    private static final String STREAMING_DIR = TEST_RESULT_DIR + "/streaming";
+
+    private static final String BIG = StringUtils.repeat("héllo € ", 20);
+
+    private static final String BIG_STRING = StringUtils.repeat("ö", 50);
+
+    private static final String EXPECTED = "[" + BIG + "|hi|" + BIG_STRING + "]";
+
+    public StreamingIncludeTestCase(String name)
+    {
+        super(name);
+    }
+
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_PATH, STREAMING_DIR);
+        engine.setProperty(RuntimeConstants.INCLUDE_STREAMING_THRESHOLD, 64);
+    }
+
+    public void setUp() throws Exception
+    {
+        assureResultsDirectoryExists(STREAMING_DIR);
+        byte[] bom = { (byte)0xEF, (byte)0xBB, (byte)0xBF };
+        write("big.txt", bom, BIG);
+        write("small.txt", new byte[0], "hi");
+        super.setUp();
+        addTemplate("bigstring", BIG_STRING);
+        addTemplate("main", "[#include('big.txt')|#include('small.txt')|#include('bigstring')]");
+    }
+
+    private void write(String name, byte[] prefix, String content) throws IOException
+    {
+        try (OutputStream out = new FileOutputStream(new File(STREAMING_DIR, name)))
+        {
+            out.write(prefix);
+            out.write(content.getBytes("UTF-8"));
+        }
+    }
+
+    public void testContentData()
+    {
+        RuntimeInstance ri = new RuntimeInstance();
+        ri.setProperty(RuntimeConstants.RUNTIME_LOG_INSTANCE, new TestLogger());
+        ri.setProperty(RuntimeConstants.FILE_RESOURCE_LOADER_PATH, STREAMING_DIR);
+        ri.setProperty(RuntimeConstants.INCLUDE_STREAMING_THRESHOLD, 64);
+        ri.init();
+        assertTrue(ri.getContent("big.txt").getData() instanceof ByteBuffer);
+        assertEquals("hi", ri.getContent("small.txt").getData());
+    }
+
+    public void testWriterOutput()
+    {
+        // twice, to check that the buffers are not consumed
+        assertTmplEquals(EXPECTED, "main");
+        assertTmplEquals(EXPECTED, "main");
+    }
+
+    public void testByteOutput()
+    {
+        Template template = engine.getTemplate("main");
+        for (String charsetName : new String[] { "UTF-8", "ISO-8859-15", "UTF-16" })
+        {
+            Charset charset = Charset.forName(charsetName);
+            for (int i = 0; i < 2; ++i)
+            {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                template.merge(context, out, charset);
+                assertTrue(charsetName, Arrays.equals(EXPECTED.getBytes(charset), out.toByteArray()));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.parser.node.ASTStringLiteral;
+import org.apache.velocity.runtime.parser.node.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests interpolated string literals, with and without an interpolation plan.
+ */
+public class StringInterpolationTestCase extends BaseTestCase
+{
+    public StringInterpolationTestCase(String name)
+    {
+        super(name);
+    }
+
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        context.put("id", 42);
+        context.put("name", "bob");
+        context.put("empty", "");
+        context.put("list", Arrays.asList("a", "b"));
+    }
+
+    protected void collectLiterals(Node node, List<ASTStringLiteral> literals)
+    {
+        if (node instanceof ASTStringLiteral)
+        {
+            literals.add((ASTStringLiteral)node);
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); ++i)
+        {
+            collectLiterals(node.jjtGetChild(i), literals);
+        }
+    }
+
+    public void testPlans()
+    {
+        addTemplate("plans", "#set($a = \"user_${id}_name\")#set($b = \"#if($id)x#end\")#set($c = 'raw $id')$a $b $c");
+        assertTmplEquals("user_42_name x raw $id", "plans");
+
+        List<ASTStringLiteral> literals = new ArrayList<>();
+        Template template = engine.getTemplate("plans");
+        collectLiterals((Node)template.getData(), literals);
+        assertEquals(3, literals.size());
+        assertEquals(3, literals.get(0).getInterpolationPlan().size());
+        assertNull(literals.get(0).getRenderPlan());
+        assertNull(literals.get(1).getInterpolationPlan());
+        assertEquals(1, literals.get(1).getRenderPlan().size());
+        assertNull(literals.get(2).getInterpolationPlan());
+        assertNull(literals.get(2).getRenderPlan());
+    }
+
+    public void testReferences()
+    {
+        assertEvalEquals("[bob]", "#set($s = \"[$name]\")$s");
+        assertEvalEquals("[$missing]", "#set($s = \"[$missing]\")$s");
+        assertEvalEquals("[]", "#set($s = \"[$!missing]\")$s");
+        assertEvalEquals("[$name]", "#set($s = \"[\\$name]\")$s");
+        assertEvalEquals("[BOB 2]", "#set($s = \"[$name.toUpperCase() $list.size()]\")$s");
+        assertEvalEquals("[x]", "#define($block)x#end#set($s = \"[$block]\")$s");
+        assertEvalEquals("a-b-", "#foreach($i in $list)#set($s = \"$i-\")$s#end");
+        assertEvalEquals("42", "#set($s = \"$id\")$s");
+    }
+
+    public void testEvaluate()
+    {
+        assertEvalEquals("yes", "#if(\"$name\")yes#end");
+        assertEvalEquals("", "#if(\"$empty\")yes#end");
+        assertEvalEquals("yes", "#if(\"$empty!\")yes#end");
+    }
+}
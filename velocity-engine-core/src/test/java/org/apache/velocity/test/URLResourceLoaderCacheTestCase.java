@@ -0,0 +1,254 @@
+package org.apache.velocity.test;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.ResourceNotFoundException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.URLResourceLoader;
+import org.apache.velocity.test.misc.TestLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests concurrent fetches, conditional revalidation and the disk cache
+ * of the URLResourceLoader, against a local HTTP server.
+ */
+public class URLResourceLoaderCacheTestCase extends BaseTestCase
+{
+    private static final String CACHE_DIR = TEST_RESULT_DIR + "/urlcache";
+
+    private HttpServer server;
+
+    private ExecutorService serverExecutor;
+
+    private String root;
+
+    private final Map<String, String> templates = new ConcurrentHashMap<>();
+
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    private volatile boolean failing = false;
+
+    private final CountDownLatch slowStarted = new CountDownLatch(1);
+
+    private final CountDownLatch slowReleased = new CountDownLatch(1);
+
+    private URLResourceLoader loader;
+
+    public URLResourceLoaderCacheTestCase(String name)
+    {
+        super(name);
+    }
+
+    public void setUp()
+        throws Exception
+    {
+        FileUtils.deleteDirectory(new File(CACHE_DIR));
+        templates.put("layout.vm", "hello");
+        templates.put("slow.vm", "slow");
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new TemplateHandler());
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        root = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    public void tearDown()
+    {
+        slowReleased.countDown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private VelocityEngine createURLEngine(String cachePath, boolean stale)
+    {
+        loader = new URLResourceLoader();
+        VelocityEngine engine = new VelocityEngine();
+        engine.setProperty(RuntimeConstants.RUNTIME_LOG_INSTANCE, new TestLogger(false, false));
+        engine.setProperty("resource.loader", "url");
+        engine.setProperty("url.resource.loader.instance", loader);
+        engine.setProperty("url.resource.loader.root", root);
+        engine.setProperty("url.resource.loader.timeout", 5000);
+        if (cachePath != null)
+        {
+            engine.setProperty("url.resource.loader.diskcache.path", cachePath);
+            engine.setProperty("url.resource.loader.diskcache.stale", stale);
+        }
+        engine.init();
+        return engine;
+    }
+
+    private String render(VelocityEngine engine, String name)
+    {
+        StringWriter writer = new StringWriter();
+        engine.getTemplate(name).merge(new VelocityContext(), writer);
+        return writer.toString();
+    }
+
+    public void testRevalidation()
+    {
+        VelocityEngine engine = createURLEngine(null, false);
+        Template template = engine.getTemplate("layout.vm");
+        assertEquals(1, downloads.get());
+
+        assertFalse(loader.isSourceModified(template));
+        assertEquals(1, notModified.get());
+
+        templates.put("layout.vm", "bye");
+        assertTrue(loader.isSourceModified(template));
+        assertEquals(1, notModified.get());
+    }
+
+    public void testDiskCache()
+    {
+        assertEquals("hello", render(createURLEngine(CACHE_DIR, false), "layout.vm"));
+        assertEquals(1, downloads.get());
+
+        // a restarted engine revalidates its cached content instead of downloading it
+        assertEquals("hello", render(createURLEngine(CACHE_DIR, false), "layout.vm"));
+        assertEquals(1, downloads.get());
+        assertEquals(1, notModified.get());
+
+        failing = true;
+        assertEquals("hello", render(createURLEngine(CACHE_DIR, true), "layout.vm"));
+        try
+        {
+            render(createURLEngine(CACHE_DIR, false), "layout.vm");
+            fail("stale content should not be served");
+        }
+        catch (ResourceNotFoundException rnfe)
+        {
+            // expected
+        }
+    }
+
+    public void testConcurrentFetches()
+        throws Exception
+    {
+        final VelocityEngine engine = createURLEngine(null, false);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            Future<String> slow = executor.submit(new Callable<String>()
+            {
+                public String call()
+                {
+                    return render(engine, "slow.vm");
+                }
+            });
+            assertTrue(slowStarted.await(10, TimeUnit.SECONDS));
+
+            // a slow fetch doesn't block the others
+            Future<String> fast = executor.submit(new Callable<String>()
+            {
+                public String call()
+                {
+                    return render(engine, "layout.vm");
+                }
+            });
+            assertEquals("hello", fast.get(10, TimeUnit.SECONDS));
+
+            slowReleased.countDown();
+            assertEquals("slow", slow.get(10, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private class TemplateHandler implements HttpHandler
+    {
+        public void handle(HttpExchange exchange)
+            throws IOException
+        {
+            try
+            {
+                String name = exchange.getRequestURI().getPath().substring(1);
+                String content = templates.get(name);
+                if (failing)
+                {
+                    exchange.sendResponseHeaders(500, -1);
+                    return;
+                }
+                if (content == null)
+                {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                if (name.equals("slow.vm"))
+                {
+                    slowStarted.countDown();
+                    slowReleased.await(10, TimeUnit.SECONDS);
+                }
+                String etag = "\"" + Integer.toHexString(content.hashCode()) + "\"";
+                exchange.getResponseHeaders().set("ETag", etag);
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+                {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                byte[] bytes = content.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody())
+                {
+                    out.write(bytes);
+                }
+                if (!name.equals("slow.vm"))
+                {
+                    downloads.incrementAndGet();
+                }
+            }
+            catch (InterruptedException ie)
+            {
+                exchange.sendResponseHeaders(503, -1);
+            }
+            finally
+            {
+                exchange.close();
+            }
+        }
+    }
+}
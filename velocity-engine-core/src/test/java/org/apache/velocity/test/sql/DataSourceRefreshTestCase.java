@@ -0,0 +1,179 @@
+package org.apache.velocity.test.sql;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.runtime.resource.loader.DataSourceResourceLoader;
+import org.apache.velocity.test.misc.TestLogger;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests the pooled connections mode and the background refresher
+ * of the DataSourceResourceLoader.
+ */
+public class DataSourceRefreshTestCase extends BaseSQLTest
+{
+    private static final String DATA_PATH = TEST_COMPARE_DIR + "/ds";
+
+    private VelocityEngine dsEngine = null;
+
+    public DataSourceRefreshTestCase(final String name)
+        throws Exception
+    {
+        super(name, DATA_PATH);
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(DataSourceRefreshTestCase.class);
+    }
+
+    public void setUp()
+        throws Exception
+    {
+        executeSQL("delete from velocity_template_varchar where vt_id = 'refreshed'");
+        executeSQL("insert into velocity_template_varchar (vt_id, vt_timestamp, vt_def) VALUES "
+                   + "('refreshed', '2000-01-01 00:00:00', 'before')");
+
+        DataSourceResourceLoader loader = new DataSourceResourceLoader();
+        loader.setDataSource(new TestDataSource(TEST_JDBC_DRIVER_CLASS, TEST_JDBC_URI, TEST_JDBC_LOGIN, TEST_JDBC_PASSWORD));
+
+        dsEngine = new VelocityEngine();
+        dsEngine.setProperty(RuntimeConstants.RUNTIME_LOG_INSTANCE, new TestLogger(false, false));
+        dsEngine.setProperty("resource.loader", "ds");
+        dsEngine.setProperty("ds.resource.loader.instance", loader);
+        dsEngine.setProperty("ds.resource.loader.resource.table", "velocity_template_varchar");
+        dsEngine.setProperty("ds.resource.loader.resource.keycolumn", "vt_id");
+        dsEngine.setProperty("ds.resource.loader.resource.templatecolumn", "vt_def");
+        dsEngine.setProperty("ds.resource.loader.resource.timestampcolumn", "vt_timestamp");
+        dsEngine.setProperty("ds.resource.loader.cache", "true");
+        dsEngine.setProperty("ds.resource.loader.modificationCheckInterval", "1");
+        dsEngine.setProperty("ds.resource.loader.pooled", "true");
+        dsEngine.setProperty("ds.resource.loader.refresh", "true");
+        dsEngine.init();
+    }
+
+    public void tearDown()
+    {
+        dsEngine.reset();
+    }
+
+    private int countRefresherThreads()
+    {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if ("velocity-datasource-refresher".equals(thread.getName()) && thread.isAlive())
+            {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private String render(String name)
+    {
+        StringWriter writer = new StringWriter();
+        dsEngine.getTemplate(name).merge(new VelocityContext(), writer);
+        return writer.toString();
+    }
+
+    public void testConcurrentLoads()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; ++i)
+            {
+                final String name = i % 2 == 0 ? "testTemplate1" : "testTemplate3";
+                results.add(executor.submit(new Callable<String>()
+                {
+                    public String call()
+                    {
+                        return render(name);
+                    }
+                }));
+            }
+            for (int i = 0; i < 4; ++i)
+            {
+                assertEquals(i % 2 == 0 ? "I am a test through the data loader" : "This is a template with a null timestamp",
+                             results.get(i).get());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testListTemplates()
+    {
+        List<String> names = dsEngine.listTemplates();
+        assertTrue(names.contains("testTemplate1"));
+        assertTrue(names.contains("VM_global_library.vm"));
+        assertTrue(names.contains("refreshed"));
+    }
+
+    public void testRefresh()
+        throws Exception
+    {
+        assertEquals("before", render("refreshed"));
+
+        executeSQL("update velocity_template_varchar set vt_def = 'after', "
+                   + "vt_timestamp = '2001-01-01 00:00:00' where vt_id = 'refreshed'");
+        String result = null;
+        for (int i = 0; i < 100; ++i)
+        {
+            result = render("refreshed");
+            if ("after".equals(result))
+            {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals("after", result);
+    }
+
+    public void testStopOnReset()
+        throws Exception
+    {
+        int before = countRefresherThreads();
+        assertTrue(before > 0);
+        dsEngine.reset();
+        for (int i = 0; i < 100 && countRefresherThreads() >= before; ++i)
+        {
+            Thread.sleep(50);
+        }
+        assertEquals(before - 1, countRefresherThreads());
+    }
+}
@@ -0,0 +1,139 @@
+package org.apache.velocity.test.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.velocity.util.DuckType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests the duck-typing conventions and their per-class resolution.
+ */
+public class DuckTypeTestCase extends TestCase
+{
+    public void testConventions()
+    {
+        assertFalse(DuckType.asBoolean(new AsBoolean(), true));
+        assertFalse(DuckType.asBoolean(new AsString(""), true));
+        assertTrue(DuckType.asBoolean(new AsString("x"), true));
+        assertTrue(DuckType.asEmpty(new ArrayList()));
+        assertFalse(DuckType.asEmpty(Arrays.asList(1)));
+        assertTrue(DuckType.asEmpty(new int[0]));
+        assertTrue(DuckType.asEmpty(new StringBuilder()));
+        assertTrue(DuckType.asEmpty(0));
+        assertEquals("x", DuckType.asString(new AsString("x")));
+        assertTrue(DuckType.asNull(new AsString(null)));
+    }
+
+    public void testExceptions()
+    {
+        try
+        {
+            DuckType.asEmpty(new Failing());
+            fail("expecting an exception");
+        }
+        catch (RuntimeException re)
+        {
+            assertTrue(re.getCause().getCause() instanceof IllegalStateException);
+        }
+    }
+
+    public void testConcurrentResolution()
+        throws Exception
+    {
+        final Object[] values = { new AsBoolean(), new AsString(""), new ArrayList(), Collections.singletonMap("a", "b"),
+            new StringBuilder("x"), 1, "", new Object() };
+        final boolean[] expected = new boolean[values.length];
+        for (int i = 0; i < values.length; ++i)
+        {
+            expected[i] = DuckType.asBoolean(values[i], true);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; ++t)
+            {
+                results.add(executor.submit(new Callable<Boolean>()
+                {
+                    public Boolean call()
+                    {
+                        for (int n = 0; n < 10000; ++n)
+                        {
+                            int i = n % values.length;
+                            if (DuckType.asBoolean(values[i], true) != expected[i])
+                            {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results)
+            {
+                assertTrue(result.get());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public static class AsBoolean
+    {
+        public boolean getAsBoolean()
+        {
+            return false;
+        }
+    }
+
+    public static class AsString
+    {
+        private final String string;
+
+        public AsString(String string)
+        {
+            this.string = string;
+        }
+
+        public String getAsString()
+        {
+            return string;
+        }
+    }
+
+    public static class Failing
+    {
+        public boolean isEmpty()
+        {
+            throw new IllegalStateException("failure");
+        }
+    }
+}
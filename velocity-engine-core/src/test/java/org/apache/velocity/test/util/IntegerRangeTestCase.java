@@ -0,0 +1,105 @@
+package org.apache.velocity.test.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.util.IntegerRange;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Tests the lazy list of integers built by the range operator.
+ */
+public class IntegerRangeTestCase extends TestCase
+{
+    public void testElements()
+    {
+        assertEquals(Arrays.asList(1, 2, 3), new IntegerRange(1, 3));
+        assertEquals(Arrays.asList(2, 1, 0, -1), new IntegerRange(2, -1));
+        assertEquals(Arrays.asList(7), new IntegerRange(7, 7));
+        assertEquals("[3, 4]", new IntegerRange(3, 4).toString());
+        assertEquals(Arrays.asList(1, 2, 3).hashCode(), new IntegerRange(1, 3).hashCode());
+
+        IntegerRange range = new IntegerRange(10, 1);
+        assertEquals(10, range.size());
+        assertEquals(Integer.valueOf(7), range.get(3));
+        assertEquals(3, range.indexOf(7));
+        assertEquals(-1, range.indexOf(11));
+        assertEquals(-1, range.indexOf("7"));
+        assertTrue(range.contains(1));
+        assertFalse(range.contains(0));
+        try
+        {
+            range.get(10);
+            fail("expecting an exception");
+        }
+        catch (IndexOutOfBoundsException e) {}
+    }
+
+    public void testLargeRange()
+    {
+        IntegerRange range = new IntegerRange(1, 100000);
+        assertEquals(100000, range.size());
+        long sum = 0;
+        for (Integer i : range)
+        {
+            sum += i;
+        }
+        assertEquals(5000050000L, sum);
+        assertTrue(range.isLazy());
+    }
+
+    public void testTooLargeRange()
+    {
+        assertEquals(Integer.MAX_VALUE, new IntegerRange(0, Integer.MAX_VALUE - 1).size());
+        try
+        {
+            new IntegerRange(0, Integer.MAX_VALUE);
+            fail("expecting an exception");
+        }
+        catch (VelocityException e) {}
+        try
+        {
+            new IntegerRange(Integer.MAX_VALUE, Integer.MIN_VALUE);
+            fail("expecting an exception");
+        }
+        catch (VelocityException e) {}
+    }
+
+    public void testModification()
+    {
+        IntegerRange range = new IntegerRange(1, 3);
+        range.add(4);
+        assertFalse(range.isLazy());
+        assertEquals(Arrays.asList(1, 2, 3, 4), range);
+        range.set(0, 0);
+        range.remove(Integer.valueOf(2));
+        assertEquals(Arrays.asList(0, 3, 4), range);
+        assertEquals(1, range.indexOf(3));
+
+        range = new IntegerRange(1, 3);
+        Iterator<Integer> it = range.iterator();
+        it.next();
+        it.remove();
+        assertEquals(Arrays.asList(2, 3), range);
+    }
+}
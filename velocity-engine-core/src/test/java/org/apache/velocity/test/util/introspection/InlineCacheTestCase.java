@@ -0,0 +1,74 @@
+package org.apache.velocity.test.util.introspection;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.velocity.test.misc.TestLogger;
+import org.apache.velocity.util.introspection.InlineCache;
+import org.apache.velocity.util.introspection.IntrospectorCache;
+
+/**
+ * Test the node-level introspection inline cache
+ */
+public class InlineCacheTestCase extends TestCase
+{
+    public void testMonomorphic()
+    {
+        InlineCache cache = new InlineCache();
+        assertNull(cache.get(String.class, null, null));
+        cache.put(String.class, null, null, "string getter");
+        assertEquals("string getter", cache.get(String.class, null, null));
+        assertNull(cache.get(Integer.class, null, null));
+        assertEquals(1, cache.size());
+    }
+
+    public void testMethodKeys()
+    {
+        InlineCache cache = new InlineCache();
+        cache.put(String.class, "get", new Class[] { Integer.class }, "get(Integer)");
+        assertEquals("get(Integer)", cache.get(String.class, "get", new Class[] { Integer.class }));
+        assertNull(cache.get(String.class, "get", new Class[] { Long.class }));
+        assertNull(cache.get(String.class, "put", new Class[] { Integer.class }));
+        assertNull(cache.get(String.class, "get", new Class[] { null }));
+    }
+
+    public void testPolymorphicBound()
+    {
+        InlineCache cache = new InlineCache();
+        Class[] receivers = { String.class, Integer.class, Long.class, Double.class, Float.class };
+        for (Class receiver : receivers)
+        {
+            cache.put(receiver, null, null, receiver.getName());
+        }
+        assertEquals(InlineCache.MAX_ENTRIES, cache.size());
+        // oldest entry has been evicted
+        assertNull(cache.get(String.class, null, null));
+        assertEquals(Float.class.getName(), cache.get(Float.class, null, null));
+    }
+
+    public void testInvalidation()
+    {
+        InlineCache cache = new InlineCache();
+        cache.put(String.class, null, null, "string getter");
+        new IntrospectorCache(new TestLogger(), null).clear();
+        assertNull(cache.get(String.class, null, null));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,184 @@
+package org.apache.velocity.test.util.introspection;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.apache.velocity.test.BaseTestCase;
+import org.apache.velocity.test.misc.TestLogger;
+import org.apache.velocity.util.introspection.Converter;
+import org.apache.velocity.util.introspection.MethodHandleInvoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests method handle based invocation of introspected methods.
+ */
+public class MethodHandleInvokerTestCase extends BaseTestCase
+{
+    public MethodHandleInvokerTestCase(String name)
+        throws Exception
+    {
+        super(name);
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(MethodHandleInvokerTestCase.class);
+    }
+
+    @Override
+    protected void setUpEngine(VelocityEngine engine)
+    {
+        engine.setProperty(RuntimeConstants.RUNTIME_LOG_INSTANCE, new TestLogger());
+        engine.setProperty(RuntimeConstants.INTROSPECTOR_METHOD_HANDLES, "true");
+    }
+
+    @Override
+    protected void setUpContext(VelocityContext context)
+    {
+        Map map = new HashMap();
+        map.put("key", "value");
+        context.put("map", map);
+        context.put("obj", new Target());
+        context.put("class", Target.class);
+        context.put("array", new String[] { "a", "b" });
+    }
+
+    public void testProperties()
+    {
+        assertEvalEquals("name", "$obj.name");
+        assertEvalEquals("true", "$obj.enabled");
+        assertEvalEquals("got:foo", "$obj.foo");
+        assertEvalEquals("value", "$map.key");
+        assertEvalEquals("2", "$array.size()");
+    }
+
+    public void testMethods()
+    {
+        assertEvalEquals("7", "$obj.add(3, 4)");
+        assertEvalEquals("5", "$obj.add(3, '2')");
+        assertEvalEquals("3.5", "$obj.half(7)");
+        assertEvalEquals("static", "$class.stat()");
+        assertEvalEquals("b", "$array.get(1)");
+    }
+
+    public void testVarArgs()
+    {
+        assertEvalEquals("0", "$obj.count()");
+        assertEvalEquals("1", "$obj.count('a')");
+        assertEvalEquals("3", "$obj.count('a', 'b', 'c')");
+    }
+
+    public void testExceptions()
+        throws Exception
+    {
+        MethodHandleInvoker invoker = MethodHandleInvoker.create(Target.class.getMethod("fail"), null);
+        try
+        {
+            invoker.invoke(new Target(), null);
+            fail("expecting InvocationTargetException");
+        }
+        catch (InvocationTargetException ite)
+        {
+            assertTrue(ite.getCause() instanceof IllegalStateException);
+        }
+
+        invoker = MethodHandleInvoker.create(Target.class.getMethod("add", Integer.TYPE, Integer.TYPE), null);
+        try
+        {
+            invoker.invoke(new Target(), new Object[] { 1, "2" });
+            fail("expecting IllegalArgumentException");
+        }
+        catch (IllegalArgumentException iae)
+        {
+        }
+        try
+        {
+            invoker.invoke(new Target(), new Object[] { 1 });
+            fail("expecting IllegalArgumentException");
+        }
+        catch (IllegalArgumentException iae)
+        {
+        }
+    }
+
+    public void testConverters()
+        throws Exception
+    {
+        Converter[] converters = new Converter[] { null, new Converter()
+        {
+            public Object convert(Object o)
+            {
+                return Integer.valueOf(String.valueOf(o));
+            }
+        } };
+        MethodHandleInvoker invoker = MethodHandleInvoker.create(Target.class.getMethod("add", Integer.TYPE, Integer.TYPE), converters);
+        assertEquals(12, invoker.invoke(new Target(), new Object[] { (byte)2, "10" }));
+    }
+
+    public static class Target
+    {
+        public String getName()
+        {
+            return "name";
+        }
+
+        public boolean isEnabled()
+        {
+            return true;
+        }
+
+        public String get(String key)
+        {
+            return "got:" + key;
+        }
+
+        public int add(int a, int b)
+        {
+            return a + b;
+        }
+
+        public double half(double d)
+        {
+            return d / 2;
+        }
+
+        public int count(String... values)
+        {
+            return values.length;
+        }
+
+        public void fail()
+        {
+            throw new IllegalStateException("failure");
+        }
+
+        public static String stat()
+        {
+            return "static";
+        }
+    }
+}